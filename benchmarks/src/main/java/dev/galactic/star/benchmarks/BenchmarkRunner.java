@@ -0,0 +1,64 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package dev.galactic.star.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+
+/**
+ * Runs the benchmarks and writes the results as JSON. The first argument is the file the results are written to
+ * (jmh-result.json by default), the others are passed to JMH, for example "H2DatabaseBenchmark -f 2". Two result
+ * files can be compared with any JMH result viewer.
+ */
+public final class BenchmarkRunner {
+
+    private static final String DEFAULT_RESULT = "jmh-result.json";
+
+    private BenchmarkRunner() {
+    }
+
+    /**
+     * Runs the benchmarks
+     *
+     * @param args The result file and the JMH options
+     * @throws RunnerException            If a benchmark fails
+     * @throws CommandLineOptionException If the JMH options are invalid
+     */
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        String result = DEFAULT_RESULT;
+        if (args.length > 0 && args[0].endsWith(".json")) {
+            result = args[0];
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+        CommandLineOptions cli = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(cli)
+                .resultFormat(ResultFormatType.JSON)
+                .result(result);
+        if (cli.getIncludes().isEmpty()) {
+            options.include(BenchmarkRunner.class.getPackageName() + ".*Benchmark");
+        }
+        new Runner(options.build()).run();
+    }
+}
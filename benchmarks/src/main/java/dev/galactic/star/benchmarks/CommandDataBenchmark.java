@@ -0,0 +1,112 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package dev.galactic.star.benchmarks;
+
+import dev.galactic.star.config.comands.slash.SlashCommand;
+import net.dv8tion.jda.api.interactions.commands.build.SlashCommandData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the JDA command data of the slash commands. The data is cached per configuration, so the build benchmarks
+ * change the description to its own value first, which throws the cached data away the same way a reload does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CommandDataBenchmark {
+
+    private List<SlashCommand> commands;
+    private SlashCommand largest;
+    private int next;
+
+    /**
+     * Parses the slash commands and picks the one with the most options
+     */
+    @Setup
+    public void setup() {
+        this.commands = Fixtures.slashCommands();
+        this.largest = this.commands.get(0);
+        for (SlashCommand cmd : this.commands) {
+            if (cmd.toData().toData().toString().length() > this.largest.toData().toData().toString().length()) {
+                this.largest = cmd;
+            }
+        }
+    }
+
+    /**
+     * Builds the data of the next command
+     *
+     * @return SlashCommandData
+     */
+    @Benchmark
+    public SlashCommandData build() {
+        SlashCommand cmd = this.commands.get(this.next);
+        this.next = (this.next + 1) % this.commands.size();
+        cmd.setDescription(cmd.getDescription());
+        return cmd.toData();
+    }
+
+    /**
+     * Builds the data of the command with the biggest tree of sub commands and options
+     *
+     * @return SlashCommandData
+     */
+    @Benchmark
+    public SlashCommandData buildLargest() {
+        this.largest.setDescription(this.largest.getDescription());
+        return this.largest.toData();
+    }
+
+    /**
+     * Builds the data of the next command and its hash, like a registration after a reload
+     *
+     * @return The hash
+     */
+    @Benchmark
+    public String buildAndHash() {
+        SlashCommand cmd = this.commands.get(this.next);
+        this.next = (this.next + 1) % this.commands.size();
+        cmd.setDescription(cmd.getDescription());
+        return cmd.getContentHash();
+    }
+
+    /**
+     * Gets the cached data of a command
+     *
+     * @return SlashCommandData
+     */
+    @Benchmark
+    public SlashCommandData cached() {
+        return this.largest.toData();
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package dev.galactic.star.benchmarks;
+
+import dev.galactic.star.commands.CommandLoader;
+import dev.galactic.star.commands.CommandRegistry;
+import dev.galactic.star.commands.HandlerFactory;
+import dev.galactic.star.commands.SlashHandler;
+import dev.galactic.star.config.RolesAndIdsRegistry;
+import dev.galactic.star.config.comands.context.ContextCommand;
+import dev.galactic.star.config.comands.slash.SlashCommand;
+import dev.galactic.star.exceptions.UnknownCommandException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looks up the handlers of the commands the way CommandLoader does for every interaction, and creates the handler
+ * instances in each scope
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CommandLookupBenchmark {
+
+    @Param({"singleton", "pooled", "prototype"})
+    public String scope;
+    private List<SlashCommand> slashCommands;
+    private List<ContextCommand> contextCommands;
+    private CommandLoader loader;
+    private String[] names;
+    private int next;
+
+    /**
+     * Loads the handlers of the bundled commands
+     */
+    @Setup
+    public void setup() {
+        this.slashCommands = Fixtures.slashCommandsWithNoopHandlers(this.scope);
+        this.contextCommands = List.of();
+        CommandLoader.loadHandlers(this.slashCommands, this.contextCommands, RolesAndIdsRegistry.of(List.of()));
+        this.loader = new CommandLoader(null);
+        this.names = this.slashCommands.stream().map(SlashCommand::getName).toArray(String[]::new);
+    }
+
+    /**
+     * Gets the name of the next command, so every command gets looked up
+     *
+     * @return Name of a command
+     */
+    private String nextName() {
+        String name = this.names[this.next];
+        this.next = (this.next + 1) % this.names.length;
+        return name;
+    }
+
+    /**
+     * Looks up the handler factory of a command
+     *
+     * @return HandlerFactory
+     * @throws UnknownCommandException If the command isn't loaded
+     */
+    @Benchmark
+    public HandlerFactory<SlashHandler> lookup() throws UnknownCommandException {
+        return this.loader.getCommand(this.nextName());
+    }
+
+    /**
+     * Looks up the handler factory of a command and gets a handler from it like an interaction does
+     *
+     * @return The handler
+     * @throws UnknownCommandException If the command isn't loaded
+     */
+    @Benchmark
+    public SlashHandler lookupAndAcquire() throws UnknownCommandException {
+        HandlerFactory<SlashHandler> factory = this.loader.getCommand(this.nextName());
+        SlashHandler handler = factory.acquire();
+        factory.release(handler);
+        return handler;
+    }
+
+    /**
+     * Builds the handlers of all commands from scratch like the first start does
+     *
+     * @return Amount of handlers
+     */
+    @Benchmark
+    public int buildRegistry() {
+        CommandRegistry registry = CommandRegistry.build(this.slashCommands, this.contextCommands);
+        registry.close();
+        return registry.getSlashCount();
+    }
+}
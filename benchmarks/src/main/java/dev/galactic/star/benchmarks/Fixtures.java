@@ -0,0 +1,102 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package dev.galactic.star.benchmarks;
+
+import dev.galactic.star.config.Configuration;
+import dev.galactic.star.config.comands.context.ContextCommand;
+import dev.galactic.star.config.comands.slash.SlashCommand;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads the command files that ship with the bot, so the benchmarks run on the same commands as a fresh install
+ */
+public final class Fixtures {
+
+    private Fixtures() {
+    }
+
+    /**
+     * Reads a resource of the bot
+     *
+     * @param path Path of the resource, for example commands/Mod.yml
+     * @return Content of the resource
+     */
+    public static byte[] read(String path) {
+        try (InputStream in = Configuration.class.getClassLoader().getResourceAsStream(path)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing resource: " + path);
+            }
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Parses the slash commands of Mod.yml and User.yml
+     *
+     * @return Slash commands
+     */
+    public static List<SlashCommand> slashCommands() {
+        List<SlashCommand> commands = new ArrayList<>(parse("commands/Mod.yml", SlashCommand[].class));
+        commands.addAll(parse("commands/User.yml", SlashCommand[].class));
+        return commands;
+    }
+
+    /**
+     * Parses the context commands of Context.yml
+     *
+     * @return Context commands
+     */
+    public static List<ContextCommand> contextCommands() {
+        return parse("commands/Context.yml", ContextCommand[].class);
+    }
+
+    /**
+     * Parses the slash commands and points all of them to the NoopSlashHandler, since the handlers in the command
+     * files aren't part of the bot
+     *
+     * @param scope Scope of the handlers
+     * @return Slash commands
+     */
+    public static List<SlashCommand> slashCommandsWithNoopHandlers(String scope) {
+        List<SlashCommand> commands = slashCommands();
+        for (SlashCommand cmd : commands) {
+            cmd.setHandler(NoopSlashHandler.class.getName());
+            cmd.setScope(scope);
+        }
+        return commands;
+    }
+
+    /**
+     * Parses YAML that contains a list
+     *
+     * @param path Path of the resource
+     * @param type Array type of the entries
+     * @param <T>  Type of the entries
+     * @return List of the entries
+     */
+    private static <T> List<T> parse(String path, Class<T[]> type) {
+        return Configuration.parseYaml(new ByteArrayInputStream(read(path)), type);
+    }
+}
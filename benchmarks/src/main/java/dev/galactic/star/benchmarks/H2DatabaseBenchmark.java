@@ -0,0 +1,214 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package dev.galactic.star.benchmarks;
+
+import dev.galactic.star.H2Database;
+import dev.galactic.star.config.system.DatabaseConfig;
+import dev.galactic.star.database.UserState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs every kind of H2Database operation against an in-memory database, with the writes in sync and in
+ * group-commit mode. The file based database adds the disk on top of these numbers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class H2DatabaseBenchmark {
+
+    private static final int USERS = 1_000;
+    private static final int HISTORY_USERS = 100;
+    private static final int HISTORY_PER_USER = 10;
+    private static final long FIRST_USER = 100_000_000_000_000_000L;
+    private static final OffsetDateTime EXPIRES_AT = OffsetDateTime.of(2100, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+
+    @Param({"sync", "group-commit"})
+    public String durability;
+    private H2Database db;
+    private int next;
+    private int banIds;
+
+    /**
+     * Connects to a new in-memory database and fills it with users and warns
+     */
+    @Setup
+    public void setup() {
+        DatabaseConfig config = new DatabaseConfig();
+        config.setUrl("jdbc:h2:mem:benchmark-" + this.durability + ";DB_CLOSE_DELAY=-1");
+        config.setUsername("sa");
+        config.setPassword("");
+        config.setDurability(this.durability);
+        this.db = new H2Database(config);
+        for (int i = 0; i < USERS; i++) {
+            this.db.update("INSERT INTO warn_data(user_id, total_warns, severity) VALUES(?,?,?)", FIRST_USER + i,
+                    i % 5, i % 3);
+        }
+        for (int i = 0; i < HISTORY_USERS * HISTORY_PER_USER; i++) {
+            this.db.update("INSERT INTO warn_history(userid, warn_id, severity) VALUES(?,?,?)",
+                    FIRST_USER + i % HISTORY_USERS, "w" + i, i % 3);
+        }
+    }
+
+    /**
+     * Closes the database
+     */
+    @TearDown
+    public void tearDown() {
+        this.db.update("DROP ALL OBJECTS");
+        this.db.disconnect();
+    }
+
+    /**
+     * Gets the id of the next user, so the reads don't always hit the same row
+     *
+     * @return Discord id of a user that has a row
+     */
+    private long nextUser() {
+        this.next = (this.next + 1) % USERS;
+        return FIRST_USER + this.next;
+    }
+
+    /**
+     * Reads one row by its primary key
+     *
+     * @return The severity
+     */
+    @Benchmark
+    public Integer query() {
+        return this.db.query("SELECT severity FROM warn_data WHERE user_id=?", set -> set.getInt(1),
+                this.nextUser());
+    }
+
+    /**
+     * Reads the warn history of a user through the index
+     *
+     * @return The warn ids
+     */
+    @Benchmark
+    public List<String> queryList() {
+        return this.db.queryList("SELECT warn_id FROM warn_history WHERE userid=?", set -> set.getString(1),
+                FIRST_USER + this.nextUser() % HISTORY_USERS);
+    }
+
+    /**
+     * Reads one column through the generic getter
+     *
+     * @return The severity
+     */
+    @Benchmark
+    public Object getFromDb() {
+        return this.db.getFromDb("warn_data", "user_id", this.nextUser(), "severity");
+    }
+
+    /**
+     * Reads the state of a user that is in the user cache
+     *
+     * @return UserState
+     */
+    @Benchmark
+    public UserState getUserStateCached() {
+        return this.db.getUserState(FIRST_USER);
+    }
+
+    /**
+     * Reads the state of a user that isn't in the user cache
+     *
+     * @return UserState
+     */
+    @Benchmark
+    public UserState getUserStateUncached() {
+        long userId = this.nextUser();
+        this.db.getUserCache().invalidate(userId);
+        return this.db.getUserState(userId);
+    }
+
+    /**
+     * Updates one row right away, without the write queue
+     *
+     * @return Amount of changed rows
+     */
+    @Benchmark
+    public int update() {
+        return this.db.update("UPDATE warn_history SET severity=? WHERE warn_id=?", this.next % 3,
+                "w" + this.nextUser() % (HISTORY_USERS * HISTORY_PER_USER));
+    }
+
+    /**
+     * Writes one row with the configured durability
+     *
+     * @return Future with the amount of changed rows
+     */
+    @Benchmark
+    public CompletableFuture<Integer> write() {
+        return this.db.write("MERGE INTO punishment_expiry(guild_id, user_id, type, expires_at) KEY(guild_id, " +
+                "user_id, type) VALUES(?,?,?,?)", 1L, this.nextUser(), "BAN", EXPIRES_AT);
+    }
+
+    /**
+     * Updates one column through the generic setter
+     *
+     * @return H2Database
+     */
+    @Benchmark
+    public H2Database updateRecord() {
+        return this.db.updateRecord("warn_data", "user_id", this.nextUser(), "total_warns", this.next % 5);
+    }
+
+    /**
+     * Saves the warns of a user and updates the user cache
+     *
+     * @return H2Database
+     */
+    @Benchmark
+    public H2Database saveWarnData() {
+        return this.db.saveWarnData(this.nextUser(), this.next % 5, this.next % 3);
+    }
+
+    /**
+     * Inserts a row and deletes it again
+     *
+     * @return H2Database
+     */
+    @Benchmark
+    public H2Database insertAndDelete() {
+        String banId = Integer.toString(this.banIds++, Character.MAX_RADIX);
+        this.db.insert("ban_data", new String[]{"ban_id", "user_id", "reason"}, new Object[]{banId,
+                this.nextUser(), "benchmark"});
+        return this.db.delete("ban_data", "ban_id", banId, null, null);
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package dev.galactic.star.benchmarks;
+
+import dev.galactic.star.commands.SlashHandler;
+import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
+
+/**
+ * A handler that does nothing, so the benchmarks only measure the dispatch around it
+ */
+public class NoopSlashHandler implements SlashHandler {
+
+    /**
+     * Does nothing
+     *
+     * @param event SlashCommand Event
+     */
+    @Override
+    public void handleEvent(SlashCommandInteractionEvent event) {
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package dev.galactic.star.benchmarks;
+
+import dev.galactic.star.config.Configuration;
+import dev.galactic.star.config.comands.context.ContextCommand;
+import dev.galactic.star.config.comands.slash.SlashCommand;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses the bundled command files the same way the configuration and every reload does. The files are read into
+ * memory first, so only the parsing is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class YamlParsingBenchmark {
+
+    private byte[] mod;
+    private byte[] user;
+    private byte[] context;
+
+    /**
+     * Reads the command files
+     */
+    @Setup
+    public void setup() {
+        this.mod = Fixtures.read("commands/Mod.yml");
+        this.user = Fixtures.read("commands/User.yml");
+        this.context = Fixtures.read("commands/Context.yml");
+    }
+
+    /**
+     * Parses Mod.yml
+     *
+     * @return Slash commands
+     */
+    @Benchmark
+    public List<SlashCommand> parseMod() {
+        return Configuration.parseYaml(new ByteArrayInputStream(this.mod), SlashCommand[].class);
+    }
+
+    /**
+     * Parses User.yml
+     *
+     * @return Slash commands
+     */
+    @Benchmark
+    public List<SlashCommand> parseUser() {
+        return Configuration.parseYaml(new ByteArrayInputStream(this.user), SlashCommand[].class);
+    }
+
+    /**
+     * Parses Context.yml
+     *
+     * @return Context commands
+     */
+    @Benchmark
+    public List<ContextCommand> parseContext() {
+        return Configuration.parseYaml(new ByteArrayInputStream(this.context), ContextCommand[].class);
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package dev.galactic.star.benchmarks.load;
+
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.entities.channel.unions.MessageChannelUnion;
+import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
+import net.dv8tion.jda.api.events.interaction.command.UserContextInteractionEvent;
+import net.dv8tion.jda.api.interactions.InteractionHook;
+import net.dv8tion.jda.api.interactions.InteractionType;
+import net.dv8tion.jda.api.interactions.commands.Command;
+import net.dv8tion.jda.api.interactions.commands.SlashCommandInteraction;
+import net.dv8tion.jda.api.interactions.commands.context.UserContextInteraction;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds synthetic interaction events on top of the stubs. All of them come from the same guild and channel, and
+ * from a member with the administrator permission, so they pass the permission check of every command. The users
+ * are picked from a fixed set, like the members of a raid.
+ */
+public class Interactions {
+
+    private static final long GUILD_ID = 1_000_000_000_000_000_000L;
+    private static final long CHANNEL_ID = GUILD_ID + 1;
+    private static final long FIRST_USER = GUILD_ID + 1_000;
+    private final JDA jda = Stubs.create(JDA.class, Map.of());
+    private final Guild guild = Stubs.create(Guild.class, Map.of("getIdLong", GUILD_ID));
+    private final MessageChannelUnion channel = Stubs.create(MessageChannelUnion.class, Map.of("getIdLong",
+            CHANNEL_ID));
+    private final InteractionHook hook = Stubs.create(InteractionHook.class, Map.of("getJDA", this.jda));
+    private final User[] users;
+    private final Member[] members;
+
+    /**
+     * Creates the stubs of the guild and its users
+     *
+     * @param users Amount of different users that send interactions
+     */
+    public Interactions(int users) {
+        this.users = new User[Math.max(1, users)];
+        this.members = new Member[this.users.length];
+        for (int i = 0; i < this.users.length; i++) {
+            User user = Stubs.create(User.class, Map.of("getIdLong", FIRST_USER + i, "getName", "user" + i,
+                    "getJDA", this.jda));
+            this.users[i] = user;
+            this.members[i] = Stubs.create(Member.class, Map.of("getIdLong", FIRST_USER + i, "getUser", user,
+                    "getGuild", this.guild, "hasPermission", true, "getJDA", this.jda));
+        }
+    }
+
+    /**
+     * Builds a slash command interaction
+     *
+     * @param id   Id of the interaction
+     * @param name Name of the command
+     * @return SlashCommandInteractionEvent
+     */
+    public SlashCommandInteractionEvent slash(int id, String name) {
+        Map<String, Object> answers = this.answers(id, name);
+        answers.put("getCommandType", Command.Type.SLASH);
+        answers.put("getCommandString", "/" + name);
+        answers.put("getOptions", List.of());
+        return new SlashCommandInteractionEvent(this.jda, id, Stubs.create(SlashCommandInteraction.class, answers));
+    }
+
+    /**
+     * Builds a user context interaction that targets another user of the set
+     *
+     * @param id   Id of the interaction
+     * @param name Name of the context command
+     * @return UserContextInteractionEvent
+     */
+    public UserContextInteractionEvent userContext(int id, String name) {
+        Map<String, Object> answers = this.answers(id, name);
+        int target = (id + 1) % this.users.length;
+        answers.put("getCommandType", Command.Type.USER);
+        answers.put("getTarget", this.users[target]);
+        answers.put("getTargetMember", this.members[target]);
+        return new UserContextInteractionEvent(this.jda, id, Stubs.create(UserContextInteraction.class, answers));
+    }
+
+    /**
+     * Creates the answers every command interaction has
+     *
+     * @param id   Id of the interaction
+     * @param name Name of the command
+     * @return Mutable map of the answers
+     */
+    private Map<String, Object> answers(int id, String name) {
+        int user = id % this.users.length;
+        Map<String, Object> answers = new HashMap<>();
+        answers.put("getIdLong", (long) id);
+        answers.put("getName", name);
+        answers.put("getType", InteractionType.COMMAND);
+        answers.put("getTypeRaw", InteractionType.COMMAND.getKey());
+        answers.put("getToken", "");
+        answers.put("getUser", this.users[user]);
+        answers.put("getMember", this.members[user]);
+        answers.put("getGuild", this.guild);
+        answers.put("getChannel", this.channel);
+        answers.put("getHook", this.hook);
+        answers.put("getJDA", this.jda);
+        return answers;
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package dev.galactic.star.benchmarks.load;
+
+import dev.galactic.star.H2Database;
+import dev.galactic.star.metrics.LatencyHistogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records when the interactions of a load test phase were meant to be sent and when their handlers finished. The
+ * handlers find the recorder and the database of the running phase through the static getters, since the
+ * CommandLoader creates them with their no-args constructor.
+ */
+public final class LoadRecorder {
+
+    private static volatile LoadRecorder current;
+    private final H2Database db;
+    private final long[] intendedAt;
+    private final int writePercent;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder completed = new LongAdder();
+
+    /**
+     * Creates the recorder of a phase
+     *
+     * @param db           The database the handlers use
+     * @param interactions Amount of interactions in the phase
+     * @param writePercent Percentage of the slash interactions that write to the database
+     */
+    public LoadRecorder(H2Database db, int interactions, int writePercent) {
+        this.db = db;
+        this.intendedAt = new long[interactions];
+        this.writePercent = writePercent;
+    }
+
+    /**
+     * Getter for the recorder of the running phase
+     *
+     * @return LoadRecorder
+     */
+    public static LoadRecorder getCurrent() {
+        return current;
+    }
+
+    /**
+     * Setter for the recorder of the running phase
+     *
+     * @param recorder LoadRecorder instance to set
+     */
+    public static void setCurrent(LoadRecorder recorder) {
+        current = recorder;
+    }
+
+    /**
+     * Stores when an interaction was meant to be sent. The latency is measured from then, so a dispatcher that
+     * falls behind the rate doesn't hide the time the interactions waited for it.
+     *
+     * @param id        Id of the interaction, its index in the phase
+     * @param nanoTime  System.nanoTime() it was meant to be sent at
+     */
+    public void sent(int id, long nanoTime) {
+        this.intendedAt[id] = nanoTime;
+    }
+
+    /**
+     * Records that the handler of an interaction finished
+     *
+     * @param id Id of the interaction
+     */
+    public void completed(long id) {
+        this.latency.record(System.nanoTime() - this.intendedAt[(int) id]);
+        this.completed.increment();
+    }
+
+    /**
+     * Checks whether the handler of the interaction writes to the database
+     *
+     * @param id Id of the interaction
+     * @return True/False
+     */
+    public boolean writes(long id) {
+        return id % 100 < this.writePercent;
+    }
+
+    /**
+     * Getter for the database the handlers use
+     *
+     * @return H2Database
+     */
+    public H2Database getDb() {
+        return db;
+    }
+
+    /**
+     * Getter for the latency from sending to the end of the handler
+     *
+     * @return LatencyHistogram
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * Getter for the amount of handlers that finished
+     *
+     * @return Completed interactions
+     */
+    public long getCompleted() {
+        return this.completed.sum();
+    }
+}
@@ -0,0 +1,365 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package dev.galactic.star.benchmarks.load;
+
+import dev.galactic.star.H2Database;
+import dev.galactic.star.benchmarks.Fixtures;
+import dev.galactic.star.commands.CommandExecutor;
+import dev.galactic.star.commands.CommandLoader;
+import dev.galactic.star.config.Configuration;
+import dev.galactic.star.config.RolesAndIdsRegistry;
+import dev.galactic.star.config.comands.context.ContextCommand;
+import dev.galactic.star.config.comands.slash.SlashCommand;
+import dev.galactic.star.config.system.DatabaseConfig;
+import dev.galactic.star.config.system.ExecutorConfig;
+import dev.galactic.star.metrics.LatencyHistogram;
+import dev.galactic.star.metrics.Metrics;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Replays synthetic interactions through CommandLoader.onSlashCommandInteraction and onUserContextInteraction without
+ * Discord, so the command pipeline can be tested under raid sized bursts on any machine. The commands come from the
+ * bundled command files, and their handlers read and write a temporary H2 database like the moderation commands do.
+ * It reports the throughput, the latency from sending an interaction to the end of its handler and the allocation
+ * rate.
+ * <p>
+ * Options, all of them are optional:
+ * <pre>
+ * --count N          Interactions to measure (50000)
+ * --warmup N         Interactions to send before measuring (10000)
+ * --rate N           Interactions per second, 0 sends them as fast as possible like a raid (0)
+ * --dispatchers N    Threads that send the interactions, like the event threads of the shards (4)
+ * --users N          Different users the interactions come from (2000)
+ * --writes N         Percentage of slash interactions that save a warn (20)
+ * --context N        Percentage of interactions that are user context interactions (10)
+ * --threads N        Threads of the command executor (executor.threads of the System.json)
+ * --queue N          Queue size of the command executor (executor.queue_size)
+ * --per-command N    Interactions per command at the same time (executor.max_per_command)
+ * --durability MODE  sync, group-commit or async (group-commit)
+ * --memory           Uses an in-memory database instead of a temporary file
+ * </pre>
+ */
+public final class LoadTest {
+
+    private static final long DRAIN_TIMEOUT_MS = 60_000;
+    private final Map<String, String> options;
+    private final ExecutorConfig executorConfig = new ExecutorConfig();
+    private final int dispatchers;
+    private final long rate;
+    private final int writePercent;
+    private final int contextPercent;
+    private Interactions interactions;
+    private H2Database db;
+    private CommandExecutor executor;
+    private CommandLoader loader;
+    private String[] slashNames;
+    private String[] contextNames;
+
+    /**
+     * Creates the load test
+     *
+     * @param options The options by their name without the dashes
+     */
+    private LoadTest(Map<String, String> options) {
+        this.options = options;
+        this.dispatchers = Math.max(1, this.intOption("dispatchers", 4));
+        this.rate = Math.max(0, this.intOption("rate", 0));
+        this.writePercent = this.intOption("writes", 20);
+        this.contextPercent = this.intOption("context", 10);
+        this.executorConfig.setThreads(this.intOption("threads", this.executorConfig.getThreads()));
+        this.executorConfig.setQueue_size(this.intOption("queue", this.executorConfig.getQueue_size()));
+        this.executorConfig.setMax_per_command(this.intOption("per-command",
+                this.executorConfig.getMax_per_command()));
+    }
+
+    /**
+     * Runs the load test
+     *
+     * @param args The options
+     * @throws IOException If the temporary database can't be created
+     */
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+            boolean flag = i + 1 == args.length || args[i + 1].startsWith("--");
+            options.put(args[i].substring(2), flag ? "true" : args[++i]);
+        }
+        new LoadTest(options).run();
+    }
+
+    /**
+     * Sets the pipeline up, runs the warmup and the measured phase and prints the report
+     *
+     * @throws IOException If the temporary database can't be created
+     */
+    private void run() throws IOException {
+        Path directory = Files.createTempDirectory("galacticbot-loadtest");
+        try {
+            this.setUp(directory);
+            this.runPhase(this.intOption("warmup", 10_000));
+            Result result = this.runPhase(this.intOption("count", 50_000));
+            this.print(result);
+        } finally {
+            if (this.executor != null) {
+                this.executor.shutdown(10, TimeUnit.SECONDS);
+            }
+            if (this.db != null) {
+                this.db.flush();
+                this.db.disconnect();
+            }
+            delete(directory);
+        }
+    }
+
+    /**
+     * Connects to the temporary database and loads the handlers of the bundled commands
+     *
+     * @param directory Directory of the temporary database
+     */
+    private void setUp(Path directory) {
+        //The CommandLoader gets the snapshot of the configuration from the singleton
+        new Configuration();
+        DatabaseConfig config = new DatabaseConfig();
+        config.setUsername("sa");
+        config.setPassword("");
+        config.setDurability(this.options.getOrDefault("durability", "group-commit"));
+        if (this.options.containsKey("memory")) {
+            config.setUrl("jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1");
+        } else {
+            config.setFile(directory.resolve("Database").toString());
+        }
+        this.db = new H2Database(config);
+
+        List<SlashCommand> slash = Fixtures.slashCommands();
+        slash.forEach(cmd -> cmd.setHandler(LoadTestSlashHandler.class.getName()));
+        List<ContextCommand> context = Fixtures.contextCommands();
+        context.forEach(cmd -> cmd.setHandler(LoadTestContextHandler.class.getName()));
+        CommandLoader.loadHandlers(slash, context, RolesAndIdsRegistry.of(List.of()));
+        this.slashNames = slash.stream().map(SlashCommand::getName).distinct().toArray(String[]::new);
+        this.contextNames = context.stream().map(ContextCommand::getName).distinct().toArray(String[]::new);
+
+        this.executor = new CommandExecutor(this.executorConfig);
+        this.loader = new CommandLoader(this.executor);
+        this.interactions = new Interactions(this.intOption("users", 2_000));
+    }
+
+    /**
+     * Sends the interactions of one phase and waits until all of them are handled or rejected
+     *
+     * @param count Amount of interactions
+     * @return Result of the phase
+     */
+    private Result runPhase(int count) {
+        LoadRecorder recorder = new LoadRecorder(this.db, count, this.writePercent);
+        LoadRecorder.setCurrent(recorder);
+        long queueFullBefore = this.executor.getRejectedQueueFull();
+        long commandLimitBefore = this.executor.getRejectedCommandLimit();
+        long failedBefore = this.executor.getFailed();
+        Map<Long, Long> allocatedBefore = allocatedBytes();
+        LongAdder dispatchAllocated = new LongAdder();
+        long start = System.nanoTime();
+
+        Thread[] threads = new Thread[this.dispatchers];
+        for (int t = 0; t < threads.length; t++) {
+            int first = t;
+            threads[t] = new Thread(() -> {
+                long allocated = threadBean().getCurrentThreadAllocatedBytes();
+                for (int id = first; id < count; id += this.dispatchers) {
+                    this.dispatch(recorder, id, start);
+                }
+                dispatchAllocated.add(threadBean().getCurrentThreadAllocatedBytes() - allocated);
+            }, "loadtest-dispatcher-" + t);
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        }
+        long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT_MS;
+        while (recorder.getCompleted() + this.rejected() - queueFullBefore - commandLimitBefore +
+                this.executor.getFailed() - failedBefore < count && System.currentTimeMillis() < deadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        long duration = System.nanoTime() - start;
+
+        Map<Long, Long> allocatedAfter = allocatedBytes();
+        long handlerAllocated = 0;
+        for (Map.Entry<Long, Long> entry : allocatedAfter.entrySet()) {
+            handlerAllocated += entry.getValue() - allocatedBefore.getOrDefault(entry.getKey(), 0L);
+        }
+        return new Result(count, recorder.getCompleted(), this.executor.getRejectedQueueFull() - queueFullBefore,
+                this.executor.getRejectedCommandLimit() - commandLimitBefore,
+                this.executor.getFailed() - failedBefore, duration,
+                recorder.getLatency().snapshot(), dispatchAllocated.sum(), handlerAllocated);
+    }
+
+    /**
+     * Sends one interaction, waiting until it is due if there is a rate
+     *
+     * @param recorder Recorder of the phase
+     * @param id       Id of the interaction
+     * @param start    System.nanoTime() the phase started at
+     */
+    private void dispatch(LoadRecorder recorder, int id, long start) {
+        long intendedAt;
+        if (this.rate > 0) {
+            intendedAt = start + id * TimeUnit.SECONDS.toNanos(1) / this.rate;
+            long wait = intendedAt - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+        } else {
+            intendedAt = System.nanoTime();
+        }
+        recorder.sent(id, intendedAt);
+        if (this.contextNames.length > 0 && id % 100 < this.contextPercent) {
+            this.loader.onUserContextInteraction(this.interactions.userContext(id,
+                    this.contextNames[id % this.contextNames.length]));
+        } else {
+            this.loader.onSlashCommandInteraction(this.interactions.slash(id,
+                    this.slashNames[id % this.slashNames.length]));
+        }
+    }
+
+    /**
+     * Prints the report of the measured phase
+     *
+     * @param result Result of the phase
+     */
+    private void print(Result result) {
+        double seconds = result.durationNanos() / 1e9;
+        LatencyHistogram.Snapshot latency = result.latency();
+        System.out.println("----------------------------------------");
+        System.out.printf("Interactions: %d, dispatchers: %d, rate: %s, command threads: %d, queue: %d, " +
+                        "per command: %d%n", result.count(), this.dispatchers,
+                this.rate == 0 ? "unlimited" : this.rate + "/s", this.executorConfig.getThreads(),
+                this.executorConfig.getQueue_size(), this.executorConfig.getMax_per_command());
+        System.out.printf("Duration: %.3f s%n", seconds);
+        System.out.printf("Throughput: %.0f handled interactions/s%n", result.completed() / seconds);
+        System.out.printf("Handled: %d, rejected: %d queue full, %d command limit, failed: %d%n",
+                result.completed(), result.rejectedQueueFull(), result.rejectedCommandLimit(), result.failed());
+        System.out.printf("Latency: p50 %.2f ms, p95 %.2f ms, p99 %.2f ms, max %.2f ms%n", latency.p50() / 1e6,
+                latency.p95() / 1e6, latency.p99() / 1e6, latency.max() / 1e6);
+        System.out.printf("Allocation: %.1f MB/s, %.1f KB per interaction (dispatch %.1f KB, handlers and " +
+                        "database %.1f KB)%n", (result.dispatchAllocated() + result.handlerAllocated()) / seconds / 1e6,
+                (result.dispatchAllocated() + result.handlerAllocated()) / 1024.0 / result.count(),
+                result.dispatchAllocated() / 1024.0 / result.count(),
+                result.handlerAllocated() / 1024.0 / result.count());
+        System.out.println("Recorded by the bot, including the warmup:");
+        Metrics.getInstance().describe().forEach(line -> System.out.println("  " + line));
+        System.out.println("----------------------------------------");
+    }
+
+    /**
+     * Gets the amount of interactions the executor rejected so far
+     *
+     * @return Rejected interactions
+     */
+    private long rejected() {
+        return this.executor.getRejectedQueueFull() + this.executor.getRejectedCommandLimit();
+    }
+
+    /**
+     * Gets an option as a number
+     *
+     * @param name         Name of the option
+     * @param defaultValue Value if it isn't set
+     * @return The value
+     */
+    private int intOption(String name, int defaultValue) {
+        String value = this.options.get(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    /**
+     * Getter for the thread bean that measures the allocations
+     *
+     * @return ThreadMXBean of the JVM
+     */
+    private static com.sun.management.ThreadMXBean threadBean() {
+        return (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    }
+
+    /**
+     * Gets the bytes every live thread allocated so far
+     *
+     * @return Allocated bytes by the id of the thread
+     */
+    private static Map<Long, Long> allocatedBytes() {
+        long[] ids = threadBean().getAllThreadIds();
+        long[] bytes = threadBean().getThreadAllocatedBytes(ids);
+        Map<Long, Long> allocated = new HashMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            if (bytes[i] >= 0) {
+                allocated.put(ids[i], bytes[i]);
+            }
+        }
+        return allocated;
+    }
+
+    /**
+     * Deletes the temporary directory
+     *
+     * @param directory The directory
+     */
+    private static void delete(Path directory) {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Result of a phase
+     *
+     * @param count                Amount of interactions sent
+     * @param completed            Interactions whose handler finished
+     * @param rejectedQueueFull    Interactions rejected because the queue was full
+     * @param rejectedCommandLimit Interactions rejected by the per command limit
+     * @param failed               Interactions whose handler threw an exception
+     * @param durationNanos        Time from the first interaction until all of them were handled
+     * @param latency              Latency from sending to the end of the handler
+     * @param dispatchAllocated    Bytes allocated by the threads that sent the interactions
+     * @param handlerAllocated     Bytes allocated by all other threads
+     */
+    private record Result(int count, long completed, long rejectedQueueFull, long rejectedCommandLimit, long failed,
+                          long durationNanos, LatencyHistogram.Snapshot latency, long dispatchAllocated,
+                          long handlerAllocated) {
+    }
+}
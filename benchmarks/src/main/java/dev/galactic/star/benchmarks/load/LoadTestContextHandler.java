@@ -0,0 +1,41 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package dev.galactic.star.benchmarks.load;
+
+import dev.galactic.star.commands.ContextHandler;
+import dev.galactic.star.database.UserState;
+import net.dv8tion.jda.api.events.interaction.command.UserContextInteractionEvent;
+
+/**
+ * Does what a report command does with the database: reads the state of the target and replies
+ */
+public class LoadTestContextHandler implements ContextHandler {
+
+    /**
+     * Handles the interaction and records it as completed
+     *
+     * @param event UserContextInteractionEvent
+     */
+    @Override
+    public void handleEvent(UserContextInteractionEvent event) {
+        LoadRecorder recorder = LoadRecorder.getCurrent();
+        UserState state = recorder.getDb().getUserState(event.getTarget().getIdLong());
+        event.reply("Reported, " + state.totalWarns() + " warns.").setEphemeral(true).queue();
+        recorder.completed(event.getIdLong());
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package dev.galactic.star.benchmarks.load;
+
+import dev.galactic.star.commands.SlashHandler;
+import dev.galactic.star.database.UserState;
+import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
+
+/**
+ * Does what a moderation command does with the database: reads the state of the user, and for some interactions
+ * saves a new warn. Then it replies to the interaction.
+ */
+public class LoadTestSlashHandler implements SlashHandler {
+
+    /**
+     * Handles the interaction and records it as completed
+     *
+     * @param event SlashCommand Event
+     */
+    @Override
+    public void handleEvent(SlashCommandInteractionEvent event) {
+        LoadRecorder recorder = LoadRecorder.getCurrent();
+        long userId = event.getUser().getIdLong();
+        UserState state = recorder.getDb().getUserState(userId);
+        if (recorder.writes(event.getIdLong())) {
+            recorder.getDb().saveWarnData(userId, state.totalWarns() + 1, state.severity() + 1);
+        }
+        event.reply("Done, " + state.totalWarns() + " warns.").setEphemeral(true).queue();
+        recorder.completed(event.getIdLong());
+    }
+}
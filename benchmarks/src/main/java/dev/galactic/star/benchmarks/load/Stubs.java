@@ -0,0 +1,140 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package dev.galactic.star.benchmarks.load;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Creates stubs of JDA interfaces without a connection to Discord. A stub answers the methods it was given answers
+ * for, runs the default methods of the interface and otherwise returns itself for fluent calls such as
+ * reply(...).setEphemeral(true), an empty stub for other interfaces and null, false or 0 for everything else. So
+ * RestActions can be queued, but never send anything.
+ */
+public final class Stubs {
+
+    private static final Map<Class<?>, Object> EMPTY_STUBS = new ConcurrentHashMap<>();
+
+    private Stubs() {
+    }
+
+    /**
+     * Creates a stub
+     *
+     * @param type    The interface
+     * @param answers Return values by the name of the method, an Answer is called with the arguments
+     * @param <T>     Type of the interface
+     * @return The stub
+     */
+    public static <T> T create(Class<T> type, Map<String, Object> answers) {
+        return type.cast(Proxy.newProxyInstance(Stubs.class.getClassLoader(), new Class<?>[]{type},
+                new Handler(type, answers)));
+    }
+
+    /**
+     * Gets the shared stub of an interface that has no answers
+     *
+     * @param type The interface
+     * @param <T>  Type of the interface
+     * @return The stub
+     */
+    public static <T> T empty(Class<T> type) {
+        return type.cast(EMPTY_STUBS.computeIfAbsent(type, key -> create(key, Map.of())));
+    }
+
+    /**
+     * Computes the return value of a stubbed method from its arguments
+     */
+    @FunctionalInterface
+    public interface Answer {
+
+        /**
+         * Computes the return value
+         *
+         * @param args Arguments of the call, null if there are none
+         * @return The return value
+         */
+        Object answer(Object[] args);
+    }
+
+    /**
+     * Answers the calls of one stub
+     *
+     * @param type    The interface
+     * @param answers Return values by the name of the method
+     */
+    private record Handler(Class<?> type, Map<String, Object> answers) implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            Object answer = this.answers.get(name);
+            if (answer != null) {
+                return answer instanceof Answer computed ? computed.answer(args) : answer;
+            }
+            if (method.getDeclaringClass() == Object.class) {
+                return switch (name) {
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    default -> "Stub[" + this.type.getSimpleName() + "]";
+                };
+            }
+            if (method.isDefault()) {
+                return InvocationHandler.invokeDefault(proxy, method, args);
+            }
+            return fallback(proxy, method.getReturnType());
+        }
+
+        /**
+         * Gets the return value of a method that has no answer
+         *
+         * @param proxy      The stub
+         * @param returnType Return type of the method
+         * @return The value
+         */
+        private static Object fallback(Object proxy, Class<?> returnType) {
+            if (returnType == void.class || returnType == Object.class) {
+                return null;
+            }
+            if (returnType == boolean.class) {
+                return false;
+            }
+            if (returnType == long.class) {
+                return 0L;
+            }
+            if (returnType == int.class) {
+                return 0;
+            }
+            if (returnType.isPrimitive()) {
+                return returnType == double.class ? 0D : returnType == float.class ? 0F :
+                        returnType == char.class ? (char) 0 : returnType == short.class ? (short) 0 : (byte) 0;
+            }
+            if (returnType.isInstance(proxy)) {
+                return proxy;
+            }
+            if (returnType == CompletableFuture.class) {
+                return CompletableFuture.completedFuture(null);
+            }
+            return returnType.isInterface() ? empty(returnType) : null;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.galactic.star;
+
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.Icon;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Uploads the Avatar.png as the avatar of the bot, but only if it changed since the last upload. The SHA-256 hash of
+ * the last uploaded image is kept in a file next to the System.json. Changing the avatar has a very tight rate limit,
+ * so failed uploads are tried again later with a growing delay instead of blocking the startup.
+ */
+public class AvatarUploader {
+
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long INITIAL_BACKOFF_MS = 30_000;
+    private final File avatarFile;
+    private final File hashFile;
+    private final ScheduledExecutorService scheduler;
+    private byte[] image;
+    private String hash;
+
+    /**
+     * Creates the uploader. Call load() before upload().
+     *
+     * @param avatarFile The Avatar.png
+     * @param hashFile   File the hash of the last uploaded avatar is stored in
+     * @param scheduler  Scheduler the retries run on
+     */
+    public AvatarUploader(File avatarFile, File hashFile, ScheduledExecutorService scheduler) {
+        this.avatarFile = avatarFile;
+        this.hashFile = hashFile;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Reads the avatar and hashes it
+     *
+     * @return True if it differs from the last uploaded avatar
+     */
+    public boolean load() {
+        try {
+            this.image = Files.readAllBytes(this.avatarFile.toPath());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        this.hash = hash(this.image);
+        return this.isChanged();
+    }
+
+    /**
+     * Checks if the avatar differs from the last uploaded one
+     *
+     * @return True if it has to be uploaded
+     */
+    public boolean isChanged() {
+        try {
+            return !this.hashFile.exists() || !Files.readString(this.hashFile.toPath()).trim().equals(this.hash);
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Uploads the avatar if it changed. Returns right away, the upload and its retries run in the background.
+     *
+     * @param jda JDA instance of the bot
+     */
+    public void upload(JDA jda) {
+        if (!this.isChanged()) {
+            GalacticBot.getBot().getLogger().info("The avatar didn't change, skipping the upload.");
+            return;
+        }
+        this.attempt(jda, 1);
+    }
+
+    /**
+     * Tries to upload the avatar and schedules the next try if it fails
+     *
+     * @param jda     JDA instance of the bot
+     * @param attempt Number of the try, starting at 1
+     */
+    private void attempt(JDA jda, int attempt) {
+        if (jda.getStatus() == JDA.Status.SHUTTING_DOWN || jda.getStatus() == JDA.Status.SHUTDOWN) {
+            return;
+        }
+        jda.getSelfUser().getManager().setAvatar(Icon.from(this.image)).queue(success -> {
+            this.saveHash();
+            GalacticBot.getBot().getLogger().info("Uploaded the new avatar.");
+        }, error -> {
+            if (attempt >= MAX_ATTEMPTS) {
+                GalacticBot.getBot().getLogger().warn("Couldn't upload the avatar after " + attempt + " tries: " +
+                        error.getMessage());
+                return;
+            }
+            long delay = INITIAL_BACKOFF_MS << (attempt - 1);
+            GalacticBot.getBot().getLogger().warn("Couldn't upload the avatar, trying again in " + (delay / 1000) +
+                    "s: " + error.getMessage());
+            this.scheduler.schedule(() -> this.attempt(jda, attempt + 1), delay, TimeUnit.MILLISECONDS);
+        });
+    }
+
+    /**
+     * Stores the hash of the avatar that just got uploaded
+     */
+    private void saveHash() {
+        try {
+            Files.writeString(this.hashFile.toPath(), this.hash, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            GalacticBot.getBot().getLogger().warn("Couldn't write " + this.hashFile.getName() + ", the avatar will " +
+                    "be uploaded again on the next start: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Hashes the image with SHA-256
+     *
+     * @param image Bytes of the image
+     * @return Hex string of the hash
+     */
+    public static String hash(byte[] image) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(image));
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
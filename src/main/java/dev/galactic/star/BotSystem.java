@@ -16,41 +16,33 @@
 
 package dev.galactic.star;
 
+import dev.galactic.star.commands.CommandExecutor;
+import dev.galactic.star.config.ConfigWatcher;
 import dev.galactic.star.config.Configuration;
+import dev.galactic.star.config.RolesAndIdsRegistry;
 import dev.galactic.star.config.system.SystemConfig;
+import dev.galactic.star.console.ConsoleCommand;
+import dev.galactic.star.metrics.MetricsServer;
+import dev.galactic.star.punishments.ExpiryScheduler;
 import net.dv8tion.jda.api.entities.Guild;
-import net.dv8tion.jda.api.entities.channel.Channel;
-
-import java.util.HashMap;
-import java.util.concurrent.ScheduledFuture;
+import net.dv8tion.jda.api.entities.channel.concrete.TextChannel;
 
 /**
  * The main class that has all the configuration classes for the bot.
  */
 public class BotSystem {
 
+    private static final int SCHEDULER_THREADS = 2;
     private static BotSystem INSTANCE;
-    private Guild guild;
-    //Takes 2 Strings, first one is the name, the second one is the description
-    private HashMap<String, String> systemCommands = new HashMap<>();
-    private SystemConfig systemConfig;
+    //Created once and kept across reloads, so reloading doesn't start any new threads
+    private final Scheduler scheduler = new Scheduler(SCHEDULER_THREADS);
+    private final GuildStates guildStates = new GuildStates();
     private Configuration configurations;
     private H2Database db;
-    private ScheduledFuture<?> commandListener;
-    //This is irrelevant. Just keep it here for now
-    private ScheduledFuture<?> dateListener;
-    private Channel logChannel;
-
-    /**
-     * Used to set the guild so that it can be used at other times
-     *
-     * @param guild Guild object
-     */
-    public BotSystem(Guild guild) {
-        INSTANCE = this;
-        this.guild = guild;
-        this.configurations = new Configuration();
-    }
+    private CommandExecutor commandExecutor;
+    private ExpiryScheduler expiryScheduler;
+    private ConfigWatcher configWatcher;
+    private MetricsServer metricsServer;
 
     /**
      * Sets the static INSTANCE field to the current instance of the class and sets the configurations field to a new
@@ -62,19 +54,10 @@ public class BotSystem {
     }
 
     /**
-     * Starts the schedulers such as listening for commands in the console.
+     * Starts listening for commands in the console. Does nothing if it already listens.
      */
     public static void startSchedulers() {
-        BotSystem.getInstance().setCommandListener(Scheduler.listenForCommands());
-        //BotSystem.getInstance().setDateListener(Scheduler.dateListener());
-    }
-
-    /**
-     * Starts/stops schedulers
-     */
-    public static void reloadSchedulers() {
-        getInstance().commandListener.cancel(true);
-        startSchedulers();
+        getInstance().scheduler.listenForCommands(GalacticBot.getBot().getScanner());
     }
 
     /**
@@ -87,40 +70,57 @@ public class BotSystem {
     }
 
     /**
-     * Places the current system commands into the hashmap so that it can be used in the printHelp method
+     * Registers the system commands that can be typed into the console
      */
     public void loadSystemCommands() {
-        this.systemCommands.put("exit|stop", "Stop and close the connection of the bot.");
-        this.systemCommands.put("info|i", "Get information about the bot.");
-        this.systemCommands.put("reload|rl", "Reloads the configuration and bot itself.");
+        GalacticBot bot = GalacticBot.getBot();
+        this.scheduler.registerCommand(new ConsoleCommand("exit|stop", "Stop and close the connection of the bot.",
+                args -> bot.exitBot(true)));
+        this.scheduler.registerCommand(new ConsoleCommand("info|i", "Get information about the bot.",
+                args -> bot.printInfo()));
+        this.scheduler.registerCommand(new ConsoleCommand("stats", "Shows the latency of the commands and the " +
+                "database and the gateway ping.", args -> bot.printStats()));
+        this.scheduler.registerCommand(new ConsoleCommand("reload|rl", "Reloads the configuration without " +
+                "reconnecting the bot.", args -> bot.reload()));
+        this.scheduler.registerCommand(new ConsoleCommand("restart", "Reconnects the bot and reloads everything.",
+                args -> bot.restart()));
+        this.scheduler.registerCommand(new ConsoleCommand("help", "Shows this list of commands.",
+                args -> bot.printHelp()));
     }
 
     /**
      * Loads and generates the configurations files
      */
     public void loadConfigurations() {
-        GalacticBot.getBot().getLogger().info("Loading Configurations...");
-        this.configurations.generateFiles();
-        this.systemConfig = this.configurations.getSystemConfig();
-        GalacticBot.getBot().getLogger().info("Loaded Configurations.");
+        this.loadSystemConfiguration();
+        this.loadCommandConfigurations();
     }
 
     /**
-     * Getter for the system commands
-     *
-     * @return HashMap&lt;String, String*gt; name/aliases and the description of them
+     * Loads and generates the System.json
      */
-    public HashMap<String, String> getSystemCommands() {
-        return systemCommands;
+    public void loadSystemConfiguration() {
+        GalacticBot.getBot().getLogger().info("Loading the System.json...");
+        this.configurations.generateSystemFiles();
+        GalacticBot.getBot().getLogger().info("Loaded the System.json.");
     }
 
     /**
-     * Sets the hashmap of commands so the help command can print them
+     * Loads and generates the command files and the RolesAndIds.yml
+     */
+    public void loadCommandConfigurations() {
+        GalacticBot.getBot().getLogger().info("Loading the command configurations...");
+        this.configurations.loadCommandFiles();
+        GalacticBot.getBot().getLogger().info("Loaded the command configurations.");
+    }
+
+    /**
+     * Getter for the scheduler that owns the shared thread pool and the console commands
      *
-     * @param systemCommands HashMap&lt;String, String&gt; name/aliases and the description of them
+     * @return Scheduler instance
      */
-    public void setSystemCommands(HashMap<String, String> systemCommands) {
-        this.systemCommands = systemCommands;
+    public Scheduler getScheduler() {
+        return scheduler;
     }
 
     /**
@@ -129,7 +129,7 @@ public class BotSystem {
      * @return SystemConfig instance
      */
     public SystemConfig getSystemConfig() {
-        return systemConfig;
+        return this.configurations.getSystemConfig();
     }
 
     /**
@@ -138,7 +138,7 @@ public class BotSystem {
      * @param systemConfig The System config class
      */
     public void setSystemConfig(SystemConfig systemConfig) {
-        this.systemConfig = systemConfig;
+        this.configurations.setSystemConfig(systemConfig);
     }
 
     /**
@@ -160,21 +160,22 @@ public class BotSystem {
     }
 
     /**
-     * Getter for JDA Guild class
+     * Getter for the guild of guild_id in the System.json
      *
-     * @return Guild instance
+     * @return Guild instance, or null if it isn't on the shards of this process
      */
     public Guild getGuild() {
-        return guild;
+        GuildState state = this.guildStates.get(RolesAndIdsRegistry.parseId(this.getSystemConfig().getGuild_id()));
+        return state == null ? null : state.guild();
     }
 
     /**
-     * Setter for Guild
+     * Getter for the states of the guilds by their id
      *
-     * @param guild Object to set to guild
+     * @return GuildStates
      */
-    public void setGuild(Guild guild) {
-        this.guild = guild;
+    public GuildStates getGuildStates() {
+        return guildStates;
     }
 
     /**
@@ -196,56 +197,94 @@ public class BotSystem {
     }
 
     /**
-     * Returns the scheduler that listens for commands
+     * Getter for the executor that runs the command handlers
+     *
+     * @return CommandExecutor instance
+     */
+    public CommandExecutor getCommandExecutor() {
+        return commandExecutor;
+    }
+
+    /**
+     * Setter for the executor that runs the command handlers
+     *
+     * @param commandExecutor CommandExecutor instance to set
+     */
+    public void setCommandExecutor(CommandExecutor commandExecutor) {
+        this.commandExecutor = commandExecutor;
+    }
+
+    /**
+     * Getter for the scheduler that lifts expired punishments
+     *
+     * @return ExpiryScheduler instance
+     */
+    public ExpiryScheduler getExpiryScheduler() {
+        return expiryScheduler;
+    }
+
+    /**
+     * Setter for the scheduler that lifts expired punishments
+     *
+     * @param expiryScheduler ExpiryScheduler instance to set
+     */
+    public void setExpiryScheduler(ExpiryScheduler expiryScheduler) {
+        this.expiryScheduler = expiryScheduler;
+    }
+
+    /**
+     * Getter for the watcher that reloads the configuration files when they are saved
      *
-     * @return ScheduledFuture
+     * @return ConfigWatcher instance, null if watch_config is disabled
      */
-    public ScheduledFuture<?> getCommandListener() {
-        return commandListener;
+    public ConfigWatcher getConfigWatcher() {
+        return configWatcher;
     }
 
     /**
-     * Setter for the command listener schedulers
+     * Setter for the watcher that reloads the configuration files when they are saved
      *
-     * @param commandListener ScheduledFuture instance to set
+     * @param configWatcher ConfigWatcher instance to set
      */
-    public void setCommandListener(ScheduledFuture<?> commandListener) {
-        this.commandListener = commandListener;
+    public void setConfigWatcher(ConfigWatcher configWatcher) {
+        this.configWatcher = configWatcher;
     }
 
     /**
-     * Getter for the Date Scheduler
+     * Getter for the server of the metrics endpoint
      *
-     * @return ScheduledFuture instance
+     * @return MetricsServer instance, null if the endpoint is disabled
      */
-    public ScheduledFuture<?> getDateListener() {
-        return dateListener;
+    public MetricsServer getMetricsServer() {
+        return metricsServer;
     }
 
     /**
-     * Setter for Date Scheduler NOTE: DON'T WORRY ABOUT THIS, MIGHT BE USED FOR FUTURE FEATURES
+     * Setter for the server of the metrics endpoint
      *
-     * @param dateListener SchedulerFuture listener
+     * @param metricsServer MetricsServer instance to set
      */
-    public void setDateListener(ScheduledFuture<?> dateListener) {
-        this.dateListener = dateListener;
+    public void setMetricsServer(MetricsServer metricsServer) {
+        this.metricsServer = metricsServer;
     }
 
     /**
      * Getter for the logs channel in your discord server
      *
-     * @return Log channel instance
+     * @return Log channel instance, or null if no guild has it
      */
-    public Channel getLogChannel() {
-        return logChannel;
+    public TextChannel getLogChannel() {
+        return this.guildStates.getLogChannel();
     }
 
     /**
-     * Setter for the log channel
+     * Getter for the logs channel of a guild
      *
-     * @param logChannel Channel instance to set. Must be a TextChannel
+     * @param guildId Id of the guild
+     * @return Log channel instance, or null if the guild doesn't have it
      */
-    public void setLogChannel(Channel logChannel) {
-        this.logChannel = logChannel;
+    public TextChannel getLogChannel(long guildId) {
+        GuildState state = this.guildStates.get(guildId);
+        return state == null ? null : state.logChannel();
     }
 }
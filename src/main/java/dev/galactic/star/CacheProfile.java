@@ -0,0 +1,138 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.galactic.star;
+
+import dev.galactic.star.config.system.CacheConfig;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.requests.GatewayIntent;
+import net.dv8tion.jda.api.sharding.DefaultShardManagerBuilder;
+import net.dv8tion.jda.api.sharding.ShardManager;
+import net.dv8tion.jda.api.utils.ChunkingFilter;
+import net.dv8tion.jda.api.utils.MemberCachePolicy;
+import net.dv8tion.jda.api.utils.cache.CacheFlag;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Presets of what JDA keeps in memory, set with the profile of the cache section in the System.json. Roles and
+ * channels are always cached, the commands don't need anything else: the member that used a command comes with the
+ * interaction and other members can be fetched with Members.get().
+ *
+ * @see dev.galactic.star.commands.Members
+ */
+public enum CacheProfile {
+    /**
+     * No intents and no members except the bot itself. The lowest heap use.
+     */
+    MINIMAL(EnumSet.noneOf(GatewayIntent.class), MemberCachePolicy.NONE, ChunkingFilter.NONE,
+            EnumSet.noneOf(CacheFlag.class)),
+    /**
+     * Bans, the guild owners and the permission overrides and tags of the channels and roles. Doesn't need any
+     * privileged intent.
+     */
+    MODERATION(EnumSet.of(GatewayIntent.GUILD_BANS), MemberCachePolicy.OWNER, ChunkingFilter.NONE,
+            EnumSet.of(CacheFlag.MEMBER_OVERRIDES, CacheFlag.ROLE_TAGS)),
+    /**
+     * Every intent, every member is loaded on startup and every cache flag is on. The privileged intents have to be
+     * enabled in the developer portal, and the heap grows with the size of the guilds.
+     */
+    FULL(EnumSet.allOf(GatewayIntent.class), MemberCachePolicy.ALL, ChunkingFilter.ALL,
+            EnumSet.allOf(CacheFlag.class));
+
+    private final Set<GatewayIntent> intents;
+    private final MemberCachePolicy memberCachePolicy;
+    private final ChunkingFilter chunkingFilter;
+    private final Set<CacheFlag> cacheFlags;
+
+    CacheProfile(Set<GatewayIntent> intents, MemberCachePolicy memberCachePolicy, ChunkingFilter chunkingFilter,
+                 Set<CacheFlag> cacheFlags) {
+        this.intents = intents;
+        this.memberCachePolicy = memberCachePolicy;
+        this.chunkingFilter = chunkingFilter;
+        this.cacheFlags = cacheFlags;
+    }
+
+    /**
+     * Parses the profile from the System.json value
+     *
+     * @param profile String profile, can be null
+     * @return CacheProfile, MODERATION if it isn't set
+     * @throws IllegalArgumentException If it isn't a valid profile
+     */
+    public static CacheProfile of(String profile) {
+        if (profile == null || profile.isBlank()) {
+            return MODERATION;
+        }
+        return CacheProfile.valueOf(profile.trim().toUpperCase());
+    }
+
+    /**
+     * Creates the builder of the shards with the intents and caches of the profile and the extras of the cache
+     * section. Cache flags whose intent isn't enabled are left out with a warning.
+     *
+     * @param token  Token of the bot
+     * @param config The cache section of the System.json
+     * @return DefaultShardManagerBuilder
+     * @throws IllegalArgumentException If an extra intent or cache flag doesn't exist
+     */
+    public DefaultShardManagerBuilder createBuilder(String token, CacheConfig config) {
+        EnumSet<GatewayIntent> intents = EnumSet.noneOf(GatewayIntent.class);
+        intents.addAll(this.intents);
+        config.getExtra_intents().forEach(intent -> intents.add(GatewayIntent.valueOf(intent.trim().toUpperCase())));
+        EnumSet<CacheFlag> flags = EnumSet.noneOf(CacheFlag.class);
+        flags.addAll(this.cacheFlags);
+        config.getExtra_cache_flags().forEach(flag -> flags.add(CacheFlag.valueOf(flag.trim().toUpperCase())));
+        flags.removeIf(flag -> {
+            GatewayIntent required = flag.getRequiredIntent();
+            if (required == null || intents.contains(required)) {
+                return false;
+            }
+            if (!this.cacheFlags.contains(flag)) {
+                GalacticBot.getBot().getLogger().warn("The cache flag " + flag + " needs the intent " + required +
+                        ", it is left out.");
+            }
+            return true;
+        });
+        return DefaultShardManagerBuilder.create(token, intents)
+                .setMemberCachePolicy(this.memberCachePolicy)
+                .setChunkingFilter(this.chunkingFilter)
+                .disableCache(EnumSet.complementOf(flags))
+                .enableCache(flags);
+    }
+
+    /**
+     * Logs how many entities are cached and how much heap is used, so the JVM can be sized for the profile
+     *
+     * @param shardManager The shards after they are ready
+     */
+    public void logCacheSizes(ShardManager shardManager) {
+        long members = 0;
+        long channels = 0;
+        for (Guild guild : shardManager.getGuildCache()) {
+            members += guild.getMemberCache().size();
+            channels += guild.getChannels().size();
+        }
+        Runtime run = Runtime.getRuntime();
+        long megabyte = 1024L * 1024L;
+        GalacticBot.getBot().getLogger().info("Cache profile " + this.name().toLowerCase() + ": " +
+                shardManager.getGuildCache().size() + " guilds, " + members + " members, " +
+                shardManager.getUserCache().size() + " users, " + shardManager.getRoleCache().size() + " roles, " +
+                channels + " channels, " + shardManager.getEmojiCache().size() + " emojis. Heap used: " +
+                (run.totalMemory() - run.freeMemory()) / megabyte + "MB of " + run.maxMemory() / megabyte + "MB.");
+    }
+}
@@ -18,37 +18,64 @@ package dev.galactic.star;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import dev.galactic.star.commands.CommandExecutor;
 import dev.galactic.star.commands.CommandLoader;
+import dev.galactic.star.config.ConfigFile;
+import dev.galactic.star.config.ConfigSnapshot;
+import dev.galactic.star.config.ConfigWatcher;
 import dev.galactic.star.config.Configuration;
+import dev.galactic.star.config.system.CacheConfig;
+import dev.galactic.star.config.system.MetricsConfig;
+import dev.galactic.star.config.system.ShardingConfig;
 import dev.galactic.star.config.system.SystemActivity;
 import dev.galactic.star.config.system.SystemConfig;
+import dev.galactic.star.console.ConsoleCommand;
+import dev.galactic.star.database.UserStateCache;
+import dev.galactic.star.metrics.Metrics;
+import dev.galactic.star.metrics.MetricsServer;
+import dev.galactic.star.punishments.ExpiryScheduler;
 import net.dv8tion.jda.api.JDA;
-import net.dv8tion.jda.api.JDABuilder;
 import net.dv8tion.jda.api.OnlineStatus;
 import net.dv8tion.jda.api.entities.Activity;
 import net.dv8tion.jda.api.entities.Activity.ActivityType;
-import net.dv8tion.jda.api.entities.Icon;
 import net.dv8tion.jda.api.exceptions.InvalidTokenException;
-import net.dv8tion.jda.api.utils.cache.CacheFlag;
+import net.dv8tion.jda.api.sharding.DefaultShardManagerBuilder;
+import net.dv8tion.jda.api.sharding.ShardManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.nio.file.Files;
-import java.util.Map.Entry;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * The main class/starting point
  */
 public class GalacticBot {
 
+    private static final String AVATAR_HASH_FILE = "Avatar.sha256";
+    //How long the login waits for the shards, plus the time every shard needs as they log in one after another
+    private static final long READY_TIMEOUT_MS = 60_000;
+    private static final long SHARD_LOGIN_MS = 6_000;
     private static GalacticBot bot = new GalacticBot();
     private final org.slf4j.Logger logger = LoggerFactory.getLogger("GalacticBot");
     private final Scanner scanner = new Scanner(System.in);
-    private JDA jda;
+    private volatile ShardManager shardManager;
     private BotSystem system;
+    private volatile long startedAt = System.nanoTime();
+    //The last reload or restart, the next one only starts once it is done
+    private CompletableFuture<?> lastApply = CompletableFuture.completedFuture(null);
 
     private GalacticBot() {
         bot = this;
@@ -169,29 +196,65 @@ public class GalacticBot {
 
     /**
      * Loads everything such as the system commands, configurations, database connection, bot login, command
-     * listener, registers commands, and sets the profile pic of the bot to whatever image is named Avatar.png
+     * listener, registers commands, and sets the profile pic of the bot to whatever image is named Avatar.png. The
+     * steps that don't depend on each other run at the same time.
      */
     public void loadEverything() {
-        this.system = new BotSystem();
-        this.system.loadSystemCommands();
-        this.system.loadConfigurations();
-        Configuration.getInstance().connectToDatabase();
-        this.loginToBot();
-        this.system.setLogChannel(jda.getTextChannelById(this.system.getConfigurations().getRolesAndIdsConfigs()
-                .stream()
-                .filter(e -> e.getName()
-                        .equalsIgnoreCase("log_channel"))
-                .toList()
-                .get(0)
-                .getId()
-                .toString()));
-        BotSystem.startSchedulers();
-        this.jda.addEventListener(new CommandLoader());
-        CommandLoader.registerCommands(this.jda);
+        this.startedAt = System.nanoTime();
+        if (this.system == null) {
+            this.system = new BotSystem();
+            this.system.loadSystemCommands();
+        }
+        //Asks for the missing settings in the console, so it has to be done before anything else
+        this.system.loadSystemConfiguration();
+        StartupPipeline pipeline = new StartupPipeline();
+        CompletableFuture<Void> commandFiles = pipeline.stage("command files",
+                this.system::loadCommandConfigurations);
+        CompletableFuture<AvatarUploader> avatar = pipeline.stage("avatar hash", () -> {
+            AvatarUploader uploader = new AvatarUploader(this.system.getConfigurations().getAvatarFile(),
+                    new File(Configuration.getDataPath() + AVATAR_HASH_FILE), this.system.getScheduler().getExecutor());
+            uploader.load();
+            return uploader;
+        });
+        CompletableFuture<Void> database = pipeline.stage("database",
+                () -> Configuration.getInstance().connectToDatabase());
+        CompletableFuture<Void> login = pipeline.stage("login", this::loginToBot);
+        pipeline.stage("guild states", this::loadGuildStates, login, commandFiles);
+        pipeline.stage("punishment expiries", () -> {
+            this.system.setExpiryScheduler(new ExpiryScheduler(this.system.getDb(), this.shardManager,
+                    this.system.getScheduler().getExecutor()));
+            this.system.getExpiryScheduler().load();
+        }, login, database);
+        pipeline.stage("commands", () -> {
+            this.system.setCommandExecutor(new CommandExecutor(this.system.getSystemConfig().getExecutor()));
+            this.shardManager.addEventListener(new CommandLoader(this.system.getCommandExecutor()));
+            CommandLoader.registerCommands(this.shardManager).join();
+        }, login, commandFiles, database);
+        pipeline.stage("avatar upload", () -> avatar.join().upload(this.getJda()), login, avatar);
+        long took;
         try {
-            this.jda.getSelfUser().getManager().setAvatar(Icon.from(this.system.getConfigurations().getAvatarFile())).submit().join();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+            took = pipeline.await();
+        } catch (RuntimeException e) {
+            //The stages only fail, shutting down is done here so the other stages can finish first
+            this.logger.error("Couldn't start the bot: " + e.getMessage());
+            this.exitBot(true);
+            System.exit(1);
+            return;
+        }
+        this.logger.info("Loaded everything in " + took + "ms.");
+        BotSystem.startSchedulers();
+        this.startConfigWatcher();
+        this.startMetricsServer();
+    }
+
+    /**
+     * Resolves the log channel and the roles of the RolesAndIds.yml in every guild of the shards
+     */
+    private void loadGuildStates() {
+        this.system.getGuildStates().refresh(this.shardManager, Configuration.getInstance().getSnapshot().ids());
+        if (this.system.getLogChannel() == null) {
+            this.logger.warn("Couldn't find the log channel, check the " + GuildState.LOG_CHANNEL + " in the " +
+                    "RolesAndIds.yml.");
         }
     }
 
@@ -202,66 +265,343 @@ public class GalacticBot {
      */
     public void exitBot(boolean finalExit) {
         this.logger.warn("Shutting down Bot...");
-        if (this.jda != null) {
-            this.jda.shutdownNow();
+        if (this.system.getExpiryScheduler() != null) {
+            this.system.getExpiryScheduler().shutdown();
+        }
+        if (this.system.getCommandExecutor() != null) {
+            //New interactions get the busy reply, the running commands can still respond before the shards go away
+            this.system.getCommandExecutor().shutdown(10, TimeUnit.SECONDS);
+        }
+        if (this.shardManager != null) {
+            this.shardManager.shutdown();
+        }
+        if (this.system.getDb() != null) {
+            this.system.getDb().disconnect();
         }
         if (finalExit) {
-            this.system.getCommandListener().cancel(true);
+            if (this.system.getConfigWatcher() != null) {
+                this.system.getConfigWatcher().close();
+            }
+            if (this.system.getMetricsServer() != null) {
+                this.system.getMetricsServer().close();
+            }
+            this.system.getScheduler().shutdown();
             GalacticBot.getBot().scanner.close();
         }
-        this.system.getDb().disconnect();
         this.logger.warn("Shut down Discord Bot.");
     }
 
     /**
-     * Reloads the configuration and restarts the connection.
+     * Reloads the configuration and restarts the connection. Waits for a running reload to finish first.
      */
-    public void reload() {
-        this.logger.warn("Reloading bot...");
-        this.exitBot(false);
-        this.loadEverything();
-        this.logger.warn("Reloaded bot.");
+    public void restart() {
+        //Runs on the calling thread once the running reload is done, the next reloads wait for it
+        CompletableFuture<Void> restarted = new CompletableFuture<>();
+        CompletableFuture<?> previous;
+        synchronized (this) {
+            previous = this.lastApply;
+            this.lastApply = restarted;
+        }
+        previous.handle((result, error) -> null).join();
+        try {
+            this.logger.warn("Restarting bot...");
+            this.exitBot(false);
+            this.loadEverything();
+            this.logger.warn("Restarted bot.");
+        } finally {
+            restarted.complete(null);
+        }
     }
 
     /**
-     * Connects the bot to Discord's API so that it can be used
+     * Reloads the configuration without reconnecting. The files are parsed and checked in the background, and only
+     * replace the current configuration if they are valid. The commands are only registered again if they changed.
+     *
+     * @return CompletableFuture with the new snapshot
+     */
+    public CompletableFuture<ConfigSnapshot> reload() {
+        return this.serialize(this::reloadAll);
+    }
+
+    /**
+     * Reloads all configuration files and applies them
+     *
+     * @return CompletableFuture with the new snapshot
+     */
+    private CompletableFuture<ConfigSnapshot> reloadAll() {
+        this.logger.warn("Reloading the configuration...");
+        Configuration config = Configuration.getInstance();
+        ConfigSnapshot old = config.getSnapshot();
+        return config.reload(this.system.getScheduler().getExecutor())
+                .thenCompose(snapshot -> this.apply(old, snapshot).thenApply(done -> snapshot))
+                .whenComplete((snapshot, error) -> {
+                    if (error != null) {
+                        Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                        this.logger.error("Couldn't reload the configuration, keeping version " + old.version() +
+                                ": " + cause.getMessage());
+                        return;
+                    }
+                    this.logger.warn("Reloaded the configuration, now at version " + snapshot.version() + ".");
+                });
+    }
+
+    /**
+     * Reloads a single configuration file that changed and applies only what it affects
+     *
+     * @param file The file that changed
+     * @return CompletableFuture with the new snapshot
+     */
+    public CompletableFuture<ConfigSnapshot> reload(ConfigFile file) {
+        return this.serialize(() -> this.reloadFile(file));
+    }
+
+    /**
+     * Reloads a single configuration file and applies it
+     *
+     * @param file The file that changed
+     * @return CompletableFuture with the new snapshot
+     */
+    private CompletableFuture<ConfigSnapshot> reloadFile(ConfigFile file) {
+        Configuration config = Configuration.getInstance();
+        ConfigSnapshot old = config.getSnapshot();
+        return config.reload(file, this.system.getScheduler().getExecutor())
+                .thenCompose(snapshot -> {
+                    this.logger.info("Reloaded " + file.getPath() + ", the configuration is now at version " +
+                            snapshot.version() + ".");
+                    if (file == ConfigFile.ROLES_AND_IDS) {
+                        this.loadGuildStates();
+                        //The role and channel names of the privileges are resolved with the ids
+                        CommandLoader.loadPermissions(snapshot);
+                        return CompletableFuture.completedFuture(snapshot);
+                    }
+                    if (file == ConfigFile.SYSTEM) {
+                        this.applySystemConfig(old.systemConfig(), snapshot.systemConfig());
+                    }
+                    return CommandLoader.registerCommands(this.shardManager).thenApply(done -> snapshot);
+                })
+                .whenComplete((snapshot, error) -> {
+                    if (error != null) {
+                        Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                        this.logger.error("Couldn't reload " + file.getPath() + ", keeping version " + old.version()
+                                + ": " + cause.getMessage());
+                    }
+                });
+    }
+
+    /**
+     * Runs a reload once the previous reload or restart is done, no matter if it failed. The watcher and the
+     * console commands would otherwise swap the handlers and write the command hashes at the same time.
+     *
+     * @param task Starts the reload
+     * @param <T>  Result type
+     * @return CompletableFuture of the task
+     */
+    private synchronized <T> CompletableFuture<T> serialize(Supplier<CompletableFuture<T>> task) {
+        CompletableFuture<T> next = this.lastApply.handle((result, error) -> null)
+                .thenCompose(previous -> task.get());
+        this.lastApply = next;
+        return next;
+    }
+
+    /**
+     * Applies a reloaded configuration to the running bot
+     *
+     * @param old      The snapshot before the reload
+     * @param snapshot The reloaded snapshot
+     * @return CompletableFuture that completes once the commands are registered
+     */
+    private CompletableFuture<Boolean> apply(ConfigSnapshot old, ConfigSnapshot snapshot) {
+        this.applySystemConfig(old.systemConfig(), snapshot.systemConfig());
+        this.loadGuildStates();
+        return CommandLoader.registerCommands(this.shardManager);
+    }
+
+    /**
+     * Applies the settings of a reloaded System.json that can change while the bot runs
+     *
+     * @param before The System.json before the reload
+     * @param after  The reloaded System.json
+     */
+    private void applySystemConfig(SystemConfig before, SystemConfig after) {
+        Gson gson = new Gson();
+        if (!after.getToken().equals(before.getToken())
+                || !gson.toJson(after.getDatabase()).equals(gson.toJson(before.getDatabase()))
+                || !gson.toJson(after.getExecutor()).equals(gson.toJson(before.getExecutor()))
+                || !gson.toJson(after.getCache()).equals(gson.toJson(before.getCache()))
+                || !gson.toJson(after.getSharding()).equals(gson.toJson(before.getSharding()))) {
+            this.logger.warn("The token, database, executor, cache or sharding settings changed, use \"restart\" to " +
+                    "apply them.");
+        }
+        if (after.getActivity() != null && after.getOnline_status() != null) {
+            this.shardManager.setPresence(OnlineStatus.valueOf(after.getOnline_status().toUpperCase()),
+                    Activity.of(ActivityType.valueOf(after.getActivity().getType().toUpperCase()),
+                            after.getActivity().getMessage()));
+        }
+    }
+
+    /**
+     * Starts watching the configuration files if watch_config is enabled. Keeps running across restarts.
+     */
+    private void startConfigWatcher() {
+        if (this.system.getConfigWatcher() != null || !this.system.getSystemConfig().isWatch_config()) {
+            return;
+        }
+        ConfigWatcher watcher = new ConfigWatcher(Path.of(Configuration.getDataPath()),
+                this.system.getScheduler().getExecutor(), this::reload);
+        watcher.start();
+        this.system.setConfigWatcher(watcher);
+    }
+
+    /**
+     * Starts the metrics endpoint if it is enabled and registers the gauges of the bot. Keeps running across
+     * restarts, the gauges always read the current shards and executor.
+     */
+    private void startMetricsServer() {
+        MetricsConfig config = this.system.getSystemConfig().getMetrics();
+        if (this.system.getMetricsServer() != null || !config.isEnabled()) {
+            return;
+        }
+        Metrics metrics = Metrics.getInstance();
+        metrics.registerGauge("gateway_ping_ms", "Gateway ping in milliseconds", "shard", () -> {
+            Map<String, Long> pings = new HashMap<>();
+            ShardManager manager = this.shardManager;
+            if (manager != null) {
+                manager.getShards().forEach(shard -> pings.put(String.valueOf(shard.getShardInfo().getShardId()),
+                        shard.getGatewayPing()));
+            }
+            return pings;
+        });
+        metrics.registerGauge("command_queue_depth", "Interactions waiting for a command thread", "", () -> {
+            CommandExecutor executor = this.system.getCommandExecutor();
+            return executor == null ? Map.of() : Map.of("", executor.getQueueDepth());
+        });
+        try {
+            MetricsServer server = new MetricsServer(metrics, config.getHost(), config.getPort());
+            server.start();
+            this.system.setMetricsServer(server);
+        } catch (IOException e) {
+            this.logger.warn("Couldn't start the metrics endpoint on " + config.getHost() + ":" + config.getPort() +
+                    ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Connects the bot to Discord's API so that it can be used. Without sharding the bot runs a single shard, with
+     * it every shard in shard_ids gets its own gateway connection and event thread.
+     *
+     * @throws IllegalStateException If the token is invalid or the shards don't get ready in time
      */
     private void loginToBot() {
-        SystemActivity systemActivity = this.system.getSystemConfig().getActivity();
+        SystemConfig systemConfig = this.system.getSystemConfig();
+        SystemActivity systemActivity = systemConfig.getActivity();
+        CacheConfig cacheConfig = systemConfig.getCache();
+        ShardingConfig sharding = systemConfig.getSharding();
+        CacheProfile profile = CacheProfile.of(cacheConfig.getProfile());
+        DefaultShardManagerBuilder builder = profile.createBuilder(systemConfig.getToken(), cacheConfig);
+        if (!sharding.isEnabled()) {
+            builder.setShardsTotal(1).setShards(0);
+        } else {
+            builder.setShardsTotal(sharding.getShard_total());
+            if (!sharding.getShard_ids().isEmpty()) {
+                builder.setShards(sharding.getShard_ids());
+            }
+        }
+        ShardReadyListener readyListener = new ShardReadyListener();
         try {
-            jda = JDABuilder.createDefault(this.system.getSystemConfig().getToken())
+            this.shardManager = builder
                     .setAutoReconnect(true)
-                    .setStatus(OnlineStatus.valueOf(this.system.getSystemConfig().getOnline_status().toUpperCase()))
-                    .enableCache(CacheFlag.MEMBER_OVERRIDES)
+                    .addEventListeners(this.system.getGuildStates(), readyListener)
+                    .setStatus(OnlineStatus.valueOf(systemConfig.getOnline_status().toUpperCase()))
                     .setActivity(Activity.of(
                             ActivityType.valueOf(systemActivity.getType().toUpperCase()),
                             systemActivity.getMessage()
                     ))
                     .build();
-            String guildId = Configuration.getInstance().getSystemConfig().getGuild_id();
-            if (jda.getGuildById(guildId) == null) {
-                return;
-            }
-            this.system.setGuild(jda.getGuildById(guildId));
+            //The guilds have to be loaded to register the commands in them. The shards log in one after another
+            int shards = sharding.isEnabled() && !sharding.getShard_ids().isEmpty()
+                    ? (int) sharding.getShard_ids().stream().distinct().count() : this.shardManager.getShardsTotal();
+            readyListener.await(shards, READY_TIMEOUT_MS + shards * SHARD_LOGIN_MS);
+            this.logger.info("Started " + this.shardManager.getShardsRunning() + " of " +
+                    this.shardManager.getShardsTotal() + " shard(s).");
+            profile.logCacheSizes(this.shardManager);
         } catch (InvalidTokenException | IllegalArgumentException e) {
-            this.logger.warn("Invalid token. Please check it and try again: " + e.getMessage());
-            exitBot(true);
-            System.exit(0);
+            throw new IllegalStateException("Invalid token. Please check it and try again: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            if (this.shardManager != null) {
+                this.shardManager.removeEventListener(readyListener);
+            }
         }
     }
 
-
     /**
-     * Prints the list of commands in the system commands hashmap
+     * Prints the list of registered console commands
      */
     public void printHelp() {
         this.logger.info("----------------------------Help Commands-----------------------------");
-        for (Entry<String, String> e : this.system.getSystemCommands().entrySet()) {
-            this.logger.info(e.getKey() + " - " + e.getValue());
+        for (ConsoleCommand command : this.system.getScheduler().getCommands()) {
+            this.logger.info(command.getUsage() + " - " + command.getDescription());
         }
         this.logger.info("----------------------------Help Commands-----------------------------");
     }
 
+    /**
+     * Prints the latency and error counts of the commands, the database timings and the gauges, the same data the
+     * metrics endpoint serves
+     */
+    public void printStats() {
+        this.logger.info("----------------------------------------");
+        List<String> lines = Metrics.getInstance().describe();
+        if (lines.isEmpty()) {
+            this.logger.info("Nothing recorded yet.");
+        }
+        lines.forEach(this.logger::info);
+        this.logger.info("----------------------------------------");
+    }
+
+    /**
+     * Prints information about the JVM, the caches and the thread pools of the bot
+     */
+    public void printInfo() {
+        Runtime run = Runtime.getRuntime();
+        long MEGABYTE = 1024L * 1024L;
+        this.logger.info("----------------------------------------");
+        this.logger.info("JVM Version: " + Runtime.version());
+        this.logger.info("Processors: " + run.availableProcessors());
+        this.logger.info("Available Memory in MB: " + ((run.totalMemory() - run.freeMemory()) / MEGABYTE));
+        this.logger.info("Threads: " + ManagementFactory.getThreadMXBean().getThreadCount() + ", scheduler pool: " +
+                this.system.getScheduler().getPoolSize() + ", scheduled tasks: " +
+                this.system.getScheduler().getQueuedTasks());
+        if (this.shardManager != null) {
+            for (JDA shard : this.shardManager.getShards()) {
+                this.logger.info("Shard " + shard.getShardInfo().getShardString() + ": " + shard.getStatus() + ", " +
+                        shard.getGuildCache().size() + " guilds, gateway ping " + shard.getGatewayPing() + "ms");
+            }
+            CacheProfile.of(this.system.getSystemConfig().getCache().getProfile()).logCacheSizes(this.shardManager);
+        }
+        H2Database db = this.system.getDb();
+        if (db != null) {
+            UserStateCache cache = db.getUserCache();
+            this.logger.info("User cache size: " + cache.size() + ", hits: " + cache.getHits() + ", misses: " +
+                    cache.getMisses() + ", evictions: " + cache.getEvictions());
+        }
+        ExpiryScheduler expiries = this.system.getExpiryScheduler();
+        if (expiries != null) {
+            this.logger.info("Temporary punishments pending: " + expiries.getPending());
+        }
+        CommandExecutor executor = this.system.getCommandExecutor();
+        if (executor != null) {
+            this.logger.info("Commands active/queued: " + executor.getActiveCount() + "/" +
+                    executor.getQueueDepth() + ", completed: " + executor.getCompleted() + ", failed: " +
+                    executor.getFailed());
+            this.logger.info("Commands rejected (queue full/command limit): " + executor.getRejectedQueueFull() +
+                    "/" + executor.getRejectedCommandLimit());
+        }
+        this.logger.info("----------------------------------------");
+    }
+
     /**
      * Returns the logger object
      *
@@ -272,12 +612,35 @@ public class GalacticBot {
     }
 
     /**
-     * Returns the JDA Object instance
+     * Returns the JDA instance of the first shard of this process. The guilds are spread over all shards, use
+     * getShardManager() to look them up.
      *
-     * @return JDA Object
+     * @return JDA Object, or null if the bot isn't logged in
      */
     public JDA getJda() {
-        return jda;
+        ShardManager manager = this.shardManager;
+        if (manager == null || manager.getShards().isEmpty()) {
+            return null;
+        }
+        return manager.getShards().get(0);
+    }
+
+    /**
+     * Returns the shards of the bot
+     *
+     * @return ShardManager, or null if the bot isn't logged in
+     */
+    public ShardManager getShardManager() {
+        return shardManager;
+    }
+
+    /**
+     * Getter for when the bot last started loading, used to measure how long the startup took
+     *
+     * @return System.nanoTime() of the start
+     */
+    public long getStartedAt() {
+        return startedAt;
     }
 
     /**
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.galactic.star;
+
+import dev.galactic.star.config.RolesAndIdsRegistry;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Role;
+import net.dv8tion.jda.api.entities.channel.concrete.TextChannel;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * What the bot keeps of one guild: the guild, its log channel and the roles of the RolesAndIds.yml that are in it.
+ * Built again when the guild becomes ready and whenever the RolesAndIds.yml is reloaded.
+ *
+ * @param guild      The guild
+ * @param logChannel The log channel, or null if it isn't in this guild
+ * @param roles      The roles of the RolesAndIds.yml in this guild by their case-folded name
+ */
+public record GuildState(Guild guild, TextChannel logChannel, Map<String, Role> roles) {
+
+    /**
+     * Name of the log channel in the RolesAndIds.yml
+     */
+    public static final String LOG_CHANNEL = "log_channel";
+
+    /**
+     * Resolves the entries of the RolesAndIds.yml in the guild
+     *
+     * @param guild The guild
+     * @param ids   Index of the RolesAndIds.yml
+     * @return GuildState
+     */
+    public static GuildState of(Guild guild, RolesAndIdsRegistry ids) {
+        Map<String, Role> roles = new HashMap<>();
+        ids.getIds(RolesAndIdsRegistry.ROLE).forEach((name, id) -> {
+            Role role = guild.getRoleById(id);
+            if (role != null) {
+                roles.put(name, role);
+            }
+        });
+        return new GuildState(guild, ids.getTextChannel(guild, LOG_CHANNEL), Map.copyOf(roles));
+    }
+
+    /**
+     * Gets a role of the RolesAndIds.yml in this guild
+     *
+     * @param name Name of the entry, case-insensitive
+     * @return Role or null if it isn't in this guild
+     */
+    public Role getRole(String name) {
+        return this.roles.get(RolesAndIdsRegistry.fold(name));
+    }
+
+    /**
+     * Getter for the id of the guild
+     *
+     * @return Guild id
+     */
+    public long getId() {
+        return this.guild.getIdLong();
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.galactic.star;
+
+import dev.galactic.star.config.Configuration;
+import dev.galactic.star.config.RolesAndIdsRegistry;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.channel.concrete.TextChannel;
+import net.dv8tion.jda.api.events.guild.GuildJoinEvent;
+import net.dv8tion.jda.api.events.guild.GuildLeaveEvent;
+import net.dv8tion.jda.api.events.guild.GuildReadyEvent;
+import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import net.dv8tion.jda.api.sharding.ShardManager;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The GuildState of every guild on the shards of this process, keyed by the guild id. It is kept up to date as the
+ * shards connect and the bot joins or leaves guilds, every shard only touches the entries of its own guilds.
+ */
+public class GuildStates extends ListenerAdapter {
+
+    private final Map<Long, GuildState> states = new ConcurrentHashMap<>();
+
+    /**
+     * Builds the states of all guilds again, for example after the RolesAndIds.yml got reloaded
+     *
+     * @param shardManager The shards of the bot
+     * @param ids          Index of the RolesAndIds.yml
+     */
+    public void refresh(ShardManager shardManager, RolesAndIdsRegistry ids) {
+        for (Guild guild : shardManager.getGuildCache()) {
+            this.states.put(guild.getIdLong(), GuildState.of(guild, ids));
+        }
+        this.states.keySet().removeIf(id -> shardManager.getGuildById(id) == null);
+    }
+
+    /**
+     * Gets the state of a guild
+     *
+     * @param guildId Id of the guild
+     * @return GuildState or null if the guild isn't on the shards of this process
+     */
+    public GuildState get(long guildId) {
+        return this.states.get(guildId);
+    }
+
+    /**
+     * Getter for the states of all guilds
+     *
+     * @return Unmodifiable view of the states
+     */
+    public Collection<GuildState> getAll() {
+        return Collections.unmodifiableCollection(this.states.values());
+    }
+
+    /**
+     * Finds the log channel in any of the guilds
+     *
+     * @return TextChannel or null if no guild has it
+     */
+    public TextChannel getLogChannel() {
+        for (GuildState state : this.states.values()) {
+            if (state.logChannel() != null) {
+                return state.logChannel();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Getter for the amount of guilds
+     *
+     * @return Amount of guilds
+     */
+    public int size() {
+        return this.states.size();
+    }
+
+    /**
+     * Adds the guild once its shard loaded it
+     *
+     * @param event GuildReadyEvent
+     */
+    @Override
+    public void onGuildReady(GuildReadyEvent event) {
+        this.update(event.getGuild());
+    }
+
+    /**
+     * Adds the guild the bot joined
+     *
+     * @param event GuildJoinEvent
+     */
+    @Override
+    public void onGuildJoin(GuildJoinEvent event) {
+        this.update(event.getGuild());
+    }
+
+    /**
+     * Removes the guild the bot left
+     *
+     * @param event GuildLeaveEvent
+     */
+    @Override
+    public void onGuildLeave(GuildLeaveEvent event) {
+        this.states.remove(event.getGuild().getIdLong());
+    }
+
+    /**
+     * Builds the state of a guild
+     *
+     * @param guild The guild
+     */
+    private void update(Guild guild) {
+        this.states.put(guild.getIdLong(), GuildState.of(guild, Configuration.getInstance().getSnapshot().ids()));
+    }
+}
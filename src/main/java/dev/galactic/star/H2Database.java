@@ -16,37 +16,90 @@
 
 package dev.galactic.star;
 
-import org.h2.jdbcx.JdbcDataSource;
+import dev.galactic.star.config.system.DatabaseConfig;
+import dev.galactic.star.database.ConnectionPool;
+import dev.galactic.star.database.Durability;
+import dev.galactic.star.database.PooledConnection;
+import dev.galactic.star.database.RowMapper;
+import dev.galactic.star.database.SchemaMigrator;
+import dev.galactic.star.database.UserState;
+import dev.galactic.star.database.UserStateCache;
+import dev.galactic.star.database.WriteBehindQueue;
+import dev.galactic.star.metrics.Metrics;
 
-import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.regex.Pattern;
 
 /**
- * The main class that is used to  handle all interactions with the database
+ * The main class that is used to  handle all interactions with the database. Every call borrows its own connection
+ * from the pool, so it can be used by multiple threads at once. The writes of insert, updateRecord and delete go
+ * through the write queue based on the durability setting.
  */
 public class H2Database {
-    private final Connection connection;
+    /**
+     * User id for the writes that can change the warn_data of every user
+     */
+    public static final long ALL_USERS = -1;
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+    private static final String WARN_DATA = "warn_data";
+    private static final String USER_ID = "user_id";
+    private final ConnectionPool pool;
+    private final WriteBehindQueue writeQueue;
+    private final UserStateCache userCache;
 
     /**
-     * Used to connect to the h2 database
+     * Used to connect to the h2 database file with the default pool settings
      *
      * @param user Your username
      * @param pass Your password
      */
     public H2Database(String user, String pass) {
-        JdbcDataSource src = new JdbcDataSource();
-        src.setUser(user);
-        src.setPassword(pass);
-        src.setUrl("jdbc:h2:./Database");
-        try {
-            this.connection = src.getConnection();
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
-        }
-        this.createTables();
+        this(defaultConfig(user, pass));
+    }
+
+    /**
+     * Used to connect to the h2 database from the database settings in the System.json
+     *
+     * @param config DatabaseConfig
+     */
+    public H2Database(DatabaseConfig config) {
+        this(config, null);
+    }
+
+    /**
+     * Used to connect to the h2 database from the database settings in the System.json
+     *
+     * @param config    DatabaseConfig
+     * @param scheduler Shared scheduler to run the pool housekeeping on, or null to create one
+     */
+    public H2Database(DatabaseConfig config, ScheduledExecutorService scheduler) {
+        this.pool = new ConnectionPool(config, scheduler);
+        this.userCache = new UserStateCache(config.getUser_cache_size(), config.getUser_cache_ttl_ms());
+        new SchemaMigrator(this.pool).migrate();
+        Durability durability = Durability.of(config.getDurability());
+        this.writeQueue = durability == Durability.SYNC ? null : new WriteBehindQueue(this.pool, durability,
+                config.getBatch_size(), config.getFlush_interval_ms());
+    }
+
+    /**
+     * Creates the database settings for the embedded database file
+     *
+     * @param user Your username
+     * @param pass Your password
+     * @return DatabaseConfig
+     */
+    private static DatabaseConfig defaultConfig(String user, String pass) {
+        DatabaseConfig config = new DatabaseConfig();
+        config.setUsername(user);
+        config.setPassword(pass);
+        return config;
     }
 
     /**
@@ -56,44 +109,194 @@ public class H2Database {
      * @return True/False
      */
     public boolean banIdExists(String id) {
-        return getFromDb("ban_data", "ban_id", id, "ban_id") != null;
+        return this.query("SELECT 1 FROM ban_data WHERE ban_id=?", set -> true, id) != null;
     }
 
     /**
-     * Creates the tables in the database
+     * Checks whether the mute id exists
+     *
+     * @param id Ban ID
+     * @return True/False
      */
-    private void createTables() {
-        this.createTable("user_data", new String[]{"userid VARCHAR(20) NOT NULL PRIMARY KEY", "total_warns INT",
-                "severity INT"});
-        this.createTable("warn_history", new String[]{"userid VARCHAR(20) NOT NULL", "warn_id VARCHAR(10) NOT NULL " +
-                "PRIMARY KEY", "severity INT"});
+    public boolean muteIdExists(String id) {
+        return this.query("SELECT 1 FROM warn_history WHERE warn_id=?", set -> true, id) != null;
     }
 
     /**
-     * Creates the table individually
+     * Runs a query and maps its first row. The statement is cached per connection, so the same SQL is only parsed
+     * once. Values are always bound as parameters, never put into the SQL.
      *
-     * @param tableName Table nane
-     * @param columns   Array of column names
+     * @param sql    SQL with ? placeholders
+     * @param mapper Converts the row into an object
+     * @param params Values of the placeholders in order
+     * @param <T>    Type of the object
+     * @return The mapped first row, if it finds nothing, returns null
      */
-    private void createTable(String tableName, String[] columns) {
-        String columnData = Arrays.toString(columns)
-                .replaceAll("[\\[\\]]", "");
-        try (PreparedStatement table = this.connection.prepareStatement("CREATE TABLE IF NOT EXISTS " + tableName +
-                "(" + columnData + ");")) {
-            table.executeUpdate();
+    public <T> T query(String sql, RowMapper<T> mapper, Object... params) {
+        long start = System.nanoTime();
+        try (PooledConnection pooled = this.pool.borrow()) {
+            PreparedStatement stmt = pooled.prepare(sql, params);
+            try (ResultSet set = stmt.executeQuery()) {
+                return set.next() ? mapper.map(set) : null;
+            }
         } catch (SQLException e) {
             throw new RuntimeException(e);
+        } finally {
+            Metrics.getInstance().recordDatabase("query", System.nanoTime() - start);
         }
     }
 
     /**
-     * Checks whether the mute id exists
+     * Runs a query and maps all of its rows
      *
-     * @param id Ban ID
-     * @return True/False
+     * @param sql    SQL with ? placeholders
+     * @param mapper Converts each row into an object
+     * @param params Values of the placeholders in order
+     * @param <T>    Type of the objects
+     * @return List of the mapped rows
+     * @see #query(String, RowMapper, Object...)
      */
-    public boolean muteIdExists(String id) {
-        return this.getFromDb("warn_history", "warn_id", id, "warn_id") != null;
+    public <T> List<T> queryList(String sql, RowMapper<T> mapper, Object... params) {
+        long start = System.nanoTime();
+        try (PooledConnection pooled = this.pool.borrow()) {
+            PreparedStatement stmt = pooled.prepare(sql, params);
+            try (ResultSet set = stmt.executeQuery()) {
+                List<T> rows = new ArrayList<>();
+                while (set.next()) {
+                    rows.add(mapper.map(set));
+                }
+                return rows;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        } finally {
+            Metrics.getInstance().recordDatabase("query_list", System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Runs an INSERT, UPDATE or DELETE statement right away, without going through the write queue. The cached
+     * user states aren't touched, use updateUser for statements that change warn_data.
+     *
+     * @param sql    SQL with ? placeholders
+     * @param params Values of the placeholders in order
+     * @return Amount of changed rows
+     * @see #query(String, RowMapper, Object...)
+     */
+    public int update(String sql, Object... params) {
+        return this.execute(sql, params);
+    }
+
+    /**
+     * Runs a statement that changes the warn_data of a user right away and removes the user from the cache
+     *
+     * @param userId Discord id of the user, or ALL_USERS if it can change every user
+     * @param sql    SQL with ? placeholders
+     * @param params Values of the placeholders in order
+     * @return Amount of changed rows
+     */
+    public int updateUser(long userId, String sql, Object... params) {
+        try {
+            return this.execute(sql, params);
+        } finally {
+            this.invalidate(userId);
+        }
+    }
+
+    /**
+     * Runs a statement in its own transaction
+     *
+     * @param sql    SQL with ? placeholders
+     * @param params Values of the placeholders in order
+     * @return Amount of changed rows
+     */
+    private int execute(String sql, Object[] params) {
+        long start = System.nanoTime();
+        try (PooledConnection pooled = this.pool.borrow()) {
+            PreparedStatement stmt = pooled.prepare(sql, params);
+            return stmt.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        } finally {
+            Metrics.getInstance().recordDatabase("update", System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Runs a write with the configured durability. In sync mode it runs right away in its own transaction, in
+     * group-commit mode it waits until the batch it got grouped into is committed, and in async mode it only gets
+     * queued, so reads right after it might not see it yet. The cached user states aren't touched, use writeUser
+     * for statements that change warn_data.
+     *
+     * @param sql    SQL with ? placeholders
+     * @param params Values of the placeholders in order
+     * @return Future with the amount of changed rows
+     * @see Durability
+     */
+    public CompletableFuture<Integer> write(String sql, Object... params) {
+        return this.enqueue(sql, params);
+    }
+
+    /**
+     * Runs a write that changes the warn_data of a user with the configured durability and removes the user from
+     * the cache
+     *
+     * @param userId Discord id of the user, or ALL_USERS if it can change every user
+     * @param sql    SQL with ? placeholders
+     * @param params Values of the placeholders in order
+     * @return Future with the amount of changed rows
+     */
+    public CompletableFuture<Integer> writeUser(long userId, String sql, Object... params) {
+        return this.writeAndInvalidate(sql, params, userId);
+    }
+
+    /**
+     * Runs a write and invalidates the cached state of the user it touches once it is committed
+     *
+     * @param sql    SQL with ? placeholders
+     * @param params Values of the placeholders in order
+     * @param userId Discord id of the user, 0 if it doesn't touch warn_data or ALL_USERS
+     * @return Future with the amount of changed rows
+     */
+    private CompletableFuture<Integer> writeAndInvalidate(String sql, Object[] params, long userId) {
+        this.invalidate(userId);
+        CompletableFuture<Integer> future = this.enqueue(sql, params);
+        if (userId != 0 && !future.isDone()) {
+            //A read between queueing and committing would have cached the old state again
+            future.whenComplete((rows, e) -> this.invalidate(userId));
+        }
+        return future;
+    }
+
+    /**
+     * Runs the write with the configured durability
+     *
+     * @param sql    SQL with ? placeholders
+     * @param params Values of the placeholders in order
+     * @return Future with the amount of changed rows
+     */
+    private CompletableFuture<Integer> enqueue(String sql, Object[] params) {
+        if (this.writeQueue == null) {
+            return CompletableFuture.completedFuture(this.execute(sql, params));
+        }
+        CompletableFuture<Integer> future = this.writeQueue.submit(sql, params);
+        if (this.writeQueue.getDurability() == Durability.GROUP_COMMIT) {
+            try {
+                future.join();
+            } catch (CompletionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+        }
+        return future;
+    }
+
+    /**
+     * Waits until all queued writes are committed
+     */
+    public void flush() {
+        if (this.writeQueue != null) {
+            this.writeQueue.flush();
+        }
     }
 
     /**
@@ -109,33 +312,37 @@ public class H2Database {
      * @@return H2Databases so it can be used in a chain
      */
     public H2Database insert(String table, String[] columns, Object[] data) {
-        String dataStr = Arrays.toString(data).replaceAll("[\\[\\]]", "").replaceAll(",", "','");
-        String columnStr = Arrays.toString(columns).replaceAll("[\\[\\]]", "");
-        try (PreparedStatement stmt =
-                     this.connection.prepareStatement("INSERT INTO " + table + "(" + columnStr + ") VALUES('" + dataStr + "');")) {
-            stmt.executeUpdate();
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
+        long userId = 0;
+        if (WARN_DATA.equalsIgnoreCase(table)) {
+            userId = ALL_USERS;
+            for (int i = 0; i < columns.length; i++) {
+                if (USER_ID.equalsIgnoreCase(columns[i])) {
+                    userId = cacheKey(data[i]);
+                }
+            }
         }
+        this.writeAndInvalidate(insertSql(table, columns), data, userId);
         return this;
     }
 
     /**
-     * Deletes the specified row based on the object value of the column
+     * Deletes the rows where the key and the column have the given values
      *
      * @param table    Table name
      * @param key      Primary key
      * @param keyValue Value to search for
-     * @param column   Column name
+     * @param column   Column name, if null only the key is checked
      * @param value    Value to find and delete
      * @return Current instance of the class
      */
     public H2Database delete(String table, String key, Object keyValue, String column, Object value) {
-        try (PreparedStatement stmt = this.connection.prepareStatement("DELETE FROM " + table + " WHERE " + key +
-                "='" + keyValue + "' AND WHERE " + key + "='" + keyValue + "';")) {
-            stmt.executeUpdate();
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
+        long userId = cacheKey(table, key, keyValue);
+        if (column == null) {
+            this.writeAndInvalidate("DELETE FROM " + identifier(table) + " WHERE " + identifier(key) + "=?",
+                    new Object[]{keyValue}, userId);
+        } else {
+            this.writeAndInvalidate("DELETE FROM " + identifier(table) + " WHERE " + identifier(key) + "=? AND " +
+                    identifier(column) + "=?", new Object[]{keyValue, value}, userId);
         }
         return this;
     }
@@ -151,13 +358,8 @@ public class H2Database {
      * @return Current instance of the class
      */
     public H2Database updateRecord(String table, String key, Object keyValue, String column, Object value) {
-        try (PreparedStatement stmt =
-                     this.connection.prepareStatement("UPDATE " + table + " SET " + column + "='" + value + "' WHERE "
-                             + key + "='" + keyValue + "';")) {
-            stmt.executeUpdate();
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
-        }
+        this.writeAndInvalidate("UPDATE " + identifier(table) + " SET " + identifier(column) + "=? WHERE " +
+                identifier(key) + "=?", new Object[]{value, keyValue}, cacheKey(table, key, keyValue));
         return this;
     }
 
@@ -171,33 +373,53 @@ public class H2Database {
      * @return Object, if it finds nothing, returns null
      */
     public Object getFromDb(String table, String key, Object keyValue, String columnToGet) {
-        try (PreparedStatement stmt = this.connection.prepareStatement("SELECT * FROM " + table + " WHERE " + key +
-                "='" + keyValue + "';");
-             ResultSet set = stmt.executeQuery()) {
-            return set.next() ? set.getObject(columnToGet) : null;
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
-        }
+        return this.query("SELECT " + identifier(columnToGet) + " FROM " + identifier(table) + " WHERE " +
+                identifier(key) + "=?", set -> set.getObject(1), keyValue);
+    }
+
+    /**
+     * Gets the moderation state of a user through the user cache
+     *
+     * @param userId The user's Discord id
+     * @return UserState
+     */
+    public UserState getUserState(long userId) {
+        return this.userCache.get(userId, this::loadUserState);
+    }
+
+    /**
+     * Saves the warns of a user and puts the new state into the user cache
+     *
+     * @param userId     The user's Discord id
+     * @param totalWarns Amount of warns the user has
+     * @param severity   Amount of severity the user has
+     * @return Current instance of the class
+     */
+    public H2Database saveWarnData(long userId, int totalWarns, int severity) {
+        this.enqueue("MERGE INTO warn_data(user_id, total_warns, severity) KEY(user_id) VALUES(?,?,?)",
+                new Object[]{userId, totalWarns, severity});
+        this.userCache.put(userId, new UserState(totalWarns, severity, true));
+        return this;
     }
 
     /**
      * Gets the warn severity of a user
      *
      * @param userId String version of the user's Discord id
-     * @return Amount of severity the user has
+     * @return Amount of severity the user has, 0 if the user has no warns
      */
     public int getWarnSeverity(String userId) {
-        return Integer.parseInt(this.getFromDb("warn_data", "user_id", userId, "severity").toString());
+        return this.getUserState(Long.parseLong(userId)).severity();
     }
 
     /**
      * Gets the total warns a user has
      *
      * @param userId String version of the user's Discord id
-     * @return Amount of warns the user has
+     * @return Amount of warns the user has, 0 if the user has no warns
      */
     public int getTotalWarns(String userId) {
-        return Integer.parseInt(this.getFromDb("warn_data", "user_id", userId, "total_warns").toString());
+        return this.getUserState(Long.parseLong(userId)).totalWarns();
     }
 
     /**
@@ -205,7 +427,104 @@ public class H2Database {
      * @return userId Amount of warns the user has
      */
     public boolean memberIsPunished(String userId) {
-        return this.getFromDb("warn_data", "user_id", userId, "user_id") != null;
+        return this.getUserState(Long.parseLong(userId)).punished();
+    }
+
+    /**
+     * Getter for the cache of the users' moderation state
+     *
+     * @return UserStateCache
+     */
+    public UserStateCache getUserCache() {
+        return userCache;
+    }
+
+    /**
+     * Loads the moderation state of a user from warn_data in one query
+     *
+     * @param userId The user's Discord id
+     * @return UserState, UserState.CLEAN if the user has no row
+     */
+    private UserState loadUserState(long userId) {
+        UserState state = this.query("SELECT total_warns, severity FROM warn_data WHERE user_id=?",
+                set -> new UserState(set.getInt(1), set.getInt(2), true), userId);
+        return state == null ? UserState.CLEAN : state;
+    }
+
+    /**
+     * Invalidates the cached state of the user
+     *
+     * @param userId Discord id of the user, 0 for nobody or ALL_USERS
+     */
+    private void invalidate(long userId) {
+        if (userId == ALL_USERS) {
+            this.userCache.invalidateAll();
+        } else if (userId != 0) {
+            this.userCache.invalidate(userId);
+        }
+    }
+
+    /**
+     * Gets the user whose cached state a write by key changes
+     *
+     * @param table    Table name
+     * @param key      Column the write is matched by
+     * @param keyValue Value of the key
+     * @return Discord id of the user, 0 if it doesn't touch warn_data or ALL_USERS
+     */
+    private static long cacheKey(String table, String key, Object keyValue) {
+        if (!WARN_DATA.equalsIgnoreCase(table)) {
+            return 0;
+        }
+        return USER_ID.equalsIgnoreCase(key) ? cacheKey(keyValue) : ALL_USERS;
+    }
+
+    /**
+     * Parses the Discord id of a user
+     *
+     * @param userId Id as a Number or String
+     * @return The id, or ALL_USERS if it isn't a valid id
+     */
+    private static long cacheKey(Object userId) {
+        try {
+            long id = userId instanceof Number number ? number.longValue() : Long.parseLong(String.valueOf(userId));
+            return id > 0 ? id : ALL_USERS;
+        } catch (NumberFormatException e) {
+            return ALL_USERS;
+        }
+    }
+
+    /**
+     * Builds the INSERT statement of the table and columns
+     *
+     * @param table   Table name
+     * @param columns Column names
+     * @return SQL with one placeholder per column
+     */
+    private static String insertSql(String table, String[] columns) {
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(identifier(table)).append('(');
+        for (int i = 0; i < columns.length; i++) {
+            sql.append(i == 0 ? "" : ",").append(identifier(columns[i]));
+        }
+        sql.append(") VALUES(");
+        for (int i = 0; i < columns.length; i++) {
+            sql.append(i == 0 ? "?" : ",?");
+        }
+        return sql.append(')').toString();
+    }
+
+    /**
+     * Checks that a table or column name can be put into the SQL as it is, since only values can be bound
+     *
+     * @param name Table or column name
+     * @return The name
+     * @throws IllegalArgumentException If it isn't a plain SQL identifier
+     */
+    private static String identifier(String name) {
+        if (name == null || !IDENTIFIER.matcher(name).matches()) {
+            throw new IllegalArgumentException("Invalid table or column name: \"" + name + "\"");
+        }
+        return name;
     }
 
     /**
@@ -214,23 +533,28 @@ public class H2Database {
      * @return True or False
      */
     public boolean isConnected() {
-        try {
-            return this.connection != null && !this.connection.isClosed();
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
-        }
+        return !this.pool.isClosed();
+    }
+
+    /**
+     * Getter for the connection pool
+     *
+     * @return ConnectionPool
+     */
+    public ConnectionPool getPool() {
+        return pool;
     }
 
     /**
      * Disconnects the database
      */
     public void disconnect() {
-        try {
-            if (this.connection != null && this.isConnected()) {
-                this.connection.close();
+        if (this.isConnected()) {
+            if (this.writeQueue != null) {
+                //Writes everything that is still queued before the connections go away
+                this.writeQueue.close();
             }
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
+            this.pool.close();
         }
     }
 }
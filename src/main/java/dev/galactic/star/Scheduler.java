@@ -16,68 +16,157 @@
 
 package dev.galactic.star;
 
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledFuture;
+import dev.galactic.star.console.ConsoleCommand;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Owns the one scheduled thread pool of the bot that the background tasks share, and the thread that reads the
+ * commands typed into the console. It lives as long as the process, so reloading the bot doesn't leak any threads.
+ */
 public class Scheduler {
+
+    private final ScheduledThreadPoolExecutor executor;
+    private final Map<String, ConsoleCommand> commands = new ConcurrentHashMap<>();
+    private final List<ConsoleCommand> commandList = new CopyOnWriteArrayList<>();
+    private Thread consoleReader;
+    private volatile boolean running = true;
+
     /**
-     * Creates a listener for the commands on a separate thread, so it doesn't block the main thread.
+     * Creates the shared thread pool
      *
-     * @return ScheduledFuture&lt;?&gt; so that it can stop when the program stops
+     * @param threads Amount of threads in the pool
      */
-    public static ScheduledFuture<?> listenForCommands() {
-        return Executors.newScheduledThreadPool(0).schedule(() -> {
-            String cmd = GalacticBot.getBot().getScanner().next().toLowerCase();
-            if (cmd.matches("\\s*")) {
-                return;
-            }
-            switch (cmd) {
-                case "exit", "stop" -> {
-                    GalacticBot.getBot().exitBot(true);
-                }
-                case "info", "i" -> {
-                    Runtime run = Runtime.getRuntime();
-                    long MEGABYTE = 1024L * 1024L;
-                    GalacticBot.getBot().getLogger().info("----------------------------------------");
-                    GalacticBot.getBot().getLogger().info("JVM Version: " + Runtime.version());
-                    GalacticBot.getBot().getLogger().info("Processors: " + run.availableProcessors());
-                    GalacticBot.getBot().getLogger().info("Available Memory in MB: " + ((run.totalMemory() - run.freeMemory()) / MEGABYTE));
-                    GalacticBot.getBot().getLogger().info("----------------------------------------");
-                }
-                case "reload", "rl" -> {
-                    GalacticBot.getBot().reload();
-                }
-                case "help" -> {
-                    GalacticBot.getBot().printHelp();
+    public Scheduler(int threads) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ScheduledThreadPoolExecutor(threads, runnable -> {
+            Thread thread = new Thread(runnable, "scheduler-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Registers a console command under its name and aliases. A command with the same usage gets replaced.
+     *
+     * @param command ConsoleCommand
+     */
+    public void registerCommand(ConsoleCommand command) {
+        this.commandList.removeIf(e -> e.getUsage().equals(command.getUsage()));
+        for (String name : command.getNames()) {
+            this.commands.put(name, command);
+        }
+        this.commandList.add(command);
+    }
+
+    /**
+     * Starts the thread that reads the console. Calling it again while it runs does nothing.
+     *
+     * @param scanner Scanner of the console input
+     */
+    public synchronized void listenForCommands(Scanner scanner) {
+        if (this.consoleReader != null) {
+            return;
+        }
+        //A thread of its own, since reading the console blocks and would take a pool thread away for good
+        this.consoleReader = new Thread(() -> {
+            while (this.running) {
+                String line;
+                try {
+                    line = scanner.nextLine();
+                } catch (NoSuchElementException | IllegalStateException e) {
+                    //The input was closed
+                    return;
                 }
-                default -> {
-                    GalacticBot.getBot().getLogger().warn("Unknown command \"" + cmd + "\"");
+                try {
+                    this.dispatch(line);
+                } catch (RuntimeException e) {
+                    GalacticBot.getBot().getLogger().error("The console command \"" + line + "\" failed: " + e, e);
                 }
             }
-        }, 200, TimeUnit.MILLISECONDS);
+        }, "console-reader");
+        this.consoleReader.setDaemon(true);
+        this.consoleReader.start();
+    }
+
+    /**
+     * Runs the console command that was typed
+     *
+     * @param line The line that was typed
+     * @return True if it was a known command
+     */
+    public boolean dispatch(String line) {
+        String[] parts = line.trim().split("\\s+");
+        String name = parts[0].toLowerCase();
+        if (name.isEmpty()) {
+            return false;
+        }
+        ConsoleCommand command = this.commands.get(name);
+        if (command == null) {
+            GalacticBot.getBot().getLogger().warn("Unknown command \"" + name + "\"");
+            return false;
+        }
+        command.execute(Arrays.copyOfRange(parts, 1, parts.length));
+        return true;
     }
 
-    //Keep this commented for now
-    /*public static ScheduledFuture<?> dateListener() {
-        H2Database db = BotSystem.getInstance().getDb();
-        Guild guild = BotSystem.getInstance().getGuild();
-        return Executors.newScheduledThreadPool(0)
-                .schedule(new Runnable() {
-                    @Override
-                    public void run() {
-                        guild.retrieveBanList().stream()
-                                .forEach(ban -> {
-                                    String date = db.getFromDb("ban_data", "user_id", ban.getUser().getId(),
-                                    "date_unbanned").toString();
-                                    ZonedDateTime timeNow = ZonedDateTime.now();
-                                    ZonedDateTime timeWhenUnbanned = ZonedDateTime.parse(date);
-                                    if (timeNow.isBefore(timeWhenUnbanned)) {
-                                        return;
-                                    }
-                                    guild.unban(ban.getUser()).reason("Ban expired").queue();
-                                });
-                    }
-                }, 1, TimeUnit.MINUTES);
-    }*/
+    /**
+     * Stops the console reader and the thread pool
+     */
+    public void shutdown() {
+        this.running = false;
+        this.executor.shutdownNow();
+        try {
+            this.executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Getter for the shared thread pool
+     *
+     * @return ScheduledExecutorService
+     */
+    public ScheduledExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Getter for the registered console commands in the order they were registered
+     *
+     * @return List of ConsoleCommand
+     */
+    public List<ConsoleCommand> getCommands() {
+        return commandList;
+    }
+
+    /**
+     * Getter for the amount of threads in the shared pool
+     *
+     * @return Pool size
+     */
+    public int getPoolSize() {
+        return this.executor.getPoolSize();
+    }
+
+    /**
+     * Getter for the amount of tasks waiting in the shared pool
+     *
+     * @return Queued tasks
+     */
+    public int getQueuedTasks() {
+        return this.executor.getQueue().size();
+    }
 }
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package dev.galactic.star;
+
+import net.dv8tion.jda.api.events.session.ReadyEvent;
+import net.dv8tion.jda.api.events.session.ShutdownEvent;
+import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import net.dv8tion.jda.api.requests.CloseCode;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lets the login wait until the shards are ready. Every ReadyEvent frees one permit, so the events of shards that
+ * are ready before the amount of shards is known aren't lost. A shard that is disconnected for good, for example
+ * because of an invalid token, ends the wait right away.
+ */
+public class ShardReadyListener extends ListenerAdapter {
+
+    private final Semaphore ready = new Semaphore(0);
+    private volatile String failure;
+
+    /**
+     * Counts the shard as ready
+     *
+     * @param event ReadyEvent
+     */
+    @Override
+    public void onReady(ReadyEvent event) {
+        this.ready.release();
+    }
+
+    /**
+     * Stops the wait if the shard won't reconnect
+     *
+     * @param event ShutdownEvent
+     */
+    @Override
+    public void onShutdown(ShutdownEvent event) {
+        CloseCode code = event.getCloseCode();
+        if (code != null && !code.isReconnect()) {
+            this.failure = "Shard " + event.getJDA().getShardInfo().getShardId() + " was disconnected: " +
+                    code.getMeaning();
+            this.ready.release();
+        }
+    }
+
+    /**
+     * Waits until the shards are ready
+     *
+     * @param shards    Amount of shards that were started
+     * @param timeoutMs How long to wait for all of them
+     * @throws IllegalStateException If a shard was disconnected for good or not all of them got ready in time
+     * @throws InterruptedException  If the thread got interrupted while waiting
+     */
+    public void await(int shards, long timeoutMs) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        for (int i = 0; i < shards; i++) {
+            if (!this.ready.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                throw new IllegalStateException("Only " + i + " of " + shards + " shard(s) got ready within " +
+                        TimeUnit.MILLISECONDS.toSeconds(timeoutMs) + "s.");
+            }
+            if (this.failure != null) {
+                throw new IllegalStateException(this.failure);
+            }
+        }
+    }
+}
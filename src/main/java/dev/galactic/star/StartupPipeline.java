@@ -0,0 +1,119 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.galactic.star;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs the startup as a graph of stages. A stage starts as soon as the stages it depends on are done, so stages that
+ * don't depend on each other run at the same time. The time of every stage is logged. The threads only live until
+ * the startup is done.
+ */
+public class StartupPipeline {
+
+    private static final int THREADS = 4;
+    private final ExecutorService executor;
+    private final List<CompletableFuture<?>> stages = new ArrayList<>();
+    private final long startedAt = System.nanoTime();
+
+    /**
+     * Creates the pipeline and its threads
+     */
+    public StartupPipeline() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "startup-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Adds a stage that runs once all of its dependencies are done
+     *
+     * @param name         Name of the stage, used for the timings
+     * @param task         The work of the stage
+     * @param dependencies Stages that have to be done first
+     * @return CompletableFuture of the stage, to be used as a dependency of other stages
+     */
+    public CompletableFuture<Void> stage(String name, Runnable task, CompletableFuture<?>... dependencies) {
+        return this.stage(name, () -> {
+            task.run();
+            return null;
+        }, dependencies);
+    }
+
+    /**
+     * Adds a stage that runs once all of its dependencies are done
+     *
+     * @param name         Name of the stage, used for the timings
+     * @param task         The work of the stage
+     * @param dependencies Stages that have to be done first
+     * @param <T>          Type of the result
+     * @return CompletableFuture of the stage with its result
+     */
+    public <T> CompletableFuture<T> stage(String name, Supplier<T> task, CompletableFuture<?>... dependencies) {
+        CompletableFuture<T> stage = CompletableFuture.allOf(dependencies).thenApplyAsync(done -> {
+            long start = System.nanoTime();
+            T result = task.get();
+            long end = System.nanoTime();
+            GalacticBot.getBot().getLogger().info("Startup stage \"" + name + "\" took " + millis(end - start) +
+                    "ms (done " + millis(end - this.startedAt) + "ms after the start).");
+            return result;
+        }, this.executor);
+        this.stages.add(stage);
+        return stage;
+    }
+
+    /**
+     * Waits for all stages and stops the threads. If a stage failed, the stages depending on it don't run and its
+     * exception is thrown.
+     *
+     * @return Milliseconds the whole startup took
+     */
+    public long await() {
+        try {
+            CompletableFuture.allOf(this.stages.toArray(CompletableFuture[]::new)).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            this.executor.shutdown();
+        }
+        return millis(System.nanoTime() - this.startedAt);
+    }
+
+    /**
+     * Converts nanoseconds to milliseconds
+     *
+     * @param nanos Nanoseconds
+     * @return Milliseconds
+     */
+    private static long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.galactic.star.commands;
+
+import dev.galactic.star.GalacticBot;
+import dev.galactic.star.config.system.ExecutorConfig;
+import dev.galactic.star.metrics.Metrics;
+import net.dv8tion.jda.api.interactions.callbacks.IReplyCallback;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs the command handlers on a bounded thread pool instead of JDA's event thread. Every command has a limit of how
+ * many of its interactions can run or wait at once, and the pool has a limit of how many interactions can wait in
+ * total. Interactions over either limit are rejected with a short ephemeral reply instead of piling up.
+ */
+public class CommandExecutor {
+
+    private static final String BUSY_MESSAGE = "The bot is busy right now, please try again in a moment.";
+    private final ExecutorConfig config;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, Semaphore> limits = new ConcurrentHashMap<>();
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejectedQueueFull = new LongAdder();
+    private final LongAdder rejectedCommandLimit = new LongAdder();
+
+    /**
+     * Creates the thread pool from the executor settings in the System.json
+     *
+     * @param config ExecutorConfig
+     */
+    public CommandExecutor(ExecutorConfig config) {
+        this.config = config;
+        int threads = Math.max(1, config.getThreads());
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, config.getQueue_size())), runnable -> {
+            Thread thread = new Thread(runnable, "command-executor-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Queues the handler of an interaction. Defers the interaction first if defer_reply is enabled, so Discord's
+     * acknowledge window is met no matter how long the handler waits for a thread.
+     *
+     * @param command Name of the command, used for the per command limit
+     * @param event   The interaction to acknowledge or reject
+     * @param task    Runs the handler
+     * @return True if the task got queued, false if it got rejected
+     */
+    public boolean execute(String command, IReplyCallback event, Runnable task) {
+        Semaphore limit = this.limits.computeIfAbsent(command, e -> new Semaphore(Math.max(1,
+                this.config.getLimit(e))));
+        if (!limit.tryAcquire()) {
+            this.rejectedCommandLimit.increment();
+            event.reply(BUSY_MESSAGE).setEphemeral(true).queue();
+            return false;
+        }
+        boolean deferred = this.config.isDefer_reply();
+        if (deferred) {
+            event.deferReply().queue();
+        }
+        try {
+            this.executor.execute(() -> {
+                long start = System.nanoTime();
+                boolean failed = false;
+                try {
+                    task.run();
+                    this.completed.increment();
+                } catch (RuntimeException e) {
+                    failed = true;
+                    this.failed.increment();
+                    GalacticBot.getBot().getLogger().error("The command \"" + command + "\" failed: " + e, e);
+                } finally {
+                    limit.release();
+                    Metrics.getInstance().recordCommand(command, System.nanoTime() - start, failed);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            limit.release();
+            this.rejectedQueueFull.increment();
+            if (deferred) {
+                event.getHook().sendMessage(BUSY_MESSAGE).setEphemeral(true).queue();
+            } else {
+                event.reply(BUSY_MESSAGE).setEphemeral(true).queue();
+            }
+            return false;
+        }
+        this.submitted.increment();
+        return true;
+    }
+
+    /**
+     * Stops accepting new interactions and waits for the running ones to finish
+     *
+     * @param timeout How long to wait
+     * @param unit    TimeUnit of the timeout
+     */
+    public void shutdown(long timeout, TimeUnit unit) {
+        this.executor.shutdown();
+        try {
+            if (!this.executor.awaitTermination(timeout, unit)) {
+                GalacticBot.getBot().getLogger().warn("Interrupting " + this.executor.getActiveCount() +
+                        " command(s) that didn't finish in time.");
+                this.executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            this.executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Getter for the amount of handlers running right now
+     *
+     * @return Active handlers
+     */
+    public int getActiveCount() {
+        return this.executor.getActiveCount();
+    }
+
+    /**
+     * Getter for the amount of interactions waiting for a thread
+     *
+     * @return Queue depth
+     */
+    public int getQueueDepth() {
+        return this.executor.getQueue().size();
+    }
+
+    /**
+     * Getter for the amount of interactions that got queued
+     *
+     * @return Submitted interactions
+     */
+    public long getSubmitted() {
+        return this.submitted.sum();
+    }
+
+    /**
+     * Getter for the amount of handlers that finished without an exception
+     *
+     * @return Completed interactions
+     */
+    public long getCompleted() {
+        return this.completed.sum();
+    }
+
+    /**
+     * Getter for the amount of handlers that threw an exception
+     *
+     * @return Failed interactions
+     */
+    public long getFailed() {
+        return this.failed.sum();
+    }
+
+    /**
+     * Getter for the amount of interactions rejected because the queue was full
+     *
+     * @return Rejected interactions
+     */
+    public long getRejectedQueueFull() {
+        return this.rejectedQueueFull.sum();
+    }
+
+    /**
+     * Getter for the amount of interactions rejected because their command was at its limit
+     *
+     * @return Rejected interactions
+     */
+    public long getRejectedCommandLimit() {
+        return this.rejectedCommandLimit.sum();
+    }
+}
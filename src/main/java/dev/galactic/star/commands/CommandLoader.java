@@ -17,175 +17,379 @@
 package dev.galactic.star.commands;
 
 import dev.galactic.star.GalacticBot;
+import dev.galactic.star.config.ConfigSnapshot;
 import dev.galactic.star.config.Configuration;
+import dev.galactic.star.config.RolesAndIdsRegistry;
 import dev.galactic.star.config.comands.context.ContextCommand;
 import dev.galactic.star.config.comands.slash.SlashCommand;
+import dev.galactic.star.config.system.GuildConfig;
+import dev.galactic.star.config.system.SystemConfig;
 import dev.galactic.star.exceptions.UnknownCommandException;
 import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
 import net.dv8tion.jda.api.events.interaction.command.UserContextInteractionEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
-import net.dv8tion.jda.api.interactions.commands.Command;
+import net.dv8tion.jda.api.interactions.commands.build.CommandData;
+import net.dv8tion.jda.api.sharding.ShardManager;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * This class loads the commands by parsing the file, generating the command from the methods, deleting the commands
- * in the discord server, and creating new ones. On command event, invokes the method in the class that is used to
- * handle it
+ * This class loads the commands by parsing the file, generating the command from the methods and registering them
+ * when they changed. On command event, invokes the method in the class that is used to handle it
  */
 public class CommandLoader extends ListenerAdapter {
 
-    private static final HashMap<Command, SlashCommand> slashCommands = new HashMap<>();
-    private static final HashMap<Command, ContextCommand> contextCommands = new HashMap<>();
+    private static final String HASH_FILE = "CommandHashes.json";
+    private static final String NO_PERMISSION = "You don't have permission to use this command.";
+    private static volatile Map<String, SlashCommand> slashCommands = Map.of();
+    private static volatile Map<String, ContextCommand> contextCommands = Map.of();
+    private static volatile CommandRegistry registry = CommandRegistry.empty();
+    private static volatile CommandPermissions permissions = CommandPermissions.empty();
+    private final CommandExecutor executor;
+    private final AtomicBoolean firstInteraction = new AtomicBoolean(true);
 
     /**
-     * Deletes/registers the commands so that they can be updated.
+     * Creates the listener that runs the handlers on the given executor
      *
-     * @param jda JDA Object
+     * @param executor CommandExecutor that runs the handlers off the event thread
      */
-    public static void registerCommands(JDA jda) {
-        //Running it asynchronously
-        CompletableFuture.runAsync(() -> {
-            slashCommands.clear();
-            contextCommands.clear();
-            Configuration config = Configuration.getInstance();
-            if (config.getSystemConfig().isDel_cmd_on_reload()) {
-                Thread asyncSlashDeletion = new Thread(() -> {
-                    for (Command cmd : jda.retrieveCommands().complete()) {
-                        cmd.delete().queue();
+    public CommandLoader(CommandExecutor executor) {
+        this.executor = executor;
+    }
 
-                    }
-                    GalacticBot.getBot().getLogger().info("Deleted the slash/context commands. Now registering them.");
-                });
-                asyncSlashDeletion.start();
+    /**
+     * Builds the handlers of the commands and registers the commands with Discord. Only sends them to Discord if
+     * they changed since the last registration, or always if del_cmd_on_reload is enabled. The guilds have to be
+     * loaded when for_guild is enabled.
+     *
+     * @param shardManager The shards of the bot
+     * @return CompletableFuture that completes with true if the commands got sent to Discord
+     */
+    public static CompletableFuture<Boolean> registerCommands(ShardManager shardManager) {
+        Configuration config = Configuration.getInstance();
+        List<SlashCommand> allSlashCommands = new ArrayList<>(config.getModCommandConfig());
+        allSlashCommands.addAll(config.getUserCommandConfig());
+        //Built before registering, so the interactions never see a half filled table
+        loadHandlers(allSlashCommands, config.getContextConfig(), config.getSnapshot().ids());
+
+        Map<String, SlashCommand> slash = new HashMap<>();
+        List<CommandData> data = new ArrayList<>();
+        //The config classes build the data and its hash once per configuration, so they are reused for every target
+        Map<CommandData, String> hashes = new IdentityHashMap<>();
+        for (SlashCommand cmd : allSlashCommands) {
+            if (slash.putIfAbsent(cmd.getName(), cmd) != null) {
+                GalacticBot.getBot().getLogger().warn("The slash command \"" + cmd.getName() + "\" is defined more " +
+                        "than once, only the first one is registered.");
+                continue;
             }
-            Thread asyncModCommandRegister = new Thread(() -> {
-                config.getModCommandConfig().forEach(e -> slashCommands.put(
-                        jda.upsertCommand(e.toData()).complete(),
-                        e
-                ));
-                GalacticBot.getBot().getLogger().info("Registered the mod slash commands.");
-            });
-            Thread asyncUserCommandRegister = new Thread(() -> {
-                config.getUserCommandConfig().forEach(e -> slashCommands.put(jda.upsertCommand(e.toData()).complete()
-                        , e));
-                GalacticBot.getBot().getLogger().info("Registered the user slash commands.");
-            });
-            Thread asyncContextCommandRegister = new Thread(() -> {
-                config.getContextConfig().forEach(e -> contextCommands.put(
-                        jda.upsertCommand(e.toData()).complete(),
-                        e
-                ));
-                GalacticBot.getBot().getLogger().info("Registered the context commands.");
-            });
-            asyncModCommandRegister.start();
-            asyncUserCommandRegister.start();
-            asyncContextCommandRegister.start();
-            try {
-                asyncModCommandRegister.join();
-                asyncUserCommandRegister.join();
-                asyncContextCommandRegister.join();
+            data.add(cmd.toData());
+            hashes.put(cmd.toData(), cmd.getContentHash());
+        }
+        Map<String, ContextCommand> context = new HashMap<>();
+        for (ContextCommand cmd : config.getContextConfig()) {
+            if (context.putIfAbsent(cmd.getName(), cmd) == null) {
+                data.add(cmd.toData());
+                hashes.put(cmd.toData(), cmd.getContentHash());
+            }
+        }
+        slashCommands = Map.copyOf(slash);
+        contextCommands = Map.copyOf(context);
+
+        return syncCommands(shardManager, data, hashes, config.getSystemConfig());
+    }
+
+    /**
+     * Builds the handlers and permissions of the commands that the interactions are dispatched to, without sending
+     * anything to Discord. The factories of the previous handlers are reused where they didn't change.
+     *
+     * @param slash   Slash commands from Mod.yml and User.yml
+     * @param context Context commands from Context.yml
+     * @param ids     The roles and ids the permissions are resolved with
+     */
+    public static void loadHandlers(List<SlashCommand> slash, List<ContextCommand> context,
+                                    RolesAndIdsRegistry ids) {
+        CommandRegistry old = registry;
+        registry = CommandRegistry.build(slash, context, old);
+        old.closeReplaced(registry);
+        permissions = CommandPermissions.build(slash, ids);
+        GalacticBot.getBot().getLogger().info("Loaded " + registry.getSlashCount() + " slash and " +
+                registry.getContextCount() + " context command handlers.");
+    }
+
+    /**
+     * Builds the permissions of the commands again, for example after the RolesAndIds.yml changed. The handlers and
+     * the commands registered with Discord stay the same.
+     *
+     * @param snapshot The configuration with the commands and the roles and ids the permissions are resolved with
+     */
+    public static void loadPermissions(ConfigSnapshot snapshot) {
+        List<SlashCommand> allSlashCommands = new ArrayList<>(snapshot.modCommands());
+        allSlashCommands.addAll(snapshot.userCommands());
+        permissions = CommandPermissions.build(allSlashCommands, snapshot.ids());
+    }
 
-            } catch (InterruptedException e) {
-                throw new RuntimeException(e);
+    /**
+     * Registers the commands globally, or in every configured guild at the same time when for_guild is enabled.
+     * Commands left over in a target that isn't used anymore, for example the global commands after switching to
+     * for_guild, are removed. Every guild is registered through its own shard. The global commands belong to the
+     * whole bot, so only the process that runs shard 0 registers them.
+     *
+     * @param shardManager The shards of the bot
+     * @param commands     All commands
+     * @param hashes       The hashes of the commands
+     * @param system       The System.json
+     * @return CompletableFuture that completes with true if any commands got sent to Discord
+     */
+    private static CompletableFuture<Boolean> syncCommands(ShardManager shardManager, List<CommandData> commands,
+                                                           Map<CommandData, String> hashes, SystemConfig system) {
+        CommandSync sync = new CommandSync(new File(Configuration.getDataPath() + HASH_FILE));
+        boolean force = system.isDel_cmd_on_reload();
+        JDA firstShard = shardManager.getShardById(0);
+        List<CompletableFuture<Boolean>> registrations = new ArrayList<>();
+        Set<String> targets = new HashSet<>();
+        if (system.isFor_guild()) {
+            List<GuildConfig> guilds = new ArrayList<>(system.getGuilds());
+            if (guilds.isEmpty()) {
+                GuildConfig guildConfig = new GuildConfig();
+                guildConfig.setId(system.getGuild_id());
+                guilds.add(guildConfig);
+            }
+            for (GuildConfig guildConfig : guilds) {
+                Guild guild = shardManager.getGuildById(guildConfig.getId());
+                if (guild == null) {
+                    GalacticBot.getBot().getLogger().warn("Can't register the commands in the guild " +
+                            guildConfig.getId() + ", the bot isn't in it or it's on a shard of another process.");
+                    continue;
+                }
+                String target = CommandSync.guildTarget(guild.getIdLong());
+                targets.add(target);
+                registrations.add(sync.sync(target, guild::updateCommands, filter(commands, guildConfig),
+                        hashes::get, force));
+            }
+        } else if (firstShard != null) {
+            targets.add(CommandSync.GLOBAL);
+            registrations.add(sync.sync(CommandSync.GLOBAL, firstShard::updateCommands, commands, hashes::get,
+                    force));
+        } else {
+            GalacticBot.getBot().getLogger().info("The global commands are registered by the process of shard 0.");
+        }
+        for (String target : sync.getTargets()) {
+            if (targets.contains(target)) {
+                continue;
             }
-            GalacticBot.getBot().getLogger().info("Updated and registered all slash and context commands.");
-        });
+            if (target.equals(CommandSync.GLOBAL)) {
+                if (firstShard != null) {
+                    registrations.add(sync.sync(target, firstShard::updateCommands, List.of(), false));
+                }
+                continue;
+            }
+            Guild guild = shardManager.getGuildById(target.substring(target.indexOf(':') + 1));
+            if (guild != null) {
+                registrations.add(sync.sync(target, guild::updateCommands, List.of(), false));
+            }
+        }
+        return CompletableFuture.allOf(registrations.toArray(CompletableFuture[]::new))
+                .thenApply(done -> registrations.stream().anyMatch(CompletableFuture::join))
+                .whenComplete((sent, error) -> {
+                    if (error != null) {
+                        GalacticBot.getBot().getLogger().error("Couldn't register the commands: " +
+                                error.getMessage());
+                    }
+                });
+    }
+
+    /**
+     * Filters the commands down to the ones the guild should have
+     *
+     * @param commands    All commands
+     * @param guildConfig The guild
+     * @return The commands listed for the guild, or all of them if none are listed
+     */
+    private static List<CommandData> filter(List<CommandData> commands, GuildConfig guildConfig) {
+        List<String> names = guildConfig.getCommands();
+        if (names.isEmpty()) {
+            return commands;
+        }
+        List<CommandData> filtered = commands.stream().filter(e -> names.contains(e.getName())).toList();
+        if (filtered.size() < names.size()) {
+            GalacticBot.getBot().getLogger().warn("Some commands listed for the guild " + guildConfig.getId() +
+                    " don't exist.");
+        }
+        return filtered;
     }
 
     /**
-     * Gets the map of slash commands
+     * Gets the slash commands by their name
      *
-     * @return Hashmap&lt;Command, SlashCommand&gt;
+     * @return Map&lt;String, SlashCommand&gt;
      */
-    public static HashMap<Command, SlashCommand> getSlashCommands() {
+    public static Map<String, SlashCommand> getSlashCommands() {
         return slashCommands;
     }
 
     /**
-     * Gets the map of context commands
+     * Gets the context commands by their name
      *
-     * @return Hashmap&lt;Command, ContextCommand&gt;
+     * @return Map&lt;String, ContextCommand&gt;
      */
-    public static HashMap<Command, ContextCommand> getContextCommands() {
+    public static Map<String, ContextCommand> getContextCommands() {
         return contextCommands;
     }
 
+    /**
+     * Gets the current dispatch table of the command handlers
+     *
+     * @return CommandRegistry
+     */
+    public static CommandRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Gets the compiled privileges of the slash commands
+     *
+     * @return CommandPermissions
+     */
+    public static CommandPermissions getPermissions() {
+        return permissions;
+    }
+
     /**
      * Gets the handler of the command by its name
      *
      * @param name Name of the command as a String
-     * @return SlashHandler
+     * @return HandlerFactory of the SlashHandler
+     * @throws UnknownCommandException If the name is invalid
+     */
+    public HandlerFactory<SlashHandler> getCommand(String name) throws UnknownCommandException {
+        return getCommand(registry, name);
+    }
+
+    /**
+     * Gets the handler of the command by its name from the given registry
+     *
+     * @param registry The registry to look in
+     * @param name     Name of the command as a String
+     * @return HandlerFactory of the SlashHandler
      * @throws UnknownCommandException If the name is invalid
      */
-    @SuppressWarnings("deprecation")
-    public SlashHandler getCommand(String name) throws UnknownCommandException {
-        String cmd = slashCommands.values()
-                .stream()
-                .filter(e -> e.getName().equals(name))
-                .map(SlashCommand::getHandler).toList().get(0);
-        if (cmd == null) {
+    private static HandlerFactory<SlashHandler> getCommand(CommandRegistry registry, String name)
+            throws UnknownCommandException {
+        HandlerFactory<SlashHandler> handler = registry.getSlashHandler(name);
+        if (handler == null) {
             throw new UnknownCommandException("Unknown Command by the name: \"" + name + "\"");
         }
-        try {
-            return (SlashHandler) Class.forName(cmd).newInstance();
-        } catch (ClassNotFoundException | InstantiationException | IllegalAccessException e) {
-            throw new RuntimeException(e);
-        }
+        return handler;
     }
 
     /**
      * Gets the handler of the context command by its name
      *
      * @param name Name of the context command as a String
-     * @return SlashHandler
+     * @return HandlerFactory of the ContextHandler
      * @throws UnknownCommandException If the name is invalid
      */
-    @SuppressWarnings("deprecation")
-    public ContextHandler getContextCommand(String name) throws UnknownCommandException {
-        String cmd = contextCommands.values()
-                .stream()
-                .filter(e -> e.getName().equals(name))
-                .map(ContextCommand::getHandler).toList().get(0);
-        if (cmd == null) {
+    public HandlerFactory<ContextHandler> getContextCommand(String name) throws UnknownCommandException {
+        HandlerFactory<ContextHandler> handler = registry.getContextHandler(name);
+        if (handler == null) {
             throw new UnknownCommandException("Unknown Context Command by the name: \"" + name + "\"");
         }
-        try {
-            return (ContextHandler) Class.forName(cmd).newInstance();
-        } catch (ClassNotFoundException | InstantiationException | IllegalAccessException e) {
-            throw new RuntimeException(e);
+        return handler;
+    }
+
+    /**
+     * Getter for the executor that runs the handlers
+     *
+     * @return CommandExecutor
+     */
+    public CommandExecutor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Logs how long after the start the first interaction got handled
+     */
+    private void logFirstInteraction() {
+        if (this.firstInteraction.compareAndSet(true, false)) {
+            GalacticBot.getBot().getLogger().info("Handled the first interaction " + TimeUnit.NANOSECONDS.toMillis(
+                    System.nanoTime() - GalacticBot.getBot().getStartedAt()) + "ms after the start.");
         }
     }
 
     /**
-     * Invokes the method to handle the event
+     * Queues the method to handle the event on the command executor
      *
      * @param event UserContextInteractionEvent
      */
     @Override
     public void onUserContextInteraction(UserContextInteractionEvent event) {
         super.onUserContextInteraction(event);
+        HandlerFactory<ContextHandler> factory;
         try {
-            this.getContextCommand(event.getName()).handleEvent(event);
+            factory = this.getContextCommand(event.getName());
         } catch (UnknownCommandException e) {
             throw new RuntimeException(e);
         }
+        //The handler keeps seeing this configuration even if it gets reloaded while it runs
+        ConfigSnapshot snapshot = Configuration.getInstance().getSnapshot();
+        this.executor.execute(event.getName(), event, () -> Configuration.runWith(snapshot, () -> {
+            ContextHandler handler = factory.acquire();
+            try {
+                handler.handleEvent(event);
+            } finally {
+                factory.release(handler);
+                this.logFirstInteraction();
+            }
+        }));
     }
 
     /**
-     * Invokes the method to handle the event
+     * Queues the method to handle the event on the command executor
      *
      * @param event SlashCommandInteractionEvent
      */
     @Override
     public void onSlashCommandInteraction(SlashCommandInteractionEvent event) {
         super.onSlashCommandInteraction(event);
+        if (!permissions.isAllowed(event.getName(), event.getMember(), event.getChannel().getIdLong())) {
+            event.reply(NO_PERMISSION).setEphemeral(true).queue();
+            return;
+        }
+        //The factory and the binder have to come from the same registry
+        CommandRegistry current = registry;
+        HandlerFactory<SlashHandler> factory;
         try {
-            this.getCommand(event.getName()).handleEvent(event);
+            factory = getCommand(current, event.getName());
         } catch (UnknownCommandException e) {
             throw new RuntimeException(e);
         }
+        OptionBinder<?> binder = current.getBinder(event.getName());
+        //The handler keeps seeing this configuration even if it gets reloaded while it runs
+        ConfigSnapshot snapshot = Configuration.getInstance().getSnapshot();
+        this.executor.execute(event.getName(), event, () -> Configuration.runWith(snapshot, () -> {
+            SlashHandler handler = factory.acquire();
+            try {
+                if (binder != null) {
+                    binder.handle(handler, event);
+                } else {
+                    handler.handleEvent(event);
+                }
+            } finally {
+                factory.release(handler);
+                this.logFirstInteraction();
+            }
+        }));
     }
 }
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.galactic.star.commands;
+
+import dev.galactic.star.GalacticBot;
+import dev.galactic.star.config.RolesAndIdsRegistry;
+import dev.galactic.star.config.comands.slash.SlashCommand;
+import dev.galactic.star.config.comands.slash.SlashPrivilege;
+import net.dv8tion.jda.api.Permission;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Role;
+import net.dv8tion.jda.api.interactions.commands.privileges.IntegrationPrivilege;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The privileges of the slash commands, resolved to snowflakes once per load of the configuration. Every command is
+ * compiled into sorted arrays of the allowed and denied ids, so checking a member is a binary search per role and
+ * happens before a handler is created or the database is touched. Administrators can use every command.
+ */
+public final class CommandPermissions {
+
+    private static final CommandPermissions EMPTY = new CommandPermissions(Map.of());
+    private final Map<String, Check> checks;
+
+    private CommandPermissions(Map<String, Check> checks) {
+        this.checks = checks;
+    }
+
+    /**
+     * Returns permissions that allow every command
+     *
+     * @return Empty CommandPermissions
+     */
+    public static CommandPermissions empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Compiles the privileges of the commands
+     *
+     * @param commands Slash commands from Mod.yml and User.yml
+     * @param ids      Index of the RolesAndIds.yml to resolve the names of the privileges with
+     * @return New CommandPermissions instance
+     */
+    public static CommandPermissions build(Collection<SlashCommand> commands, RolesAndIdsRegistry ids) {
+        Map<String, Check> checks = new HashMap<>();
+        for (SlashCommand cmd : commands) {
+            List<SlashPrivilege> privileges = cmd.getPrivileges() == null ? List.of() : cmd.getPrivileges();
+            if (cmd.isEnabledByDefault() && privileges.isEmpty()) {
+                continue;
+            }
+            IdSet allowed = new IdSet();
+            IdSet denied = new IdSet();
+            boolean unresolved = false;
+            for (SlashPrivilege privilege : privileges) {
+                long id = privilege.resolveId(ids);
+                if (id == 0) {
+                    GalacticBot.getBot().getLogger().warn("The privilege \"" + privilege.getId() + "\" of the " +
+                            "command \"" + cmd.getName() + "\" isn't in the RolesAndIds.yml, only administrators " +
+                            "can use the command until it is.");
+                    unresolved = true;
+                    continue;
+                }
+                (privilege.isEnabled() ? allowed : denied).add(privilege.getPrivilegeType(), id);
+            }
+            if (unresolved) {
+                //Skipping the privilege could open the command to everyone, so it fails closed instead
+                checks.put(cmd.getName(), new Check(true, Ids.EMPTY, Ids.EMPTY));
+                continue;
+            }
+            Ids allowedIds = allowed.compile();
+            boolean restricted = !cmd.isEnabledByDefault() || allowedIds.roles().length + allowedIds.users().length > 0;
+            checks.put(cmd.getName(), new Check(restricted, allowedIds, denied.compile()));
+        }
+        return new CommandPermissions(Map.copyOf(checks));
+    }
+
+    /**
+     * Checks if the member can use the command
+     *
+     * @param command   Name of the command
+     * @param member    The member, null if the command wasn't used in a guild
+     * @param channelId Id of the channel the command was used in
+     * @return True if the member is allowed to use it
+     */
+    public boolean isAllowed(String command, Member member, long channelId) {
+        Check check = this.checks.get(command);
+        if (check == null) {
+            return true;
+        }
+        if (member == null) {
+            return !check.restricted();
+        }
+        if (member.hasPermission(Permission.ADMINISTRATOR)) {
+            return true;
+        }
+        Ids denied = check.denied();
+        Ids allowed = check.allowed();
+        if (denied.contains(IntegrationPrivilege.Type.CHANNEL, channelId)) {
+            return false;
+        }
+        if (allowed.channels().length > 0 && !allowed.contains(IntegrationPrivilege.Type.CHANNEL, channelId)) {
+            return false;
+        }
+        long userId = member.getIdLong();
+        if (denied.contains(IntegrationPrivilege.Type.USER, userId)) {
+            return false;
+        }
+        if (allowed.contains(IntegrationPrivilege.Type.USER, userId)) {
+            return true;
+        }
+        boolean roleAllowed = false;
+        for (Role role : member.getRoles()) {
+            long roleId = role.getIdLong();
+            if (denied.contains(IntegrationPrivilege.Type.ROLE, roleId)) {
+                return false;
+            }
+            roleAllowed |= allowed.contains(IntegrationPrivilege.Type.ROLE, roleId);
+        }
+        return roleAllowed || !check.restricted();
+    }
+
+    /**
+     * Getter for the amount of commands that have privileges
+     *
+     * @return Amount of restricted commands
+     */
+    public int size() {
+        return this.checks.size();
+    }
+
+    /**
+     * The compiled privileges of a command
+     *
+     * @param restricted True if the command can only be used by the allowed roles and users, or only by
+     *                   administrators if there are none
+     * @param allowed    Ids that are allowed
+     * @param denied     Ids that are denied, these win over the allowed ones
+     */
+    private record Check(boolean restricted, Ids allowed, Ids denied) {
+    }
+
+    /**
+     * Sorted ids by the type of the privilege
+     *
+     * @param roles    Sorted role ids
+     * @param users    Sorted user ids
+     * @param channels Sorted channel ids
+     */
+    private record Ids(long[] roles, long[] users, long[] channels) {
+
+        private static final long[] NONE = new long[0];
+        private static final Ids EMPTY = new Ids(NONE, NONE, NONE);
+
+        /**
+         * Checks if the id is in the ids of the type
+         *
+         * @param type Type of the privilege
+         * @param id   The id
+         * @return True if it is
+         */
+        boolean contains(IntegrationPrivilege.Type type, long id) {
+            long[] ids = switch (type) {
+                case ROLE -> this.roles;
+                case USER -> this.users;
+                case CHANNEL -> this.channels;
+                default -> NONE;
+            };
+            return ids.length > 0 && Arrays.binarySearch(ids, id) >= 0;
+        }
+    }
+
+    /**
+     * Collects the ids while the privileges are compiled
+     */
+    private static final class IdSet {
+        private final Map<IntegrationPrivilege.Type, long[]> ids = new HashMap<>();
+
+        /**
+         * Adds an id
+         *
+         * @param type Type of the privilege
+         * @param id   The id
+         */
+        void add(IntegrationPrivilege.Type type, long id) {
+            long[] current = this.ids.getOrDefault(type, new long[0]);
+            long[] next = Arrays.copyOf(current, current.length + 1);
+            next[current.length] = id;
+            this.ids.put(type, next);
+        }
+
+        /**
+         * Sorts the ids, so they can be binary searched
+         *
+         * @return Ids
+         */
+        Ids compile() {
+            return new Ids(this.sorted(IntegrationPrivilege.Type.ROLE), this.sorted(IntegrationPrivilege.Type.USER),
+                    this.sorted(IntegrationPrivilege.Type.CHANNEL));
+        }
+
+        /**
+         * Sorts the ids of the type
+         *
+         * @param type Type of the privilege
+         * @return Sorted ids without duplicates
+         */
+        private long[] sorted(IntegrationPrivilege.Type type) {
+            long[] ids = this.ids.getOrDefault(type, new long[0]).clone();
+            Arrays.sort(ids);
+            return Arrays.stream(ids).distinct().toArray();
+        }
+    }
+}
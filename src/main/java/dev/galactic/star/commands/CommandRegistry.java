@@ -0,0 +1,225 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.galactic.star.commands;
+
+import dev.galactic.star.GalacticBot;
+import dev.galactic.star.config.comands.context.ContextCommand;
+import dev.galactic.star.config.comands.slash.SlashCommand;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable dispatch table that maps the command names to the factories of their handlers. It is built once when the
+ * commands are registered and swapped as a whole on reload, so a lookup is a single hash probe without any
+ * reflection. The option binders of typed handlers are created and checked against the YAML at the same time.
+ */
+public final class CommandRegistry {
+
+    private static final CommandRegistry EMPTY = new CommandRegistry(Map.of(), Map.of(), Map.of());
+    private final Map<String, HandlerFactory<SlashHandler>> slashHandlers;
+    private final Map<String, HandlerFactory<ContextHandler>> contextHandlers;
+    private final Map<String, OptionBinder<?>> binders;
+
+    private CommandRegistry(Map<String, HandlerFactory<SlashHandler>> slashHandlers,
+                            Map<String, HandlerFactory<ContextHandler>> contextHandlers,
+                            Map<String, OptionBinder<?>> binders) {
+        this.slashHandlers = slashHandlers;
+        this.contextHandlers = contextHandlers;
+        this.binders = binders;
+    }
+
+    /**
+     * Returns a registry without any commands in it
+     *
+     * @return Empty CommandRegistry
+     */
+    public static CommandRegistry empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Builds the registry from the parsed command configurations. Handlers that can't be loaded are skipped and
+     * logged, so they show up as unknown commands instead of failing every interaction.
+     *
+     * @param slashCommands   Slash commands from Mod.yml and User.yml
+     * @param contextCommands Context commands from Context.yml
+     * @return New CommandRegistry instance
+     */
+    public static CommandRegistry build(Collection<SlashCommand> slashCommands,
+                                        Collection<ContextCommand> contextCommands) {
+        return build(slashCommands, contextCommands, EMPTY);
+    }
+
+    /**
+     * Builds the registry from the parsed command configurations, keeping the factories of the previous registry
+     * whose handler settings didn't change. Call closeReplaced on the previous registry afterwards.
+     *
+     * @param slashCommands   Slash commands from Mod.yml and User.yml
+     * @param contextCommands Context commands from Context.yml
+     * @param previous        The registry that gets replaced
+     * @return New CommandRegistry instance
+     */
+    public static CommandRegistry build(Collection<SlashCommand> slashCommands,
+                                        Collection<ContextCommand> contextCommands, CommandRegistry previous) {
+        Map<String, HandlerFactory<SlashHandler>> slash = new HashMap<>();
+        Map<String, OptionBinder<?>> binders = new HashMap<>();
+        for (SlashCommand cmd : slashCommands) {
+            HandlerFactory<SlashHandler> factory = previous.getSlashHandler(cmd.getName());
+            if (factory == null || !factory.matches(cmd.getHandler(), HandlerScope.of(cmd.getScope()),
+                    cmd.getPoolSize())) {
+                factory = createFactory(cmd.getName(), cmd.getHandler(), cmd.getScope(), cmd.getPoolSize(),
+                        SlashHandler.class);
+            }
+            if (factory == null) {
+                continue;
+            }
+            if (TypedSlashHandler.class.isAssignableFrom(factory.getHandlerClass())) {
+                try {
+                    binders.put(cmd.getName(), OptionBinder.create(factory.getHandlerClass(), cmd));
+                } catch (IllegalArgumentException e) {
+                    GalacticBot.getBot().getLogger().warn("Couldn't load the command \"" + cmd.getName() + "\": " +
+                            e.getMessage());
+                    if (factory != previous.getSlashHandler(cmd.getName())) {
+                        factory.close();
+                    }
+                    continue;
+                }
+            }
+            slash.put(cmd.getName(), factory);
+        }
+        Map<String, HandlerFactory<ContextHandler>> context = new HashMap<>();
+        for (ContextCommand cmd : contextCommands) {
+            HandlerFactory<ContextHandler> factory = previous.getContextHandler(cmd.getName());
+            if (factory == null || !factory.matches(cmd.getHandler(), HandlerScope.of(cmd.getScope()),
+                    cmd.getPoolSize())) {
+                factory = createFactory(cmd.getName(), cmd.getHandler(), cmd.getScope(), cmd.getPoolSize(),
+                        ContextHandler.class);
+            }
+            if (factory != null) {
+                context.put(cmd.getName(), factory);
+            }
+        }
+        return new CommandRegistry(Map.copyOf(slash), Map.copyOf(context), Map.copyOf(binders));
+    }
+
+    /**
+     * Creates the handler factory of a command
+     *
+     * @param name     Name of the command, used for logging
+     * @param handler  Fully qualified class name of the handler
+     * @param scope    Scope from the YAML, can be null
+     * @param poolSize Maximum amount of idle handlers when pooled
+     * @param type     The handler interface the class has to implement
+     * @param <T>      Handler type
+     * @return HandlerFactory, or null if it couldn't be created
+     */
+    private static <T extends LifecycleHandler> HandlerFactory<T> createFactory(String name, String handler,
+                                                                              String scope, int poolSize,
+                                                                              Class<T> type) {
+        if (handler == null) {
+            GalacticBot.getBot().getLogger().warn("The command \"" + name + "\" doesn't have a handler.");
+            return null;
+        }
+        try {
+            return HandlerFactory.create(handler, type, HandlerScope.of(scope), poolSize);
+        } catch (ClassNotFoundException e) {
+            GalacticBot.getBot().getLogger().warn("Couldn't find the handler \"" + handler + "\" of the command \"" +
+                    name + "\".");
+            return null;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            GalacticBot.getBot().getLogger().warn("Couldn't create the handler \"" + handler + "\" of the command \""
+                    + name + "\": " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Gets the factory of the slash handler registered under the name
+     *
+     * @param name Name of the slash command
+     * @return HandlerFactory or null if there is none
+     */
+    public HandlerFactory<SlashHandler> getSlashHandler(String name) {
+        return this.slashHandlers.get(name);
+    }
+
+    /**
+     * Gets the option binder of a slash command with a TypedSlashHandler
+     *
+     * @param name Name of the slash command
+     * @return OptionBinder or null if the handler isn't typed
+     */
+    public OptionBinder<?> getBinder(String name) {
+        return this.binders.get(name);
+    }
+
+    /**
+     * Gets the factory of the context handler registered under the name
+     *
+     * @param name Name of the context command
+     * @return HandlerFactory or null if there is none
+     */
+    public HandlerFactory<ContextHandler> getContextHandler(String name) {
+        return this.contextHandlers.get(name);
+    }
+
+    /**
+     * Getter for the amount of slash handlers in the registry
+     *
+     * @return Amount of slash handlers
+     */
+    public int getSlashCount() {
+        return this.slashHandlers.size();
+    }
+
+    /**
+     * Getter for the amount of context handlers in the registry
+     *
+     * @return Amount of context handlers
+     */
+    public int getContextCount() {
+        return this.contextHandlers.size();
+    }
+
+    /**
+     * Closes all handler factories. Called once the registry got replaced on reload.
+     */
+    public void close() {
+        this.slashHandlers.values().forEach(HandlerFactory::close);
+        this.contextHandlers.values().forEach(HandlerFactory::close);
+    }
+
+    /**
+     * Closes the handler factories that the new registry didn't take over
+     *
+     * @param next The registry that replaced this one
+     */
+    public void closeReplaced(CommandRegistry next) {
+        this.slashHandlers.forEach((name, factory) -> {
+            if (next.getSlashHandler(name) != factory) {
+                factory.close();
+            }
+        });
+        this.contextHandlers.forEach((name, factory) -> {
+            if (next.getContextHandler(name) != factory) {
+                factory.close();
+            }
+        });
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.galactic.star.commands;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import dev.galactic.star.GalacticBot;
+import net.dv8tion.jda.api.interactions.commands.build.CommandData;
+import net.dv8tion.jda.api.requests.restaction.CommandListUpdateAction;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Registers the commands with Discord only when they changed. Every command is hashed from the JSON that would be
+ * sent to Discord, and the hashes of the last registration are kept in a file, separately for every target (the
+ * global commands or a guild). If they are the same, nothing is sent at all, otherwise the whole list of the target
+ * is replaced with one bulk update. Commands that aren't in the list anymore get deleted by Discord as part of that
+ * update.
+ */
+public final class CommandSync {
+
+    /**
+     * Target of the global commands
+     */
+    public static final String GLOBAL = "global";
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    private final File stateFile;
+    private final Map<String, Map<String, String>> state;
+
+    /**
+     * Creates the sync that keeps its hashes in the given file
+     *
+     * @param stateFile File the hashes of the last registration are stored in
+     */
+    public CommandSync(File stateFile) {
+        this.stateFile = stateFile;
+        this.state = this.load();
+    }
+
+    /**
+     * Returns the target of the commands of a guild
+     *
+     * @param guildId Id of the guild
+     * @return Target name
+     */
+    public static String guildTarget(long guildId) {
+        return "guild:" + guildId;
+    }
+
+    /**
+     * Replaces the registered commands of the target if they differ from its last registration. Different targets
+     * can be synced at the same time, every guild has a rate limit of its own.
+     *
+     * @param target   GLOBAL or a guildTarget
+     * @param update   Creates the bulk update, for example jda::updateCommands
+     * @param commands All commands that should be registered in the target
+     * @param force    Sends the update even if nothing changed
+     * @return CompletableFuture that completes with true if the update got sent, false if nothing changed
+     */
+    public CompletableFuture<Boolean> sync(String target, Supplier<CommandListUpdateAction> update,
+                                           Collection<CommandData> commands, boolean force) {
+        return this.sync(target, update, commands, CommandSync::hash, force);
+    }
+
+    /**
+     * Same as sync(target, update, commands, force), but takes the hashes from the hasher. Used with the hashes the
+     * config classes already computed, so they aren't computed again for every target.
+     *
+     * @param target   GLOBAL or a guildTarget
+     * @param update   Creates the bulk update, for example jda::updateCommands
+     * @param commands All commands that should be registered in the target
+     * @param hasher   Returns the hash of a command, like hash(data)
+     * @param force    Sends the update even if nothing changed
+     * @return CompletableFuture that completes with true if the update got sent, false if nothing changed
+     */
+    public CompletableFuture<Boolean> sync(String target, Supplier<CommandListUpdateAction> update,
+                                           Collection<CommandData> commands, Function<CommandData, String> hasher,
+                                           boolean force) {
+        Map<String, String> desired = hashAll(commands, hasher);
+        Map<String, String> registered = this.getRegistered(target);
+        if (!force && desired.equals(registered)) {
+            GalacticBot.getBot().getLogger().info("The " + desired.size() + " commands of " + target + " are up to " +
+                    "date, nothing to register.");
+            return CompletableFuture.completedFuture(false);
+        }
+        String changes = describeChanges(registered, desired);
+        return update.get().addCommands(commands).submit().thenApply(result -> {
+            this.save(target, desired);
+            GalacticBot.getBot().getLogger().info("Registered " + result.size() + " commands in " + target + " (" +
+                    changes + ").");
+            return true;
+        });
+    }
+
+    /**
+     * Getter for the targets that had commands registered the last time
+     *
+     * @return Set of the targets
+     */
+    public synchronized Set<String> getTargets() {
+        Set<String> targets = new HashSet<>();
+        this.state.forEach((target, hashes) -> {
+            if (!hashes.isEmpty()) {
+                targets.add(target);
+            }
+        });
+        return targets;
+    }
+
+    /**
+     * Getter for the hashes of the last registration of a target
+     *
+     * @param target The target
+     * @return Map of the key of the command and its hash, empty if nothing got registered yet
+     */
+    private synchronized Map<String, String> getRegistered(String target) {
+        return Map.copyOf(this.state.getOrDefault(target, Map.of()));
+    }
+
+    /**
+     * Hashes every command by its type and name
+     *
+     * @param commands The commands
+     * @return Map of the key of the command and its hash
+     */
+    public static Map<String, String> hashAll(Collection<CommandData> commands) {
+        return hashAll(commands, CommandSync::hash);
+    }
+
+    /**
+     * Hashes every command by its type and name with the given hasher
+     *
+     * @param commands The commands
+     * @param hasher   Returns the hash of a command
+     * @return Map of the key of the command and its hash
+     */
+    public static Map<String, String> hashAll(Collection<CommandData> commands, Function<CommandData, String> hasher) {
+        Map<String, String> hashes = new HashMap<>();
+        for (CommandData data : commands) {
+            hashes.put(keyOf(data), hasher.apply(data));
+        }
+        return hashes;
+    }
+
+    /**
+     * Hashes the JSON of a command with SHA-256. The keys are sorted first, so the hash doesn't depend on the order
+     * they were added in.
+     *
+     * @param data The command
+     * @return Hex string of the hash
+     */
+    public static String hash(CommandData data) {
+        String json = canonicalize(data.toData().toMap()).toString();
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(json.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Returns the key a command is stored under. Slash and context commands can have the same name, so the type is
+     * part of it.
+     *
+     * @param data The command
+     * @return Key of the command
+     */
+    private static String keyOf(CommandData data) {
+        return data.getType().name().toLowerCase() + ":" + data.getName();
+    }
+
+    /**
+     * Sorts the keys of all maps in the JSON tree
+     *
+     * @param value A map, list or plain value of the JSON tree
+     * @return The value with sorted maps
+     */
+    private static Object canonicalize(Object value) {
+        if (value instanceof Map<?, ?> map) {
+            Map<String, Object> sorted = new TreeMap<>();
+            map.forEach((key, child) -> sorted.put(String.valueOf(key), canonicalize(child)));
+            return sorted;
+        }
+        if (value instanceof Collection<?> list) {
+            List<Object> copy = new ArrayList<>(list.size());
+            list.forEach(child -> copy.add(canonicalize(child)));
+            return copy;
+        }
+        return value;
+    }
+
+    /**
+     * Describes how the commands changed since the last registration
+     *
+     * @param registered Hashes of the last registration
+     * @param desired    Hashes of the commands to register
+     * @return For example "1 added, 2 changed, 0 removed"
+     */
+    private static String describeChanges(Map<String, String> registered, Map<String, String> desired) {
+        int added = 0;
+        int changed = 0;
+        for (Map.Entry<String, String> entry : desired.entrySet()) {
+            String old = registered.get(entry.getKey());
+            if (old == null) {
+                added++;
+            } else if (!old.equals(entry.getValue())) {
+                changed++;
+            }
+        }
+        long removed = registered.keySet().stream().filter(key -> !desired.containsKey(key)).count();
+        return added + " added, " + changed + " changed, " + removed + " removed";
+    }
+
+    /**
+     * Reads the hashes of the last registrations
+     *
+     * @return Map of the target and the hashes of its commands, empty if there was no registration yet
+     */
+    private Map<String, Map<String, String>> load() {
+        if (!this.stateFile.exists()) {
+            return new TreeMap<>();
+        }
+        try {
+            Map<String, Map<String, String>> hashes = GSON.fromJson(Files.readString(this.stateFile.toPath()),
+                    new TypeToken<TreeMap<String, TreeMap<String, String>>>() {
+                    }.getType());
+            return hashes == null ? new TreeMap<>() : hashes;
+        } catch (IOException | JsonParseException e) {
+            GalacticBot.getBot().getLogger().warn("Couldn't read " + this.stateFile.getName() + ", registering all " +
+                    "commands: " + e.getMessage());
+            return new TreeMap<>();
+        }
+    }
+
+    /**
+     * Stores the hashes of the registration that just went through
+     *
+     * @param target The target that got registered
+     * @param hashes Map of the key of the command and its hash
+     */
+    private synchronized void save(String target, Map<String, String> hashes) {
+        this.state.put(target, new TreeMap<>(hashes));
+        try {
+            Files.writeString(this.stateFile.toPath(), GSON.toJson(this.state));
+        } catch (IOException e) {
+            GalacticBot.getBot().getLogger().warn("Couldn't write " + this.stateFile.getName() + ", the commands " +
+                    "will be registered again on the next start: " + e.getMessage());
+        }
+    }
+}
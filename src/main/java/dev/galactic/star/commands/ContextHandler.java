@@ -19,11 +19,15 @@ package dev.galactic.star.commands;
 import net.dv8tion.jda.api.events.interaction.command.UserContextInteractionEvent;
 
 /**
- * The handler interface so on execution, it can handle accordingly based on the type of context command
+ * The handler interface so on execution, it can handle accordingly based on the type of context command. Every event gets
+ * a new instance unless the scope of the command is set to singleton or pooled. A singleton is called from all
+ * command threads at the same time, so it has to be thread safe.
  */
-public interface ContextHandler {
+public interface ContextHandler extends LifecycleHandler {
     /**
      * The method that is implemented so it can be handled
+     * It runs on the command executor. If defer_reply is enabled in the System.json, the event is already
+     * deferred, so the response has to be sent through event.getHook().
      *
      * @param event The type of event that will track
      */
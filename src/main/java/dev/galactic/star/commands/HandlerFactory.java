@@ -0,0 +1,263 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.galactic.star.commands;
+
+import dev.galactic.star.GalacticBot;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates and hands out the handler instances of a command based on its scope. Every acquire() has to be followed
+ * by a release() with the same instance once the event is handled. Closing the factory on reload doesn't close
+ * instances that are still handling an event, they are closed once they get released.
+ *
+ * @param <T> Handler type
+ * @see HandlerScope
+ */
+public final class HandlerFactory<T extends LifecycleHandler> {
+
+    private static final int CLOSED = 1 << 30;
+    private static final int DESTROYED = -1;
+    private final String className;
+    private final Class<?> handlerClass;
+    private final Class<T> type;
+    private final HandlerScope scope;
+    private final MethodHandle constructor;
+    private final int maxIdle;
+    private final Queue<T> idle = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private final T singleton;
+    //Events using the singleton, plus CLOSED once the factory is closed. DESTROYED once the singleton is closed.
+    private final AtomicInteger singletonState = new AtomicInteger();
+    private volatile boolean closed;
+
+    private HandlerFactory(String className, Class<?> handlerClass, Class<T> type, HandlerScope scope,
+                           MethodHandle constructor, int maxIdle) {
+        this.className = className;
+        this.handlerClass = handlerClass;
+        this.type = type;
+        this.scope = scope;
+        this.constructor = constructor;
+        this.maxIdle = maxIdle;
+        //Created right away so a broken init() shows up on load and not on the first interaction. create() already
+        //checked the constructor, so a prototype doesn't need a throwaway instance.
+        if (scope == HandlerScope.SINGLETON) {
+            this.singleton = this.newInstance();
+            return;
+        }
+        this.singleton = null;
+        if (scope == HandlerScope.POOLED) {
+            this.idle.offer(this.newInstance());
+            this.idleCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Looks up the handler class and creates the factory for it
+     *
+     * @param className Fully qualified class name of the handler
+     * @param type      Interface the handler has to implement
+     * @param scope     Scope of the handler instances
+     * @param poolSize  Maximum amount of idle instances kept when the scope is POOLED
+     * @param <T>       Handler type
+     * @return HandlerFactory
+     * @throws ReflectiveOperationException If the class doesn't exist, doesn't implement the type or doesn't have a
+     *                                      public no-args constructor
+     */
+    public static <T extends LifecycleHandler> HandlerFactory<T> create(String className, Class<T> type,
+                                                                        HandlerScope scope, int poolSize)
+            throws ReflectiveOperationException {
+        Class<?> clazz = Class.forName(className);
+        if (!type.isAssignableFrom(clazz)) {
+            throw new ClassCastException(className + " doesn't implement " + type.getSimpleName());
+        }
+        MethodHandle constructor = MethodHandles.publicLookup()
+                .findConstructor(clazz, MethodType.methodType(void.class))
+                .asType(MethodType.methodType(Object.class));
+        return new HandlerFactory<>(className, clazz, type, scope, constructor, Math.max(1, poolSize));
+    }
+
+    /**
+     * Gets a handler instance to handle an event with
+     *
+     * @return Handler instance
+     */
+    public T acquire() {
+        switch (this.scope) {
+            case SINGLETON -> {
+                int state;
+                do {
+                    state = this.singletonState.get();
+                    if (state == DESTROYED) {
+                        //Looked up right before a reload closed it, handled by a single use instance instead
+                        return this.newInstance();
+                    }
+                } while (!this.singletonState.compareAndSet(state, state + 1));
+                return this.singleton;
+            }
+            case POOLED -> {
+                T handler = this.idle.poll();
+                if (handler != null) {
+                    this.idleCount.decrementAndGet();
+                    return handler;
+                }
+                return this.newInstance();
+            }
+            default -> {
+                return this.newInstance();
+            }
+        }
+    }
+
+    /**
+     * Gives the handler back after the event is handled
+     *
+     * @param handler Instance that was returned by acquire()
+     */
+    public void release(T handler) {
+        if (handler == null) {
+            return;
+        }
+        switch (this.scope) {
+            case SINGLETON -> {
+                if (handler != this.singleton) {
+                    this.destroy(handler);
+                } else if (this.singletonState.decrementAndGet() == CLOSED) {
+                    this.destroySingleton();
+                }
+            }
+            case POOLED -> {
+                if (!this.closed && this.idleCount.incrementAndGet() <= this.maxIdle) {
+                    this.idle.offer(handler);
+                    return;
+                }
+                this.idleCount.decrementAndGet();
+                this.destroy(handler);
+            }
+            default -> this.destroy(handler);
+        }
+    }
+
+    /**
+     * Closes the handlers this factory holds on to. The singleton and pooled instances that are still in use are
+     * closed when they get released.
+     */
+    public void close() {
+        this.closed = true;
+        if (this.singleton != null) {
+            int state;
+            do {
+                state = this.singletonState.get();
+                if (state < 0 || state >= CLOSED) {
+                    return;
+                }
+            } while (!this.singletonState.compareAndSet(state, state | CLOSED));
+            if (state == 0) {
+                this.destroySingleton();
+            }
+            return;
+        }
+        T handler;
+        while ((handler = this.idle.poll()) != null) {
+            this.idleCount.decrementAndGet();
+            this.destroy(handler);
+        }
+    }
+
+    /**
+     * Getter for the scope of the handler
+     *
+     * @return HandlerScope
+     */
+    public HandlerScope getScope() {
+        return scope;
+    }
+
+    /**
+     * Getter for the class name of the handler
+     *
+     * @return String class name
+     */
+    public String getClassName() {
+        return className;
+    }
+
+    /**
+     * Getter for the class of the handler
+     *
+     * @return Class of the handler
+     */
+    public Class<?> getHandlerClass() {
+        return handlerClass;
+    }
+
+    /**
+     * Checks if the factory was created with the same settings, so it can be kept when the commands are reloaded
+     *
+     * @param className Fully qualified class name of the handler
+     * @param scope     Scope of the handler instances
+     * @param poolSize  Maximum amount of idle instances kept when the scope is POOLED
+     * @return True if nothing changed
+     */
+    public boolean matches(String className, HandlerScope scope, int poolSize) {
+        return !this.closed && this.className.equals(className) && this.scope == scope
+                && this.maxIdle == Math.max(1, poolSize);
+    }
+
+    /**
+     * Creates and initializes a new handler instance
+     *
+     * @return Handler instance
+     */
+    private T newInstance() {
+        T handler;
+        try {
+            handler = this.type.cast(this.constructor.invokeExact());
+        } catch (Throwable e) {
+            throw new RuntimeException("Couldn't create the handler " + this.className, e);
+        }
+        handler.init();
+        return handler;
+    }
+
+    /**
+     * Closes the singleton once the factory is closed and no event uses it anymore
+     */
+    private void destroySingleton() {
+        if (this.singletonState.compareAndSet(CLOSED, DESTROYED)) {
+            this.destroy(this.singleton);
+        }
+    }
+
+    /**
+     * Calls close() of the handler without letting its exceptions escape
+     *
+     * @param handler Handler instance
+     */
+    private void destroy(T handler) {
+        try {
+            handler.close();
+        } catch (RuntimeException e) {
+            GalacticBot.getBot().getLogger().warn("Couldn't close the handler " + this.className + ": " + e);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.galactic.star.commands;
+
+/**
+ * How long a handler instance lives. Set with the scope attribute of a command in the YAML files.
+ */
+public enum HandlerScope {
+    /**
+     * One instance per reload that is shared between all threads. The handler has to be thread safe.
+     */
+    SINGLETON,
+    /**
+     * Instances are borrowed from a pool, so one instance is only used by one interaction at a time.
+     */
+    POOLED,
+    /**
+     * A new instance for every interaction.
+     */
+    PROTOTYPE;
+
+    /**
+     * Parses the scope from the YAML value
+     *
+     * @param scope String scope, can be null
+     * @return HandlerScope, PROTOTYPE if it isn't set, so a handler is only shared when the YAML asks for it
+     * @throws IllegalArgumentException If it isn't a valid scope
+     */
+    public static HandlerScope of(String scope) {
+        if (scope == null || scope.isBlank()) {
+            return PROTOTYPE;
+        }
+        return HandlerScope.valueOf(scope.trim().toUpperCase());
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.galactic.star.commands;
+
+/**
+ * Optional lifecycle hooks of the command handlers. Expensive state such as prepared queries, embed templates or
+ * regex patterns should be built in init() instead of on every event.
+ */
+public interface LifecycleHandler {
+
+    /**
+     * Called once after the handler is created and before it handles any event
+     */
+    default void init() {
+    }
+
+    /**
+     * Called once when the handler is discarded, for example on reload or when it leaves the pool
+     */
+    default void close() {
+    }
+}
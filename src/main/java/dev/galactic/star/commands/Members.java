@@ -0,0 +1,70 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.galactic.star.commands;
+
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.UserSnowflake;
+import net.dv8tion.jda.api.exceptions.ErrorResponseException;
+import net.dv8tion.jda.api.requests.ErrorResponse;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Gets members for the handlers whether or not they are cached. Depending on the cache profile in the System.json
+ * most members aren't kept in memory, so handlers should use this instead of guild.getMemberById().
+ */
+public final class Members {
+
+    private Members() {
+    }
+
+    /**
+     * Gets the member from the cache, or fetches it from Discord if it isn't cached
+     *
+     * @param guild The guild
+     * @param user  The user or its id
+     * @return CompletableFuture with the member, or null if the user isn't in the guild
+     */
+    public static CompletableFuture<Member> get(Guild guild, UserSnowflake user) {
+        return get(guild, user.getIdLong());
+    }
+
+    /**
+     * Gets the member from the cache, or fetches it from Discord if it isn't cached
+     *
+     * @param guild  The guild
+     * @param userId Id of the user
+     * @return CompletableFuture with the member, or null if the user isn't in the guild
+     */
+    public static CompletableFuture<Member> get(Guild guild, long userId) {
+        Member cached = guild.getMemberById(userId);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return guild.retrieveMemberById(userId).submit().exceptionally(error -> {
+            Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+            if (cause instanceof ErrorResponseException response
+                    && (response.getErrorResponse() == ErrorResponse.UNKNOWN_MEMBER
+                    || response.getErrorResponse() == ErrorResponse.UNKNOWN_USER)) {
+                return null;
+            }
+            throw error instanceof CompletionException completion ? completion : new CompletionException(error);
+        });
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.galactic.star.commands;
+
+import dev.galactic.star.config.comands.slash.SlashCommand;
+import dev.galactic.star.config.comands.slash.SlashOption;
+import dev.galactic.star.config.comands.slash.SlashSubCommand;
+import dev.galactic.star.config.comands.slash.SlashSubCommandGroup;
+import net.dv8tion.jda.api.entities.IMentionable;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.Role;
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.entities.channel.middleman.GuildChannel;
+import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
+import net.dv8tion.jda.api.interactions.commands.OptionMapping;
+import net.dv8tion.jda.api.interactions.commands.OptionType;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.RecordComponent;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Fills the parameter record of a TypedSlashHandler from the options of an event. Everything that needs reflection
+ * is done once when the commands are loaded: the components are matched with the options in the YAML, a converter
+ * is picked for every one of them and the canonical constructor is looked up as a MethodHandle. Binding an event
+ * then only looks up the options and calls the constructor.
+ *
+ * @param <P> Record of the parameters
+ * @see TypedSlashHandler
+ */
+public final class OptionBinder<P extends Record> {
+
+    private static final Map<Class<?>, Converter> CONVERTERS = Map.ofEntries(
+            Map.entry(String.class, new Converter(OptionType.STRING, OptionMapping::getAsString)),
+            Map.entry(long.class, new Converter(OptionType.INTEGER, OptionMapping::getAsLong)),
+            Map.entry(Long.class, new Converter(OptionType.INTEGER, OptionMapping::getAsLong)),
+            Map.entry(int.class, new Converter(OptionType.INTEGER, OptionMapping::getAsInt)),
+            Map.entry(Integer.class, new Converter(OptionType.INTEGER, OptionMapping::getAsInt)),
+            Map.entry(double.class, new Converter(OptionType.NUMBER, OptionMapping::getAsDouble)),
+            Map.entry(Double.class, new Converter(OptionType.NUMBER, OptionMapping::getAsDouble)),
+            Map.entry(boolean.class, new Converter(OptionType.BOOLEAN, OptionMapping::getAsBoolean)),
+            Map.entry(Boolean.class, new Converter(OptionType.BOOLEAN, OptionMapping::getAsBoolean)),
+            Map.entry(User.class, new Converter(OptionType.USER, OptionMapping::getAsUser)),
+            Map.entry(Member.class, new Converter(OptionType.USER, OptionMapping::getAsMember)),
+            Map.entry(Role.class, new Converter(OptionType.ROLE, OptionMapping::getAsRole)),
+            Map.entry(GuildChannel.class, new Converter(OptionType.CHANNEL, OptionMapping::getAsChannel)),
+            Map.entry(IMentionable.class, new Converter(OptionType.MENTIONABLE, OptionMapping::getAsMentionable)),
+            Map.entry(Message.Attachment.class, new Converter(OptionType.ATTACHMENT,
+                    OptionMapping::getAsAttachment))
+    );
+    private final Class<P> type;
+    private final String[] names;
+    private final Function<OptionMapping, Object>[] converters;
+    private final MethodHandle constructor;
+
+    private OptionBinder(Class<P> type, String[] names, Function<OptionMapping, Object>[] converters,
+                         MethodHandle constructor) {
+        this.type = type;
+        this.names = names;
+        this.converters = converters;
+        this.constructor = constructor;
+    }
+
+    /**
+     * Creates the binder for a typed handler and checks its parameter record against the options of the command
+     *
+     * @param handlerClass Class of the handler, has to implement TypedSlashHandler
+     * @param command      The command from the YAML
+     * @return OptionBinder
+     * @throws IllegalArgumentException If the record doesn't match the options, with every mismatch in the message
+     */
+    public static OptionBinder<?> create(Class<?> handlerClass, SlashCommand command) {
+        return create(command, parameterTypeOf(handlerClass));
+    }
+
+    /**
+     * Creates the binder for the parameter record and checks it against the options of the command
+     *
+     * @param command The command from the YAML
+     * @param type    The parameter record
+     * @param <P>     Record of the parameters
+     * @return OptionBinder
+     * @throws IllegalArgumentException If the record doesn't match the options, with every mismatch in the message
+     */
+    public static <P extends Record> OptionBinder<P> create(SlashCommand command, Class<P> type) {
+        boolean hasSubCommands = command.getSubCommands() != null || command.getSubCommandGroups() != null;
+        Map<String, SlashOption> options = optionsOf(command);
+        RecordComponent[] components = type.getRecordComponents();
+        String[] names = new String[components.length];
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Function<OptionMapping, Object>[] converters = new Function[components.length];
+        Class<?>[] parameterTypes = new Class<?>[components.length];
+        List<String> problems = new ArrayList<>();
+        for (int i = 0; i < components.length; i++) {
+            RecordComponent component = components[i];
+            Option option = component.getAnnotation(Option.class);
+            names[i] = option != null ? option.value() : component.getName();
+            parameterTypes[i] = component.getType();
+            Converter converter = CONVERTERS.get(component.getType());
+            SlashOption slashOption = options.get(names[i]);
+            if (slashOption == null) {
+                problems.add("there is no option \"" + names[i] + "\" for " + component.getName());
+            } else if (component.getType() == OptionMapping.class) {
+                converters[i] = mapping -> mapping;
+            } else if (converter == null) {
+                problems.add(component.getName() + " has the unsupported type " + component.getType().getName());
+            } else if (!converter.type().name().equalsIgnoreCase(slashOption.getType())) {
+                problems.add(component.getName() + " is of the type " + component.getType().getSimpleName() +
+                        ", but the option \"" + names[i] + "\" is of the type " + slashOption.getType());
+            } else if (component.getType().isPrimitive() && (hasSubCommands || !slashOption.isRequired())) {
+                problems.add("the option \"" + names[i] + "\" isn't always given, " + component.getName() +
+                        " needs a wrapper type instead of " + component.getType().getName());
+            } else {
+                converters[i] = converter.function();
+            }
+        }
+        if (!problems.isEmpty()) {
+            throw new IllegalArgumentException("The parameters " + type.getSimpleName() + " don't match the " +
+                    "command \"" + command.getName() + "\": " + String.join(", ", problems) + ".");
+        }
+        try {
+            MethodHandle constructor = MethodHandles.privateLookupIn(type, MethodHandles.lookup())
+                    .findConstructor(type, MethodType.methodType(void.class, parameterTypes))
+                    .asSpreader(Object[].class, components.length)
+                    .asType(MethodType.methodType(Object.class, Object[].class));
+            return new OptionBinder<>(type, names, converters, constructor);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Can't access the constructor of " + type.getName(), e);
+        }
+    }
+
+    /**
+     * Finds the parameter record in the type argument of TypedSlashHandler
+     *
+     * @param handlerClass Class of the handler
+     * @return Class of the record
+     * @throws IllegalArgumentException If the class doesn't name a record as the type argument
+     */
+    @SuppressWarnings("unchecked")
+    private static Class<? extends Record> parameterTypeOf(Class<?> handlerClass) {
+        for (Class<?> clazz = handlerClass; clazz != null; clazz = clazz.getSuperclass()) {
+            for (Type type : clazz.getGenericInterfaces()) {
+                if (type instanceof ParameterizedType parameterized
+                        && parameterized.getRawType() == TypedSlashHandler.class
+                        && parameterized.getActualTypeArguments()[0] instanceof Class<?> argument
+                        && argument.isRecord()) {
+                    return (Class<? extends Record>) argument;
+                }
+            }
+        }
+        throw new IllegalArgumentException(handlerClass.getName() + " has to implement TypedSlashHandler with a " +
+                "record as the type argument.");
+    }
+
+    /**
+     * Collects the options of the command and all of its sub commands by their name
+     *
+     * @param command The command
+     * @return Map of the option name and the option
+     */
+    private static Map<String, SlashOption> optionsOf(SlashCommand command) {
+        Map<String, SlashOption> options = new HashMap<>();
+        List<SlashSubCommand> subCommands = new ArrayList<>();
+        if (command.getSubCommands() != null) {
+            subCommands.addAll(command.getSubCommands());
+        }
+        if (command.getSubCommandGroups() != null) {
+            for (SlashSubCommandGroup group : command.getSubCommandGroups()) {
+                if (group.getSubCommands() != null) {
+                    subCommands.addAll(List.of(group.getSubCommands()));
+                }
+            }
+        }
+        if (command.getOptions() != null) {
+            command.getOptions().forEach(option -> options.putIfAbsent(option.getName(), option));
+        }
+        for (SlashSubCommand subCommand : subCommands) {
+            if (subCommand.getOptions() != null) {
+                subCommand.getOptions().forEach(option -> options.putIfAbsent(option.getName(), option));
+            }
+        }
+        return options;
+    }
+
+    /**
+     * Fills the parameter record from the options of the event. Options that weren't given are null.
+     *
+     * @param event SlashCommand Event
+     * @return The parameter record
+     */
+    public P bind(SlashCommandInteractionEvent event) {
+        Object[] args = new Object[this.names.length];
+        for (int i = 0; i < args.length; i++) {
+            OptionMapping mapping = event.getOption(this.names[i]);
+            args[i] = mapping == null ? null : this.converters[i].apply(mapping);
+        }
+        try {
+            return this.type.cast(this.constructor.invokeExact(args));
+        } catch (Throwable e) {
+            throw new RuntimeException("Couldn't create the parameters " + this.type.getName(), e);
+        }
+    }
+
+    /**
+     * Binds the options of the event and calls the typed handler with them
+     *
+     * @param handler The handler, has to be the TypedSlashHandler the binder was created for
+     * @param event   SlashCommand Event
+     */
+    @SuppressWarnings("unchecked")
+    public void handle(SlashHandler handler, SlashCommandInteractionEvent event) {
+        ((TypedSlashHandler<P>) handler).handleEvent(event, this.bind(event));
+    }
+
+    /**
+     * Getter for the parameter record
+     *
+     * @return Class of the record
+     */
+    public Class<P> getType() {
+        return type;
+    }
+
+    /**
+     * The option type a component type is bound to and how it is converted
+     *
+     * @param type     Type of the option in the YAML
+     * @param function Converts the option to the component type
+     */
+    private record Converter(OptionType type, Function<OptionMapping, Object> function) {
+    }
+}
@@ -19,12 +19,16 @@ package dev.galactic.star.commands;
 import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
 
 /**
- * The handler interface so on execution, it can handle accordingly based on the type of command
+ * The handler interface so on execution, it can handle accordingly based on the type of command. Every event gets
+ * a new instance unless the scope of the command is set to singleton or pooled. A singleton is called from all
+ * command threads at the same time, so it has to be thread safe.
  */
-public interface SlashHandler {
+public interface SlashHandler extends LifecycleHandler {
 
     /**
      * This method is implemented to a class that is a command handler class
+     * It runs on the command executor. If defer_reply is enabled in the System.json, the event is already
+     * deferred, so the response has to be sent through event.getHook().
      *
      * @param event SlashCommand Event
      */
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.galactic.star.commands;
+
+import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
+
+/**
+ * A slash handler that gets its options already converted into a record. The components of the record are bound to
+ * the options of the same name, or the name given with @Option, and their types are checked against the options in
+ * the YAML when the commands are loaded. A command with a mismatch isn't loaded at all.
+ * <p>
+ * Supported component types are String (STRING), long, int (INTEGER), double (NUMBER), boolean (BOOLEAN), User,
+ * Member (USER), Role (ROLE), GuildChannel (CHANNEL), IMentionable (MENTIONABLE), Message.Attachment (ATTACHMENT) and
+ * OptionMapping for any type. Options that aren't required need the wrapper types, they are null if not given.
+ *
+ * @param <P> Record of the parameters
+ * @see OptionBinder
+ */
+public interface TypedSlashHandler<P extends Record> extends SlashHandler {
+
+    /**
+     * Handles the command with the bound options. Runs on the command executor like handleEvent.
+     *
+     * @param event  SlashCommand Event
+     * @param params The options of the event
+     */
+    void handleEvent(SlashCommandInteractionEvent event, P params);
+
+    /**
+     * Typed handlers are called with their bound options by the CommandLoader
+     *
+     * @param event SlashCommand Event
+     */
+    @Override
+    default void handleEvent(SlashCommandInteractionEvent event) {
+        throw new UnsupportedOperationException("The typed handler of " + event.getName() + " has to be called with " +
+                "its bound options.");
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.galactic.star.config;
+
+import java.nio.file.Path;
+
+/**
+ * The configuration files that can be reloaded one by one
+ */
+public enum ConfigFile {
+    SYSTEM("System.json"),
+    MOD_COMMANDS("commands/Mod.yml"),
+    USER_COMMANDS("commands/User.yml"),
+    CONTEXT_COMMANDS("commands/Context.yml"),
+    ROLES_AND_IDS("RolesAndIds.yml");
+
+    private final String path;
+
+    ConfigFile(String path) {
+        this.path = path;
+    }
+
+    /**
+     * Finds the file by its path
+     *
+     * @param relative Path relative to the data path
+     * @return ConfigFile or null if it isn't a configuration file
+     */
+    public static ConfigFile of(Path relative) {
+        String path = relative.toString().replace('\\', '/');
+        for (ConfigFile file : values()) {
+            if (file.path.equals(path)) {
+                return file;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks if the file contains commands
+     *
+     * @return True for the Mod.yml, User.yml and Context.yml
+     */
+    public boolean isCommandFile() {
+        return this == MOD_COMMANDS || this == USER_COMMANDS || this == CONTEXT_COMMANDS;
+    }
+
+    /**
+     * Getter for the path relative to the data path
+     *
+     * @return String path
+     */
+    public String getPath() {
+        return path;
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.galactic.star.config;
+
+import dev.galactic.star.CacheProfile;
+import dev.galactic.star.commands.HandlerScope;
+import dev.galactic.star.config.comands.context.ContextCommand;
+import dev.galactic.star.config.comands.slash.SlashCommand;
+import dev.galactic.star.config.comands.slash.SlashPrivilege;
+import dev.galactic.star.config.system.CacheConfig;
+import dev.galactic.star.config.system.ShardingConfig;
+import dev.galactic.star.config.system.SystemConfig;
+import net.dv8tion.jda.api.requests.GatewayIntent;
+import net.dv8tion.jda.api.utils.cache.CacheFlag;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * One parsed state of all configuration files. A snapshot is never changed after it got published by the
+ * Configuration, a reload publishes a new one with a higher version instead. Code that reads several settings should
+ * get the snapshot once, so it sees them all from the same version.
+ *
+ * @param version         Version of the snapshot, counts up with every change
+ * @param systemConfig    The System.json
+ * @param modCommands     Commands of the Mod.yml
+ * @param userCommands    Commands of the User.yml
+ * @param contextCommands Commands of the Context.yml
+ * @param rolesAndIds     Entries of the RolesAndIds.yml
+ * @param ids             Index of the RolesAndIds.yml
+ */
+public record ConfigSnapshot(long version, SystemConfig systemConfig, List<SlashCommand> modCommands,
+                             List<SlashCommand> userCommands, List<ContextCommand> contextCommands,
+                             List<RolesAndIdsConfig> rolesAndIds, RolesAndIdsRegistry ids) {
+
+    /**
+     * Snapshot before anything is loaded
+     */
+    public static final ConfigSnapshot EMPTY = new ConfigSnapshot(0, null, List.of(), List.of(), List.of(),
+            List.of());
+
+    /**
+     * Copies the lists, so they can't be changed afterwards, and builds the index if it is null
+     */
+    public ConfigSnapshot {
+        modCommands = modCommands == null ? List.of() : List.copyOf(modCommands);
+        userCommands = userCommands == null ? List.of() : List.copyOf(userCommands);
+        contextCommands = contextCommands == null ? List.of() : List.copyOf(contextCommands);
+        rolesAndIds = rolesAndIds == null ? List.of() : List.copyOf(rolesAndIds);
+        if (ids == null) {
+            ids = RolesAndIdsRegistry.of(rolesAndIds);
+        }
+    }
+
+    /**
+     * Creates the snapshot and builds the index of the RolesAndIds.yml
+     *
+     * @param version         Version of the snapshot
+     * @param systemConfig    The System.json
+     * @param modCommands     Commands of the Mod.yml
+     * @param userCommands    Commands of the User.yml
+     * @param contextCommands Commands of the Context.yml
+     * @param rolesAndIds     Entries of the RolesAndIds.yml
+     */
+    public ConfigSnapshot(long version, SystemConfig systemConfig, List<SlashCommand> modCommands,
+                          List<SlashCommand> userCommands, List<ContextCommand> contextCommands,
+                          List<RolesAndIdsConfig> rolesAndIds) {
+        this(version, systemConfig, modCommands, userCommands, contextCommands, rolesAndIds, null);
+    }
+
+    /**
+     * Returns the next version with another System.json
+     *
+     * @param systemConfig The System.json
+     * @return New ConfigSnapshot
+     */
+    public ConfigSnapshot withSystemConfig(SystemConfig systemConfig) {
+        return new ConfigSnapshot(this.version + 1, systemConfig, this.modCommands, this.userCommands,
+                this.contextCommands, this.rolesAndIds, this.ids);
+    }
+
+    /**
+     * Returns the next version with other commands
+     *
+     * @param modCommands     Commands of the Mod.yml
+     * @param userCommands    Commands of the User.yml
+     * @param contextCommands Commands of the Context.yml
+     * @return New ConfigSnapshot
+     */
+    public ConfigSnapshot withCommands(List<SlashCommand> modCommands, List<SlashCommand> userCommands,
+                                       List<ContextCommand> contextCommands) {
+        return new ConfigSnapshot(this.version + 1, this.systemConfig, modCommands, userCommands, contextCommands,
+                this.rolesAndIds, this.ids);
+    }
+
+    /**
+     * Returns the next version with other roles and ids
+     *
+     * @param rolesAndIds Entries of the RolesAndIds.yml
+     * @return New ConfigSnapshot
+     */
+    public ConfigSnapshot withRolesAndIds(List<RolesAndIdsConfig> rolesAndIds) {
+        return new ConfigSnapshot(this.version + 1, this.systemConfig, this.modCommands, this.userCommands,
+                this.contextCommands, rolesAndIds);
+    }
+
+    /**
+     * Returns the next version with everything of another snapshot
+     *
+     * @param other The snapshot to take the configuration from
+     * @return New ConfigSnapshot
+     */
+    public ConfigSnapshot withAll(ConfigSnapshot other) {
+        return new ConfigSnapshot(this.version + 1, other.systemConfig, other.modCommands, other.userCommands,
+                other.contextCommands, other.rolesAndIds, other.ids);
+    }
+
+    /**
+     * Checks the snapshot for mistakes that would break the bot, for example commands that Discord wouldn't accept
+     *
+     * @return List of the problems, empty if there are none
+     */
+    public List<String> validate() {
+        List<String> problems = new ArrayList<>();
+        if (this.systemConfig == null) {
+            problems.add("The System.json is empty.");
+        } else if (this.systemConfig.getToken() == null || this.systemConfig.getToken().isBlank()) {
+            problems.add("The System.json doesn't have a token.");
+        }
+        if (this.systemConfig != null) {
+            CacheConfig cache = this.systemConfig.getCache();
+            try {
+                CacheProfile.of(cache.getProfile());
+                cache.getExtra_intents().forEach(intent -> GatewayIntent.valueOf(intent.trim().toUpperCase()));
+                cache.getExtra_cache_flags().forEach(flag -> CacheFlag.valueOf(flag.trim().toUpperCase()));
+            } catch (IllegalArgumentException e) {
+                problems.add("The cache section of the System.json is invalid: " + e.getMessage());
+            }
+            ShardingConfig sharding = this.systemConfig.getSharding();
+            int total = sharding.getShard_total();
+            if (sharding.isEnabled() && sharding.getShard_ids().stream().anyMatch(id -> id == null || id < 0
+                    || (total > 0 && id >= total))) {
+                problems.add("The shard_ids of the System.json have to be between 0 and shard_total - 1.");
+            }
+        }
+        Set<String> names = new HashSet<>();
+        List<SlashCommand> slashCommands = new ArrayList<>(this.modCommands);
+        slashCommands.addAll(this.userCommands);
+        for (SlashCommand cmd : slashCommands) {
+            if (!names.add("slash:" + cmd.getName())) {
+                problems.add("The slash command \"" + cmd.getName() + "\" is defined more than once.");
+            }
+            try {
+                //Builds and caches the data and its hash, registering this version reuses them
+                cmd.getContentHash();
+            } catch (IllegalArgumentException | NullPointerException e) {
+                problems.add("The slash command \"" + cmd.getName() + "\" is invalid: " + e.getMessage());
+            }
+            validateHandler("slash", cmd.getName(), cmd.getScope(), cmd.getPoolSize(), problems);
+            if (cmd.getPrivileges() != null) {
+                for (SlashPrivilege privilege : cmd.getPrivileges()) {
+                    try {
+                        privilege.getPrivilegeType();
+                    } catch (IllegalArgumentException e) {
+                        problems.add("The slash command \"" + cmd.getName() + "\" has a privilege with the " +
+                                "invalid type \"" + privilege.getType() + "\".");
+                    }
+                }
+            }
+        }
+        for (ContextCommand cmd : this.contextCommands) {
+            if (!names.add("context:" + cmd.getName())) {
+                problems.add("The context command \"" + cmd.getName() + "\" is defined more than once.");
+            }
+            try {
+                cmd.getContentHash();
+            } catch (IllegalArgumentException | NullPointerException e) {
+                problems.add("The context command \"" + cmd.getName() + "\" is invalid: " + e.getMessage());
+            }
+            validateHandler("context", cmd.getName(), cmd.getScope(), cmd.getPoolSize(), problems);
+        }
+        for (RolesAndIdsConfig config : this.rolesAndIds) {
+            if (config.getName() == null || config.getId() == null) {
+                problems.add("An entry of the RolesAndIds.yml is missing its name or id.");
+            } else if (RolesAndIdsRegistry.parseId(config.getId()) == 0) {
+                problems.add("The id of \"" + config.getName() + "\" in the RolesAndIds.yml isn't a number.");
+            }
+        }
+        return problems;
+    }
+
+    /**
+     * Checks the handler settings of a command, so the registry can't fail on them after the snapshot is published
+     *
+     * @param kind     Kind of the command, slash or context
+     * @param name     Name of the command
+     * @param scope    Scope from the YAML, can be null
+     * @param poolSize Maximum amount of idle handlers when pooled
+     * @param problems List the problems are added to
+     */
+    private static void validateHandler(String kind, String name, String scope, int poolSize, List<String> problems) {
+        try {
+            HandlerScope.of(scope);
+        } catch (IllegalArgumentException e) {
+            problems.add("The " + kind + " command \"" + name + "\" has the invalid scope \"" + scope + "\".");
+        }
+        if (poolSize < 1) {
+            problems.add("The pool size of the " + kind + " command \"" + name + "\" has to be at least 1.");
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.galactic.star.config;
+
+import dev.galactic.star.GalacticBot;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Watches the data path and the commands folder for changes of the configuration files. Editors often write a file
+ * several times when saving it, so a change is only passed on once the file stayed untouched for the debounce delay.
+ * Waiting for the changes takes a thread of its own, the debouncing runs on the shared scheduler.
+ */
+public class ConfigWatcher implements AutoCloseable {
+
+    private static final long DEBOUNCE_MS = 500;
+    private final Path dataPath;
+    private final ScheduledExecutorService scheduler;
+    private final Consumer<ConfigFile> onChange;
+    private final Map<ConfigFile, ScheduledFuture<?>> pending = new ConcurrentHashMap<>();
+    private final Map<WatchKey, Path> directories = new ConcurrentHashMap<>();
+    private WatchService watchService;
+    private Thread thread;
+
+    /**
+     * Creates the watcher. Call start() to start watching.
+     *
+     * @param dataPath  The data path of the configuration files
+     * @param scheduler Shared scheduler the debounced changes are passed on from
+     * @param onChange  Called with the file that changed
+     */
+    public ConfigWatcher(Path dataPath, ScheduledExecutorService scheduler, Consumer<ConfigFile> onChange) {
+        this.dataPath = dataPath;
+        this.scheduler = scheduler;
+        this.onChange = onChange;
+    }
+
+    /**
+     * Starts watching the files
+     */
+    public synchronized void start() {
+        if (this.thread != null) {
+            return;
+        }
+        try {
+            this.watchService = FileSystems.getDefault().newWatchService();
+            this.register(this.dataPath);
+            this.register(this.dataPath.resolve("commands"));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        this.thread = new Thread(this::run, "config-watcher");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Registers a directory with the watch service
+     *
+     * @param directory The directory
+     * @throws IOException If it can't be watched
+     */
+    private void register(Path directory) throws IOException {
+        WatchKey key = directory.register(this.watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        this.directories.put(key, directory);
+    }
+
+    /**
+     * Waits for changes until the watcher is closed
+     */
+    private void run() {
+        try {
+            while (true) {
+                WatchKey key = this.watchService.take();
+                Path directory = this.directories.get(key);
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        //Some changes got lost, so every file is read again
+                        for (ConfigFile file : ConfigFile.values()) {
+                            this.debounce(file);
+                        }
+                        continue;
+                    }
+                    Path changed = directory.resolve((Path) event.context());
+                    ConfigFile file = ConfigFile.of(this.dataPath.relativize(changed));
+                    if (file != null) {
+                        this.debounce(file);
+                    }
+                }
+                key.reset();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            //Closed
+        }
+    }
+
+    /**
+     * Passes the change on once the file stayed untouched for DEBOUNCE_MS
+     *
+     * @param file The file that changed
+     */
+    private void debounce(ConfigFile file) {
+        this.pending.compute(file, (key, previous) -> {
+            if (previous != null) {
+                previous.cancel(false);
+            }
+            return this.scheduler.schedule(() -> {
+                this.pending.remove(file);
+                try {
+                    this.onChange.accept(file);
+                } catch (RuntimeException e) {
+                    GalacticBot.getBot().getLogger().error("Couldn't reload " + file.getPath() + ": " + e.getMessage());
+                }
+            }, DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+        });
+    }
+
+    /**
+     * Stops watching the files
+     */
+    @Override
+    public synchronized void close() {
+        this.pending.values().forEach(future -> future.cancel(false));
+        if (this.watchService != null) {
+            try {
+                this.watchService.close();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
@@ -17,6 +17,7 @@
 package dev.galactic.star.config;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
 import dev.galactic.star.BotSystem;
 import dev.galactic.star.GalacticBot;
 import dev.galactic.star.H2Database;
@@ -26,24 +27,25 @@ import dev.galactic.star.config.system.DatabaseConfig;
 import dev.galactic.star.config.system.SystemConfig;
 import org.yaml.snakeyaml.Yaml;
 import org.yaml.snakeyaml.constructor.Constructor;
+import org.yaml.snakeyaml.error.YAMLException;
 
 import java.io.*;
 import java.nio.file.Files;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.UnaryOperator;
 
 /**
  * Main configuration file that handles generating, parsing/reading
  */
 public class Configuration {
+    private static final ThreadLocal<ConfigSnapshot> BOUND_SNAPSHOT = new ThreadLocal<>();
     private static String dataPath;
     private static Configuration instance;
+    private volatile ConfigSnapshot snapshot = ConfigSnapshot.EMPTY;
     private File systemConfigFile;
-    private SystemConfig systemConfig;
-    private List<SlashCommand> modCommandConfig;
-    private List<SlashCommand> userCommandConfig;
-    private List<ContextCommand> contextConfig;
-    private List<RolesAndIdsConfig> rolesAndIdsConfigs;
     private File modCommandFile;
     private File userCommandFile;
     private File contextCommandsFile;
@@ -85,8 +87,8 @@ public class Configuration {
      */
     public void connectToDatabase() {
         GalacticBot.getBot().getLogger().info("Connecting to the H2Database...");
-        DatabaseConfig config = this.systemConfig.getDatabase();
-        BotSystem.getInstance().setDb(new H2Database(config.getUsername(), config.getPassword()));
+        DatabaseConfig config = this.getSystemConfig().getDatabase();
+        BotSystem.getInstance().setDb(new H2Database(config, BotSystem.getInstance().getScheduler().getExecutor()));
         GalacticBot.getBot().getLogger().info("Connected!");
     }
 
@@ -94,9 +96,27 @@ public class Configuration {
      * Generating all files needed to work.
      */
     public void generateFiles() {
+        this.generateSystemFiles();
+        this.loadCommandFiles();
+    }
+
+    /**
+     * Generating the System.json and the avatar, and reading the System.json. Asks for the missing settings in the
+     * console.
+     */
+    public void generateSystemFiles() {
         this.initializeFiles();
         this.generateAvatarFile();
         this.generateAndReadSystemFile();
+    }
+
+    /**
+     * Generating the command files and the RolesAndIds.yml if they don't exist yet and reading them. Needs
+     * generateSystemFiles to be called first.
+     *
+     * @throws IllegalStateException If the files have the problems a reload would reject them for
+     */
+    public void loadCommandFiles() {
         this.generateAndReadCommandFiles();
     }
 
@@ -105,16 +125,27 @@ public class Configuration {
      */
     private void generateAndReadSystemFile() {
         this.generateSystemConfig();
-        Gson gson = new Gson();
-        try (FileReader reader = new FileReader(this.systemConfigFile)) {
-            this.systemConfig = null;
-            this.systemConfig = gson.fromJson(reader, SystemConfig.class);
+        try {
+            this.setSystemConfig(this.readSystemFile());
             GalacticBot.getBot().setup();
-        } catch (IOException e) {
+        } catch (RuntimeException e) {
             GalacticBot.getBot().getLogger().error("Invalid System.json");
         }
     }
 
+    /**
+     * Parses the System.json
+     *
+     * @return SystemConfig
+     */
+    private SystemConfig readSystemFile() {
+        try (FileReader reader = new FileReader(this.systemConfigFile)) {
+            return new Gson().fromJson(reader, SystemConfig.class);
+        } catch (IOException | JsonParseException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     /**
      * Generating the avatar files
      */
@@ -161,18 +192,156 @@ public class Configuration {
      */
     private void generateAndReadCommandFiles() {
         this.generateCommandFiles();
-        try (InputStream mod = new FileInputStream(this.modCommandFile);
-             InputStream user = new FileInputStream(this.userCommandFile);
-             InputStream context = new FileInputStream(this.contextCommandsFile);
-             InputStream rolesIds = new FileInputStream(this.rolesAndIds)) {
-            //this.h2Db.createNewFile();
-            this.modCommandConfig = Arrays.asList(new Yaml(new Constructor(SlashCommand[].class)).load(mod));
-            this.userCommandConfig = Arrays.asList(new Yaml(new Constructor(SlashCommand[].class)).load(user));
-            this.contextConfig = Arrays.asList(new Yaml(new Constructor(ContextCommand[].class)).load(context));
-            this.rolesAndIdsConfigs =
-                    Arrays.asList(new Yaml(new Constructor(RolesAndIdsConfig[].class)).load(rolesIds));
-        } catch (IOException e) {
-            //
+        List<SlashCommand> mod = readYaml(this.modCommandFile, SlashCommand[].class);
+        List<SlashCommand> user = readYaml(this.userCommandFile, SlashCommand[].class);
+        List<ContextCommand> context = readYaml(this.contextCommandsFile, ContextCommand[].class);
+        List<RolesAndIdsConfig> rolesIds = readYaml(this.rolesAndIds, RolesAndIdsConfig[].class);
+        UnaryOperator<ConfigSnapshot> change = current -> current.withCommands(mod, user, context)
+                .withRolesAndIds(rolesIds);
+        //The same checks as a reload, so the bot doesn't start with files a reload would reject
+        checkValid(change.apply(this.snapshot));
+        this.publish(change);
+    }
+
+    /**
+     * Parses a YAML file that contains a list
+     *
+     * @param file The file
+     * @param type Array type of the entries
+     * @param <T>  Type of the entries
+     * @return List of the entries, empty if the file is empty
+     */
+    private static <T> List<T> readYaml(File file, Class<T[]> type) {
+        try (InputStream in = new FileInputStream(file)) {
+            return parseYaml(in, type);
+        } catch (IOException | YAMLException e) {
+            throw new RuntimeException("Couldn't read " + file.getName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Parses YAML that contains a list, the same way the configuration files are read
+     *
+     * @param in   Stream of the YAML, isn't closed
+     * @param type Array type of the entries
+     * @param <T>  Type of the entries
+     * @return List of the entries, empty if there are none
+     * @throws YAMLException If the YAML is invalid
+     */
+    public static <T> List<T> parseYaml(InputStream in, Class<T[]> type) {
+        T[] entries = new Yaml(new Constructor(type)).load(in);
+        return entries == null ? List.of() : Arrays.asList(entries);
+    }
+
+    /**
+     * Parses all files again on the executor and publishes them as a new snapshot if they are valid. JDA and the
+     * database stay connected, and the commands that are running keep the snapshot they started with.
+     *
+     * @param executor Executor the files are parsed on
+     * @return CompletableFuture with the new snapshot, completes exceptionally if the files are invalid
+     */
+    public CompletableFuture<ConfigSnapshot> reload(Executor executor) {
+        return CompletableFuture.supplyAsync(() -> {
+            ConfigSnapshot parsed = new ConfigSnapshot(0, this.readSystemFile(),
+                    readYaml(this.modCommandFile, SlashCommand[].class),
+                    readYaml(this.userCommandFile, SlashCommand[].class),
+                    readYaml(this.contextCommandsFile, ContextCommand[].class),
+                    readYaml(this.rolesAndIds, RolesAndIdsConfig[].class));
+            checkValid(parsed);
+            return this.publish(current -> current.withAll(parsed));
+        }, executor);
+    }
+
+    /**
+     * Parses only the given file again on the executor and publishes it as a new snapshot if the result is valid.
+     * The other files stay as they are in the current snapshot.
+     *
+     * @param file     The file that changed
+     * @param executor Executor the file is parsed on
+     * @return CompletableFuture with the new snapshot, completes exceptionally if the file is invalid
+     */
+    public CompletableFuture<ConfigSnapshot> reload(ConfigFile file, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> {
+            UnaryOperator<ConfigSnapshot> change = switch (file) {
+                case SYSTEM -> {
+                    SystemConfig system = this.readSystemFile();
+                    yield current -> current.withSystemConfig(system);
+                }
+                case MOD_COMMANDS -> {
+                    List<SlashCommand> mod = readYaml(this.modCommandFile, SlashCommand[].class);
+                    yield current -> current.withCommands(mod, current.userCommands(), current.contextCommands());
+                }
+                case USER_COMMANDS -> {
+                    List<SlashCommand> user = readYaml(this.userCommandFile, SlashCommand[].class);
+                    yield current -> current.withCommands(current.modCommands(), user, current.contextCommands());
+                }
+                case CONTEXT_COMMANDS -> {
+                    List<ContextCommand> context = readYaml(this.contextCommandsFile, ContextCommand[].class);
+                    yield current -> current.withCommands(current.modCommands(), current.userCommands(), context);
+                }
+                case ROLES_AND_IDS -> {
+                    List<RolesAndIdsConfig> rolesIds = readYaml(this.rolesAndIds, RolesAndIdsConfig[].class);
+                    yield current -> current.withRolesAndIds(rolesIds);
+                }
+            };
+            checkValid(change.apply(this.snapshot));
+            return this.publish(change);
+        }, executor);
+    }
+
+    /**
+     * Checks the snapshot before it is published
+     *
+     * @param snapshot The snapshot
+     * @throws IllegalStateException With all problems of the snapshot if it isn't valid
+     */
+    private static void checkValid(ConfigSnapshot snapshot) {
+        List<String> problems = snapshot.validate();
+        if (!problems.isEmpty()) {
+            throw new IllegalStateException(String.join(" ", problems));
+        }
+    }
+
+    /**
+     * Replaces the snapshot with a changed version of it
+     *
+     * @param change Creates the new snapshot from the current one
+     * @return The new snapshot
+     */
+    private synchronized ConfigSnapshot publish(UnaryOperator<ConfigSnapshot> change) {
+        this.snapshot = change.apply(this.snapshot);
+        return this.snapshot;
+    }
+
+    /**
+     * Getter for the current configuration. While a command handler runs, this is the snapshot that was current when
+     * the command got dispatched.
+     *
+     * @return ConfigSnapshot
+     */
+    public ConfigSnapshot getSnapshot() {
+        ConfigSnapshot bound = BOUND_SNAPSHOT.get();
+        return bound != null ? bound : this.snapshot;
+    }
+
+    /**
+     * Runs the task with the snapshot bound to the current thread, so everything the task reads from the
+     * Configuration comes from that snapshot even if a reload happens in the meantime
+     *
+     * @param snapshot The snapshot to bind
+     * @param task     The task
+     */
+    public static void runWith(ConfigSnapshot snapshot, Runnable task) {
+        ConfigSnapshot previous = BOUND_SNAPSHOT.get();
+        BOUND_SNAPSHOT.set(snapshot);
+        try {
+            task.run();
+        } finally {
+            if (previous == null) {
+                BOUND_SNAPSHOT.remove();
+            } else {
+                BOUND_SNAPSHOT.set(previous);
+            }
         }
     }
 
@@ -225,7 +394,7 @@ public class Configuration {
      * @return SystemConfig
      */
     public SystemConfig getSystemConfig() {
-        return systemConfig;
+        return this.getSnapshot().systemConfig();
     }
 
     /**
@@ -234,7 +403,7 @@ public class Configuration {
      * @param systemConfig SystemConfig instance
      */
     public void setSystemConfig(SystemConfig systemConfig) {
-        this.systemConfig = systemConfig;
+        this.publish(current -> current.withSystemConfig(systemConfig));
     }
 
     /**
@@ -243,7 +412,7 @@ public class Configuration {
      * @return List of SlashCommands
      */
     public List<SlashCommand> getModCommandConfig() {
-        return modCommandConfig;
+        return this.getSnapshot().modCommands();
     }
 
     /**
@@ -252,7 +421,8 @@ public class Configuration {
      * @param modCommandConfig List of SlashCommand
      */
     public void setModCommandConfig(List<SlashCommand> modCommandConfig) {
-        this.modCommandConfig = modCommandConfig;
+        this.publish(current -> current.withCommands(modCommandConfig, current.userCommands(),
+                current.contextCommands()));
     }
 
     /**
@@ -261,7 +431,7 @@ public class Configuration {
      * @return List of SlashCommand
      */
     public List<SlashCommand> getUserCommandConfig() {
-        return userCommandConfig;
+        return this.getSnapshot().userCommands();
     }
 
     /**
@@ -270,7 +440,8 @@ public class Configuration {
      * @param userCommandConfig List of SlashCommand
      */
     public void setUserCommandConfig(List<SlashCommand> userCommandConfig) {
-        this.userCommandConfig = userCommandConfig;
+        this.publish(current -> current.withCommands(current.modCommands(), userCommandConfig,
+                current.contextCommands()));
     }
 
     /**
@@ -279,7 +450,7 @@ public class Configuration {
      * @return List of ContextCommand
      */
     public List<ContextCommand> getContextConfig() {
-        return contextConfig;
+        return this.getSnapshot().contextCommands();
     }
 
     /**
@@ -288,7 +459,8 @@ public class Configuration {
      * @param userCommandConfig List of ContextCommand
      */
     public void setContextConfig(List<ContextCommand> contextConfig) {
-        this.contextConfig = contextConfig;
+        this.publish(current -> current.withCommands(current.modCommands(), current.userCommands(),
+                contextConfig));
     }
 
 
@@ -298,7 +470,7 @@ public class Configuration {
      * @return List of roles and ids
      */
     public List<RolesAndIdsConfig> getRolesAndIdsConfigs() {
-        return rolesAndIdsConfigs;
+        return this.getSnapshot().rolesAndIds();
     }
 
 
@@ -308,7 +480,7 @@ public class Configuration {
      * @param userCommandConfig List of RolesAndIdsConfig
      */
     public void setRolesAndIdsConfigs(List<RolesAndIdsConfig> rolesAndIdsConfigs) {
-        this.rolesAndIdsConfigs = rolesAndIdsConfigs;
+        this.publish(current -> current.withRolesAndIds(rolesAndIdsConfigs));
     }
 
     /**
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.galactic.star.config;
+
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Role;
+import net.dv8tion.jda.api.entities.channel.concrete.TextChannel;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Index of the RolesAndIds.yml, built once per load of the file. The names are case-insensitive and map to the
+ * snowflake ids, grouped by the type of the entry. The roles and channels are looked up in the guild they belong to,
+ * the resolved ones of every guild are kept in its GuildState.
+ *
+ * @see dev.galactic.star.GuildState
+ */
+public final class RolesAndIdsRegistry {
+
+    /**
+     * Type of the role entries
+     */
+    public static final String ROLE = "ROLE";
+    /**
+     * Type of the channel entries
+     */
+    public static final String CHANNEL = "CHANNEL";
+    private static final RolesAndIdsRegistry EMPTY = new RolesAndIdsRegistry(Map.of(), Map.of());
+    private final Map<String, Map<String, Long>> idsByType;
+    private final Map<String, Long> ids;
+
+    private RolesAndIdsRegistry(Map<String, Map<String, Long>> idsByType, Map<String, Long> ids) {
+        this.idsByType = idsByType;
+        this.ids = ids;
+    }
+
+    /**
+     * Builds the index from the entries of the RolesAndIds.yml. Entries without a numeric id are left out.
+     *
+     * @param entries Entries of the RolesAndIds.yml
+     * @return RolesAndIdsRegistry
+     */
+    public static RolesAndIdsRegistry of(List<RolesAndIdsConfig> entries) {
+        if (entries == null || entries.isEmpty()) {
+            return EMPTY;
+        }
+        Map<String, Map<String, Long>> byType = new HashMap<>();
+        Map<String, Long> all = new HashMap<>();
+        for (RolesAndIdsConfig entry : entries) {
+            long id = parseId(entry.getId());
+            if (entry.getName() == null || id == 0) {
+                continue;
+            }
+            String name = fold(entry.getName());
+            String type = entry.getType() == null ? "" : entry.getType().toUpperCase(Locale.ROOT);
+            byType.computeIfAbsent(type, e -> new HashMap<>()).put(name, id);
+            all.putIfAbsent(name, id);
+        }
+        Map<String, Map<String, Long>> frozen = new HashMap<>();
+        byType.forEach((type, names) -> frozen.put(type, Map.copyOf(names)));
+        return new RolesAndIdsRegistry(Map.copyOf(frozen), Map.copyOf(all));
+    }
+
+    /**
+     * Converts the id of an entry to a snowflake
+     *
+     * @param id The id as SnakeYAML parsed it
+     * @return The snowflake, or 0 if it isn't a number
+     */
+    public static long parseId(Object id) {
+        if (id instanceof Number number) {
+            return number.longValue();
+        }
+        if (id instanceof String string) {
+            try {
+                return Long.parseUnsignedLong(string.trim());
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Gets the id of an entry of any type
+     *
+     * @param name Name of the entry, case-insensitive
+     * @return The snowflake, or 0 if there is none
+     */
+    public long getId(String name) {
+        Long id = this.ids.get(fold(name));
+        return id == null ? 0 : id;
+    }
+
+    /**
+     * Gets the id of an entry of a type
+     *
+     * @param type Type of the entry, for example ROLE or CHANNEL
+     * @param name Name of the entry, case-insensitive
+     * @return The snowflake, or 0 if there is none
+     */
+    public long getId(String type, String name) {
+        Long id = this.getIds(type).get(fold(name));
+        return id == null ? 0 : id;
+    }
+
+    /**
+     * Gets all entries of a type
+     *
+     * @param type Type of the entries, for example ROLE or CHANNEL
+     * @return Map of the case-folded names and their ids
+     */
+    public Map<String, Long> getIds(String type) {
+        return this.idsByType.getOrDefault(type.toUpperCase(Locale.ROOT), Map.of());
+    }
+
+    /**
+     * Gets the role of a ROLE entry in a guild
+     *
+     * @param guild Guild to look the role up in
+     * @param name  Name of the entry, case-insensitive
+     * @return Role or null if there is no such entry or the role isn't in the guild
+     */
+    public Role getRole(Guild guild, String name) {
+        long id = this.getId(ROLE, name);
+        return id == 0 ? null : guild.getRoleById(id);
+    }
+
+    /**
+     * Gets the text channel of a CHANNEL entry in a guild
+     *
+     * @param guild Guild to look the channel up in
+     * @param name  Name of the entry, case-insensitive
+     * @return TextChannel or null if there is no such entry or the channel isn't in the guild
+     */
+    public TextChannel getTextChannel(Guild guild, String name) {
+        long id = this.getId(CHANNEL, name);
+        return id == 0 ? null : guild.getTextChannelById(id);
+    }
+
+    /**
+     * Getter for the amount of entries with an id
+     *
+     * @return Amount of entries
+     */
+    public int size() {
+        return this.ids.size();
+    }
+
+    /**
+     * Case-folds a name
+     *
+     * @param name The name
+     * @return Lower case name
+     */
+    public static String fold(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+}
@@ -16,6 +16,7 @@
 
 package dev.galactic.star.config.comands.context;
 
+import dev.galactic.star.commands.CommandSync;
 import net.dv8tion.jda.api.interactions.commands.Command.Type;
 import net.dv8tion.jda.api.interactions.commands.build.CommandData;
 import net.dv8tion.jda.api.interactions.commands.build.Commands;
@@ -28,15 +29,44 @@ public class ContextCommand {
     private String name;
     private String type;
     private String handler;
+    private String scope;
+    private int poolSize = Runtime.getRuntime().availableProcessors();
+    private CommandData data;
+    private String contentHash;
 
     /**
-     * Converts the context command to Command Data
+     * Converts the context command to Command Data. It is only built once and reused until the name or type
+     * changes. The returned object is shared, so it must not be modified.
      *
      * @return CommandData
      * @see CommandData
      */
-    public CommandData toData() {
-        return Commands.context(Type.valueOf(this.type.toUpperCase()), this.name);
+    public synchronized CommandData toData() {
+        if (this.data == null) {
+            this.data = Commands.context(Type.valueOf(this.type.toUpperCase()), this.name);
+        }
+        return this.data;
+    }
+
+    /**
+     * Getter for the hash of the JSON that gets sent to Discord, computed once like toData()
+     *
+     * @return Hex string of the SHA-256 hash
+     * @see CommandSync#hash(CommandData)
+     */
+    public synchronized String getContentHash() {
+        if (this.contentHash == null) {
+            this.contentHash = CommandSync.hash(this.toData());
+        }
+        return this.contentHash;
+    }
+
+    /**
+     * Drops the built data, so it is built again with the changed values
+     */
+    private synchronized void invalidate() {
+        this.data = null;
+        this.contentHash = null;
     }
 
     /**
@@ -55,6 +85,7 @@ public class ContextCommand {
      */
     public void setName(String name) {
         this.name = name;
+        this.invalidate();
     }
 
     /**
@@ -73,6 +104,7 @@ public class ContextCommand {
      */
     public void setType(String type) {
         this.type = type;
+        this.invalidate();
     }
 
     /**
@@ -92,4 +124,42 @@ public class ContextCommand {
     public void setHandler(String handler) {
         this.handler = handler;
     }
+
+    /**
+     * Getter for the scope of the handler instances
+     *
+     * @return String scope
+     * @see dev.galactic.star.commands.HandlerScope
+     */
+    public String getScope() {
+        return scope;
+    }
+
+    /**
+     * Setter for the scope of the handler instances. Either singleton, pooled or prototype, prototype if it isn't
+     * set
+     *
+     * @param scope String scope
+     */
+    public void setScope(String scope) {
+        this.scope = scope;
+    }
+
+    /**
+     * Getter for the maximum amount of idle handlers kept when the scope is pooled
+     *
+     * @return Pool size
+     */
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    /**
+     * Setter for the maximum amount of idle handlers kept when the scope is pooled
+     *
+     * @param poolSize Pool size
+     */
+    public void setPoolSize(int poolSize) {
+        this.poolSize = poolSize;
+    }
 }
@@ -16,6 +16,7 @@
 
 package dev.galactic.star.config.comands.slash;
 
+import dev.galactic.star.commands.CommandSync;
 import net.dv8tion.jda.api.interactions.commands.build.Commands;
 import net.dv8tion.jda.api.interactions.commands.build.SlashCommandData;
 
@@ -33,15 +34,53 @@ public class SlashCommand {
     private List<SlashSubCommand> subCommands;
     private List<SlashSubCommandGroup> subCommandGroups;
     private String handler;
+    private String scope;
+    private int poolSize = Runtime.getRuntime().availableProcessors();
+    private SlashCommandData data;
+    private String contentHash;
 
     /**
-     * Converts the data in this class to a usable SlashCommandData object in the slash command building
+     * Converts the data in this class to a usable SlashCommandData object in the slash command building. It is only
+     * built once and reused until a setter changes the command, every reload parses new objects anyway. The returned
+     * object is shared, so it must not be modified.
      *
      * @return SlashCommandData object
      * @see SlashCommandData
      */
+    public synchronized SlashCommandData toData() {
+        if (this.data == null) {
+            this.data = this.compile();
+        }
+        return this.data;
+    }
+
+    /**
+     * Getter for the hash of the JSON that gets sent to Discord, computed once like toData()
+     *
+     * @return Hex string of the SHA-256 hash
+     * @see CommandSync#hash(net.dv8tion.jda.api.interactions.commands.build.CommandData)
+     */
+    public synchronized String getContentHash() {
+        if (this.contentHash == null) {
+            this.contentHash = CommandSync.hash(this.toData());
+        }
+        return this.contentHash;
+    }
+
+    /**
+     * Drops the built data, so it is built again with the changed values
+     */
+    private synchronized void invalidate() {
+        this.data = null;
+        this.contentHash = null;
+    }
 
-    public SlashCommandData toData() {
+    /**
+     * Builds the SlashCommandData from the values of this class
+     *
+     * @return SlashCommandData object
+     */
+    private SlashCommandData compile() {
         SlashCommandData data = Commands.slash(this.name, this.description);
         if (this.options != null) {
             data.addOptions(this.options.stream().map(SlashOption::toData).toList());
@@ -73,6 +112,7 @@ public class SlashCommand {
      */
     public void setSubCommandGroups(List<SlashSubCommandGroup> subCommandGroups) {
         this.subCommandGroups = subCommandGroups;
+        this.invalidate();
     }
 
     /**
@@ -93,6 +133,7 @@ public class SlashCommand {
      */
     public void setSubCommands(List<SlashSubCommand> subCommands) {
         this.subCommands = subCommands;
+        this.invalidate();
     }
 
     /**
@@ -113,6 +154,7 @@ public class SlashCommand {
      */
     public void setOptions(List<SlashOption> options) {
         this.options = options;
+        this.invalidate();
     }
 
 
@@ -153,6 +195,7 @@ public class SlashCommand {
      */
     public void setName(String name) {
         this.name = name;
+        this.invalidate();
     }
 
 
@@ -173,6 +216,7 @@ public class SlashCommand {
      */
     public void setDescription(String description) {
         this.description = description;
+        this.invalidate();
     }
 
 
@@ -215,4 +259,42 @@ public class SlashCommand {
     public void setPrivileges(List<SlashPrivilege> privileges) {
         this.privileges = privileges;
     }
+
+    /**
+     * Getter for the scope of the handler instances
+     *
+     * @return String scope
+     * @see dev.galactic.star.commands.HandlerScope
+     */
+    public String getScope() {
+        return scope;
+    }
+
+    /**
+     * Setter for the scope of the handler instances. Either singleton, pooled or prototype, prototype if it isn't
+     * set
+     *
+     * @param scope String scope
+     */
+    public void setScope(String scope) {
+        this.scope = scope;
+    }
+
+    /**
+     * Getter for the maximum amount of idle handlers kept when the scope is pooled
+     *
+     * @return Pool size
+     */
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    /**
+     * Setter for the maximum amount of idle handlers kept when the scope is pooled
+     *
+     * @param poolSize Pool size
+     */
+    public void setPoolSize(int poolSize) {
+        this.poolSize = poolSize;
+    }
 }
@@ -17,6 +17,9 @@
 package dev.galactic.star.config.comands.slash;
 
 import dev.galactic.star.BotSystem;
+import dev.galactic.star.config.Configuration;
+import dev.galactic.star.config.RolesAndIdsRegistry;
+import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.interactions.commands.privileges.IntegrationPrivilege;
 import net.dv8tion.jda.api.interactions.commands.privileges.IntegrationPrivilege.Type;
 
@@ -35,9 +38,49 @@ public class SlashPrivilege {
      * @see IntegrationPrivilege
      */
     public IntegrationPrivilege toData() {
-        return new IntegrationPrivilege(BotSystem.getInstance().getGuild(), Type.valueOf(this.type.toUpperCase()),
-                this.enabled, Long.parseLong(this.id)
-        );
+        return this.toData(BotSystem.getInstance().getGuild(), Configuration.getInstance().getSnapshot().ids());
+    }
+
+    /**
+     * Converts the data in this class to a usable IntegrationPrivilege object
+     *
+     * @param guild The guild the privilege belongs to
+     * @param ids   Index of the RolesAndIds.yml to resolve the id with
+     * @return IntegrationPrivilege object
+     * @throws IllegalStateException If the id can't be resolved
+     * @see IntegrationPrivilege
+     */
+    public IntegrationPrivilege toData(Guild guild, RolesAndIdsRegistry ids) {
+        long snowflake = this.resolveId(ids);
+        if (snowflake == 0) {
+            throw new IllegalStateException("The privilege \"" + this.id + "\" isn't in the RolesAndIds.yml.");
+        }
+        return new IntegrationPrivilege(guild, this.getPrivilegeType(), this.enabled, snowflake);
+    }
+
+    /**
+     * Resolves the id to a snowflake. The id can either be a snowflake or the name of an entry of the
+     * RolesAndIds.yml.
+     *
+     * @param ids Index of the RolesAndIds.yml
+     * @return The snowflake, or 0 if it can't be resolved
+     */
+    public long resolveId(RolesAndIdsRegistry ids) {
+        long snowflake = RolesAndIdsRegistry.parseId(this.id);
+        if (snowflake != 0 || this.id == null) {
+            return snowflake;
+        }
+        snowflake = ids.getId(this.getPrivilegeType().name(), this.id);
+        return snowflake != 0 ? snowflake : ids.getId(this.id);
+    }
+
+    /**
+     * Getter for the type as the JDA enum
+     *
+     * @return IntegrationPrivilege.Type, ROLE if the type isn't set
+     */
+    public Type getPrivilegeType() {
+        return this.type == null ? Type.ROLE : Type.valueOf(this.type.toUpperCase());
     }
 
     /**
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.galactic.star.config.system;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Settings of what JDA keeps in memory. The profile sets the gateway intents, the member cache policy, the chunking
+ * filter and the cache flags, the extra intents and cache flags are added on top of it.
+ *
+ * @see dev.galactic.star.CacheProfile
+ */
+public class CacheConfig {
+    private String profile = "moderation";
+    private List<String> extra_intents = new ArrayList<>();
+    private List<String> extra_cache_flags = new ArrayList<>();
+
+    /**
+     * Getter for the name of the cache profile: minimal, moderation or full
+     *
+     * @return Profile name
+     */
+    public String getProfile() {
+        return profile;
+    }
+
+    /**
+     * Setter for the name of the cache profile
+     *
+     * @param profile Profile name
+     */
+    public void setProfile(String profile) {
+        this.profile = profile;
+    }
+
+    /**
+     * Getter for the gateway intents that are enabled on top of the profile
+     *
+     * @return List of GatewayIntent names
+     */
+    public List<String> getExtra_intents() {
+        return extra_intents == null ? List.of() : extra_intents;
+    }
+
+    /**
+     * Setter for the gateway intents that are enabled on top of the profile
+     *
+     * @param extra_intents List of GatewayIntent names
+     */
+    public void setExtra_intents(List<String> extra_intents) {
+        this.extra_intents = extra_intents;
+    }
+
+    /**
+     * Getter for the cache flags that are enabled on top of the profile
+     *
+     * @return List of CacheFlag names
+     */
+    public List<String> getExtra_cache_flags() {
+        return extra_cache_flags == null ? List.of() : extra_cache_flags;
+    }
+
+    /**
+     * Setter for the cache flags that are enabled on top of the profile
+     *
+     * @param extra_cache_flags List of CacheFlag names
+     */
+    public void setExtra_cache_flags(List<String> extra_cache_flags) {
+        this.extra_cache_flags = extra_cache_flags;
+    }
+}
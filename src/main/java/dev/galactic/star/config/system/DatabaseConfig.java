@@ -22,6 +22,17 @@ package dev.galactic.star.config.system;
 public class DatabaseConfig {
     private String username;
     private String password;
+    private String mode = "file";
+    private String file = "./Database";
+    private String host = "localhost";
+    private int port = 9092;
+    private String url;
+    private PoolConfig pool = new PoolConfig();
+    private String durability = "group-commit";
+    private int batch_size = 100;
+    private long flush_interval_ms = 200;
+    private int user_cache_size = 10_000;
+    private long user_cache_ttl_ms = 300_000;
 
     public String getUsername() {
         return username;
@@ -53,4 +64,221 @@ public class DatabaseConfig {
     public void setPassword(String password) {
         this.password = password;
     }
+
+    /**
+     * Getter for how the database is opened. Either file for the embedded database or tcp for an H2 server
+     *
+     * @return String mode
+     */
+    public String getMode() {
+        return mode;
+    }
+
+    /**
+     * Setter for how the database is opened
+     *
+     * @param mode Either file or tcp
+     */
+    public void setMode(String mode) {
+        this.mode = mode;
+    }
+
+    /**
+     * Getter for the path of the database file. In tcp mode it is the path on the server.
+     *
+     * @return String path
+     */
+    public String getFile() {
+        return file;
+    }
+
+    /**
+     * Setter for the path of the database file
+     *
+     * @param file String path
+     */
+    public void setFile(String file) {
+        this.file = file;
+    }
+
+    /**
+     * Getter for the host of the H2 server in tcp mode
+     *
+     * @return String host
+     */
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * Setter for the host of the H2 server in tcp mode
+     *
+     * @param host String host
+     */
+    public void setHost(String host) {
+        this.host = host;
+    }
+
+    /**
+     * Getter for the port of the H2 server in tcp mode
+     *
+     * @return Port
+     */
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * Setter for the port of the H2 server in tcp mode
+     *
+     * @param port Port
+     */
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    /**
+     * Getter for the JDBC url that overrides the mode, file, host and port when set
+     *
+     * @return String url or null
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Setter for the JDBC url that overrides the mode, file, host and port
+     *
+     * @param url String url
+     */
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    /**
+     * Getter for the connection pool settings
+     *
+     * @return PoolConfig, the defaults if it isn't in the System.json
+     */
+    public PoolConfig getPool() {
+        if (pool == null) {
+            pool = new PoolConfig();
+        }
+        return pool;
+    }
+
+    /**
+     * Setter for the connection pool settings
+     *
+     * @param pool PoolConfig
+     */
+    public void setPool(PoolConfig pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Getter for when a write counts as done. Either sync, group-commit or async
+     *
+     * @return String durability
+     * @see dev.galactic.star.database.Durability
+     */
+    public String getDurability() {
+        return durability;
+    }
+
+    /**
+     * Setter for when a write counts as done
+     *
+     * @param durability Either sync, group-commit or async
+     */
+    public void setDurability(String durability) {
+        this.durability = durability;
+    }
+
+    /**
+     * Getter for the maximum amount of queued writes committed in one transaction
+     *
+     * @return Batch size
+     */
+    public int getBatch_size() {
+        return batch_size;
+    }
+
+    /**
+     * Setter for the maximum amount of queued writes committed in one transaction
+     *
+     * @param batch_size Batch size
+     */
+    public void setBatch_size(int batch_size) {
+        this.batch_size = batch_size;
+    }
+
+    /**
+     * Getter for how long a write can wait in the queue in async mode
+     *
+     * @return Flush interval in milliseconds
+     */
+    public long getFlush_interval_ms() {
+        return flush_interval_ms;
+    }
+
+    /**
+     * Setter for how long a write can wait in the queue in async mode
+     *
+     * @param flush_interval_ms Flush interval in milliseconds
+     */
+    public void setFlush_interval_ms(long flush_interval_ms) {
+        this.flush_interval_ms = flush_interval_ms;
+    }
+
+    /**
+     * Getter for how many users the moderation state cache holds. 0 turns it off.
+     *
+     * @return User cache size
+     */
+    public int getUser_cache_size() {
+        return user_cache_size;
+    }
+
+    /**
+     * Setter for how many users the moderation state cache holds. 0 turns it off.
+     *
+     * @param user_cache_size User cache size
+     */
+    public void setUser_cache_size(int user_cache_size) {
+        this.user_cache_size = user_cache_size;
+    }
+
+    /**
+     * Getter for how long a cached moderation state is used before it is loaded again
+     *
+     * @return TTL in milliseconds
+     */
+    public long getUser_cache_ttl_ms() {
+        return user_cache_ttl_ms;
+    }
+
+    /**
+     * Setter for how long a cached moderation state is used before it is loaded again
+     *
+     * @param user_cache_ttl_ms TTL in milliseconds
+     */
+    public void setUser_cache_ttl_ms(long user_cache_ttl_ms) {
+        this.user_cache_ttl_ms = user_cache_ttl_ms;
+    }
+
+    /**
+     * Builds the JDBC url out of the settings
+     *
+     * @return JDBC url of the H2 database
+     */
+    public String toJdbcUrl() {
+        if (url != null && !url.isBlank()) {
+            return url;
+        }
+        if ("tcp".equalsIgnoreCase(mode)) {
+            return "jdbc:h2:tcp://" + host + ":" + port + "/" + file;
+        }
+        return "jdbc:h2:" + file;
+    }
 }
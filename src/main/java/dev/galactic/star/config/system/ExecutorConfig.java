@@ -0,0 +1,135 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.galactic.star.config.system;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Settings of the thread pool that runs the command handlers
+ */
+public class ExecutorConfig {
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int queue_size = 500;
+    private int max_per_command = 16;
+    private boolean defer_reply = false;
+    private Map<String, Integer> command_limits = new HashMap<>();
+
+    /**
+     * Getter for the amount of threads that run the handlers
+     *
+     * @return Amount of threads
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Setter for the amount of threads that run the handlers
+     *
+     * @param threads Amount of threads
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Getter for how many interactions can wait for a free thread before new ones get rejected
+     *
+     * @return Queue size
+     */
+    public int getQueue_size() {
+        return queue_size;
+    }
+
+    /**
+     * Setter for how many interactions can wait for a free thread before new ones get rejected
+     *
+     * @param queue_size Queue size
+     */
+    public void setQueue_size(int queue_size) {
+        this.queue_size = queue_size;
+    }
+
+    /**
+     * Getter for the default amount of interactions of the same command that can run or wait at once
+     *
+     * @return Limit per command
+     */
+    public int getMax_per_command() {
+        return max_per_command;
+    }
+
+    /**
+     * Setter for the default amount of interactions of the same command that can run or wait at once
+     *
+     * @param max_per_command Limit per command
+     */
+    public void setMax_per_command(int max_per_command) {
+        this.max_per_command = max_per_command;
+    }
+
+    /**
+     * Getter for whether the interactions are deferred before the handler runs. Disabled by default, since the
+     * handlers have to respond through the InteractionHook instead of event.reply() once it is enabled.
+     *
+     * @return True/False
+     */
+    public boolean isDefer_reply() {
+        return defer_reply;
+    }
+
+    /**
+     * Setter for whether the interactions are deferred before the handler runs
+     *
+     * @param defer_reply True/False
+     */
+    public void setDefer_reply(boolean defer_reply) {
+        this.defer_reply = defer_reply;
+    }
+
+    /**
+     * Getter for the limits of single commands that override max_per_command
+     *
+     * @return Map of the command name and its limit
+     */
+    public Map<String, Integer> getCommand_limits() {
+        return command_limits;
+    }
+
+    /**
+     * Setter for the limits of single commands that override max_per_command
+     *
+     * @param command_limits Map of the command name and its limit
+     */
+    public void setCommand_limits(Map<String, Integer> command_limits) {
+        this.command_limits = command_limits;
+    }
+
+    /**
+     * Gets the limit of a command
+     *
+     * @param command Name of the command
+     * @return Limit of the command, or max_per_command if it doesn't have one
+     */
+    public int getLimit(String command) {
+        if (this.command_limits == null) {
+            return this.max_per_command;
+        }
+        return this.command_limits.getOrDefault(command, this.max_per_command);
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.galactic.star.config.system;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A guild the commands are registered in when for_guild is enabled
+ */
+public class GuildConfig {
+    private String id = "";
+    private List<String> commands = new ArrayList<>();
+
+    /**
+     * Getter for the id of the guild
+     *
+     * @return Guild id
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Setter for the id of the guild
+     *
+     * @param id Guild id
+     */
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    /**
+     * Getter for the names of the commands registered in this guild
+     *
+     * @return Command names, empty if all commands are registered
+     */
+    public List<String> getCommands() {
+        return commands == null ? List.of() : commands;
+    }
+
+    /**
+     * Setter for the names of the commands registered in this guild
+     *
+     * @param commands Command names, empty to register all commands
+     */
+    public void setCommands(List<String> commands) {
+        this.commands = commands;
+    }
+}
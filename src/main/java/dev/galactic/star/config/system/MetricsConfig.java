@@ -0,0 +1,80 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.galactic.star.config.system;
+
+/**
+ * Settings of the local endpoint that serves the metrics in the Prometheus text format
+ */
+public class MetricsConfig {
+    private boolean enabled = true;
+    private String host = "127.0.0.1";
+    private int port = 9464;
+
+    /**
+     * Getter for whether the metrics endpoint is started
+     *
+     * @return True/False
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Setter for whether the metrics endpoint is started
+     *
+     * @param enabled True/False
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Getter for the address the endpoint is bound to. It has no authentication, so keep it local.
+     *
+     * @return Host name or IP address
+     */
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * Setter for the address the endpoint is bound to
+     *
+     * @param host Host name or IP address
+     */
+    public void setHost(String host) {
+        this.host = host;
+    }
+
+    /**
+     * Getter for the port of the endpoint
+     *
+     * @return Port
+     */
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * Setter for the port of the endpoint
+     *
+     * @param port Port
+     */
+    public void setPort(int port) {
+        this.port = port;
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.galactic.star.config.system;
+
+/**
+ * Settings of the database connection pool
+ */
+public class PoolConfig {
+    private int min_size = 2;
+    private int max_size = 10;
+    private long idle_timeout_ms = 600_000;
+    private long borrow_timeout_ms = 5_000;
+    private long leak_detection_ms = 60_000;
+    private boolean leak_trace;
+    private boolean validate_on_borrow = true;
+    private int statement_cache_size = 64;
+
+    /**
+     * Getter for the amount of connections that are always kept open
+     *
+     * @return Minimum pool size
+     */
+    public int getMin_size() {
+        return min_size;
+    }
+
+    /**
+     * Setter for the amount of connections that are always kept open
+     *
+     * @param min_size Minimum pool size
+     */
+    public void setMin_size(int min_size) {
+        this.min_size = min_size;
+    }
+
+    /**
+     * Getter for the maximum amount of open connections
+     *
+     * @return Maximum pool size
+     */
+    public int getMax_size() {
+        return max_size;
+    }
+
+    /**
+     * Setter for the maximum amount of open connections
+     *
+     * @param max_size Maximum pool size
+     */
+    public void setMax_size(int max_size) {
+        this.max_size = max_size;
+    }
+
+    /**
+     * Getter for how long a connection over the minimum can stay unused before it is closed
+     *
+     * @return Idle timeout in milliseconds
+     */
+    public long getIdle_timeout_ms() {
+        return idle_timeout_ms;
+    }
+
+    /**
+     * Setter for how long a connection over the minimum can stay unused before it is closed
+     *
+     * @param idle_timeout_ms Idle timeout in milliseconds
+     */
+    public void setIdle_timeout_ms(long idle_timeout_ms) {
+        this.idle_timeout_ms = idle_timeout_ms;
+    }
+
+    /**
+     * Getter for how long to wait for a free connection before giving up
+     *
+     * @return Borrow timeout in milliseconds
+     */
+    public long getBorrow_timeout_ms() {
+        return borrow_timeout_ms;
+    }
+
+    /**
+     * Setter for how long to wait for a free connection before giving up
+     *
+     * @param borrow_timeout_ms Borrow timeout in milliseconds
+     */
+    public void setBorrow_timeout_ms(long borrow_timeout_ms) {
+        this.borrow_timeout_ms = borrow_timeout_ms;
+    }
+
+    /**
+     * Getter for how long a connection can be borrowed before it is logged as a possible leak. 0 turns it off.
+     *
+     * @return Leak detection threshold in milliseconds
+     */
+    public long getLeak_detection_ms() {
+        return leak_detection_ms;
+    }
+
+    /**
+     * Setter for how long a connection can be borrowed before it is logged as a possible leak. 0 turns it off.
+     *
+     * @param leak_detection_ms Leak detection threshold in milliseconds
+     */
+    public void setLeak_detection_ms(long leak_detection_ms) {
+        this.leak_detection_ms = leak_detection_ms;
+    }
+
+    /**
+     * Getter for whether the stack trace of every borrow is kept, so a possible leak is logged with it. Capturing it
+     * slows down every database call, so it is meant for debugging.
+     *
+     * @return True/False
+     */
+    public boolean isLeak_trace() {
+        return leak_trace;
+    }
+
+    /**
+     * Setter for whether the stack trace of every borrow is kept, so a possible leak is logged with it
+     *
+     * @param leak_trace True/False
+     */
+    public void setLeak_trace(boolean leak_trace) {
+        this.leak_trace = leak_trace;
+    }
+
+    /**
+     * Getter for whether a connection is checked before it is handed out
+     *
+     * @return True/False
+     */
+    public boolean isValidate_on_borrow() {
+        return validate_on_borrow;
+    }
+
+    /**
+     * Setter for whether a connection is checked before it is handed out
+     *
+     * @param validate_on_borrow True/False
+     */
+    public void setValidate_on_borrow(boolean validate_on_borrow) {
+        this.validate_on_borrow = validate_on_borrow;
+    }
+
+    /**
+     * Getter for how many prepared statements are cached per connection
+     *
+     * @return Statement cache size
+     */
+    public int getStatement_cache_size() {
+        return statement_cache_size;
+    }
+
+    /**
+     * Setter for how many prepared statements are cached per connection
+     *
+     * @param statement_cache_size Statement cache size
+     */
+    public void setStatement_cache_size(int statement_cache_size) {
+        this.statement_cache_size = statement_cache_size;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.galactic.star.config.system;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Settings of the gateway shards. Without sharding the bot runs one shard, with it the guilds are spread over
+ * shard_total connections and this process runs the shards in shard_ids, so several processes can share the load.
+ */
+public class ShardingConfig {
+    private boolean enabled;
+    private int shard_total = -1;
+    private List<Integer> shard_ids = new ArrayList<>();
+
+    /**
+     * Getter for whether the bot is sharded
+     *
+     * @return True/False
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Setter for whether the bot is sharded
+     *
+     * @param enabled True/False
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Getter for the amount of shards of the bot. -1 uses the amount Discord recommends.
+     *
+     * @return Total amount of shards
+     */
+    public int getShard_total() {
+        return shard_total;
+    }
+
+    /**
+     * Setter for the amount of shards of the bot
+     *
+     * @param shard_total Total amount of shards, or -1
+     */
+    public void setShard_total(int shard_total) {
+        this.shard_total = shard_total;
+    }
+
+    /**
+     * Getter for the shards this process runs. Empty runs all of them.
+     *
+     * @return List of the shard ids
+     */
+    public List<Integer> getShard_ids() {
+        return shard_ids == null ? List.of() : shard_ids;
+    }
+
+    /**
+     * Setter for the shards this process runs
+     *
+     * @param shard_ids List of the shard ids
+     */
+    public void setShard_ids(List<Integer> shard_ids) {
+        this.shard_ids = shard_ids;
+    }
+}
@@ -18,6 +18,9 @@ package dev.galactic.star.config.system;
 
 import dev.galactic.star.actions.ConstantInfo;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class SystemConfig {
     private String token;
     private int max_severity;
@@ -25,9 +28,15 @@ public class SystemConfig {
     private String invite_link;
     private boolean for_guild;
     private boolean del_cmd_on_reload;
+    private boolean watch_config = true;
     private DatabaseConfig database;
     private SystemActivity activity;
     private String online_status;
+    private ExecutorConfig executor = new ExecutorConfig();
+    private CacheConfig cache = new CacheConfig();
+    private ShardingConfig sharding = new ShardingConfig();
+    private MetricsConfig metrics = new MetricsConfig();
+    private List<GuildConfig> guilds = new ArrayList<>();
 
     public String getInvite_link() {
         return invite_link;
@@ -91,6 +100,19 @@ public class SystemConfig {
         this.del_cmd_on_reload = del_cmd_on_reload;
     }
 
+    /**
+     * Getter for whether the configuration files are reloaded as soon as they are saved
+     *
+     * @return True if the files are watched
+     */
+    public boolean isWatch_config() {
+        return watch_config;
+    }
+
+    public void setWatch_config(boolean watch_config) {
+        this.watch_config = watch_config;
+    }
+
     public DatabaseConfig getDatabase() {
         return database;
     }
@@ -106,4 +128,85 @@ public class SystemConfig {
     public void setMax_severity(int max_severity) {
         this.max_severity = max_severity;
     }
+
+    /**
+     * Getter for the command executor settings
+     *
+     * @return ExecutorConfig, the defaults if it isn't in the System.json
+     */
+    public ExecutorConfig getExecutor() {
+        if (executor == null) {
+            executor = new ExecutorConfig();
+        }
+        return executor;
+    }
+
+    public void setExecutor(ExecutorConfig executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Getter for the settings of what JDA keeps in memory
+     *
+     * @return CacheConfig, the defaults if it isn't in the System.json
+     */
+    public CacheConfig getCache() {
+        if (cache == null) {
+            cache = new CacheConfig();
+        }
+        return cache;
+    }
+
+    public void setCache(CacheConfig cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Getter for the settings of the gateway shards
+     *
+     * @return ShardingConfig, not sharded if it isn't in the System.json
+     */
+    public ShardingConfig getSharding() {
+        if (sharding == null) {
+            sharding = new ShardingConfig();
+        }
+        return sharding;
+    }
+
+    public void setSharding(ShardingConfig sharding) {
+        this.sharding = sharding;
+    }
+
+    /**
+     * Getter for the settings of the metrics endpoint
+     *
+     * @return MetricsConfig, the defaults if it isn't in the System.json
+     */
+    public MetricsConfig getMetrics() {
+        if (metrics == null) {
+            metrics = new MetricsConfig();
+        }
+        return metrics;
+    }
+
+    public void setMetrics(MetricsConfig metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Getter for the guilds the commands are registered in when for_guild is enabled. If there are none, the
+     * commands are registered in the guild of guild_id.
+     *
+     * @return List of GuildConfig, empty if it isn't in the System.json
+     */
+    public List<GuildConfig> getGuilds() {
+        if (guilds == null) {
+            guilds = new ArrayList<>();
+        }
+        return guilds;
+    }
+
+    public void setGuilds(List<GuildConfig> guilds) {
+        this.guilds = guilds;
+    }
 }
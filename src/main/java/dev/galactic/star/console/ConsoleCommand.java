@@ -0,0 +1,79 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.galactic.star.console;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A command that can be typed into the console. Registered through the Scheduler.
+ */
+public final class ConsoleCommand {
+
+    private final List<String> names;
+    private final String description;
+    private final Consumer<String[]> action;
+
+    /**
+     * Creates the console command
+     *
+     * @param usage       Name and aliases separated by |, for example "reload|rl"
+     * @param description Description that is shown by the help command
+     * @param action      Runs the command with the arguments that were typed after the name
+     */
+    public ConsoleCommand(String usage, String description, Consumer<String[]> action) {
+        this.names = List.of(usage.toLowerCase().split("\\|"));
+        this.description = description;
+        this.action = action;
+    }
+
+    /**
+     * Runs the command
+     *
+     * @param args The arguments that were typed after the name
+     */
+    public void execute(String[] args) {
+        this.action.accept(args);
+    }
+
+    /**
+     * Getter for the name and the aliases
+     *
+     * @return List of names, the first one is the name
+     */
+    public List<String> getNames() {
+        return names;
+    }
+
+    /**
+     * Getter for the name and aliases the way they are shown in the help command
+     *
+     * @return String usage
+     */
+    public String getUsage() {
+        return String.join("|", this.names);
+    }
+
+    /**
+     * Getter for the description
+     *
+     * @return String description
+     */
+    public String getDescription() {
+        return description;
+    }
+}
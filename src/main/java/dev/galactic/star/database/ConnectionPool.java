@@ -0,0 +1,364 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.galactic.star.database;
+
+import dev.galactic.star.GalacticBot;
+import dev.galactic.star.config.system.DatabaseConfig;
+import dev.galactic.star.config.system.PoolConfig;
+import org.h2.jdbcx.JdbcDataSource;
+
+import java.sql.SQLException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A small pool of JDBC connections to the H2 database, so concurrent commands don't have to share one connection.
+ * It keeps min_size connections open, opens more up to max_size on demand, closes the extra ones once they were
+ * idle for idle_timeout_ms and logs connections that are borrowed for longer than leak_detection_ms.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    private final JdbcDataSource source = new JdbcDataSource();
+    private final PoolConfig config;
+    private final String url;
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+    private final Semaphore permits;
+    private final AtomicInteger openCount = new AtomicInteger();
+    private final ScheduledExecutorService housekeeper;
+    private final boolean ownsHousekeeper;
+    private final ScheduledFuture<?> housekeepingTask;
+    private volatile boolean closed;
+
+    /**
+     * Opens the pool and its first min_size connections. The housekeeping runs on a thread of its own, use this when
+     * the pool is used without the bot.
+     *
+     * @param config The database settings from the System.json
+     */
+    public ConnectionPool(DatabaseConfig config) {
+        this(config, null);
+    }
+
+    /**
+     * Opens the pool and its first min_size connections
+     *
+     * @param config    The database settings from the System.json
+     * @param scheduler Shared scheduler to run the housekeeping on, or null to create one
+     */
+    public ConnectionPool(DatabaseConfig config, ScheduledExecutorService scheduler) {
+        this.config = config.getPool();
+        this.url = config.toJdbcUrl();
+        this.source.setUser(config.getUsername());
+        this.source.setPassword(config.getPassword());
+        this.source.setUrl(this.url);
+        this.permits = new Semaphore(Math.max(1, this.config.getMax_size()), true);
+        try {
+            this.fillToMinimum();
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+        this.ownsHousekeeper = scheduler == null;
+        this.housekeeper = scheduler != null ? scheduler : Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "database-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.housekeepingTask = this.housekeeper.scheduleWithFixedDelay(this::housekeeping, 30, 30, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Borrows a connection, waiting up to borrow_timeout_ms if all of them are in use
+     *
+     * @return PooledConnection that has to be closed to give it back
+     * @throws SQLException If the pool is closed, no connection got free in time or a new one couldn't be opened
+     */
+    public PooledConnection borrow() throws SQLException {
+        if (this.closed) {
+            throw new SQLException("The connection pool is closed.");
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.config.getBorrow_timeout_ms());
+        try {
+            if (!this.permits.tryAcquire(this.config.getBorrow_timeout_ms(), TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timed out waiting for a database connection. All " +
+                        this.config.getMax_size() + " connections are in use.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection.", e);
+        }
+        try {
+            PooledConnection connection = this.takeIdle();
+            if (connection == null) {
+                connection = this.openOrWait(deadline);
+            }
+            //The stack trace is expensive, by default only the thread is remembered
+            String thread = Thread.currentThread().getName();
+            connection.markBorrowed(thread, this.config.getLeak_detection_ms() > 0 && this.config.isLeak_trace() ?
+                    new Throwable("Connection borrowed by " + thread) : null);
+            this.borrowed.add(connection);
+            return connection;
+        } catch (SQLException | RuntimeException e) {
+            this.permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Takes the most recently used idle connection that is still valid
+     *
+     * @return PooledConnection or null if there is none
+     */
+    private PooledConnection takeIdle() {
+        PooledConnection connection;
+        while ((connection = this.idle.pollFirst()) != null) {
+            if (!this.config.isValidate_on_borrow() || this.isValid(connection)) {
+                return connection;
+            }
+            this.discard(connection);
+        }
+        return null;
+    }
+
+    /**
+     * Opens a new connection if there are less than max_size, otherwise waits for one that the housekeeping is
+     * opening right now to become idle
+     *
+     * @param deadline System.nanoTime() the borrow times out at
+     * @return PooledConnection
+     * @throws SQLException If no connection got free in time or a new one couldn't be opened
+     */
+    private PooledConnection openOrWait(long deadline) throws SQLException {
+        while (!this.reserve(this.config.getMax_size())) {
+            PooledConnection connection;
+            try {
+                connection = this.idle.pollFirst(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a database connection.", e);
+            }
+            if (connection == null) {
+                throw new SQLException("Timed out waiting for a database connection. All " +
+                        this.config.getMax_size() + " connections are open.");
+            }
+            if (!this.config.isValidate_on_borrow() || this.isValid(connection)) {
+                return connection;
+            }
+            this.discard(connection);
+        }
+        return this.open();
+    }
+
+    /**
+     * Reserves a slot for a new connection if less than the limit are open. The check and the reservation are one
+     * step, so the housekeeping and the borrowers can't open more than max_size together.
+     *
+     * @param limit Maximum amount of open connections
+     * @return True if a slot got reserved, open() has to be called next
+     */
+    private boolean reserve(int limit) {
+        int current;
+        do {
+            current = this.openCount.get();
+            if (current >= limit) {
+                return false;
+            }
+        } while (!this.openCount.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    /**
+     * Gives a borrowed connection back to the pool
+     *
+     * @param connection The borrowed connection
+     */
+    void giveBack(PooledConnection connection) {
+        if (!this.borrowed.remove(connection)) {
+            return;
+        }
+        try {
+            connection.reset();
+            connection.markReturned();
+            if (this.closed) {
+                this.discard(connection);
+            } else {
+                this.idle.offerFirst(connection);
+            }
+        } catch (SQLException e) {
+            this.discard(connection);
+        } finally {
+            this.permits.release();
+        }
+    }
+
+    /**
+     * Opens a new JDBC connection in a slot that was reserved with reserve()
+     *
+     * @return PooledConnection
+     * @throws SQLException If it couldn't connect
+     */
+    private PooledConnection open() throws SQLException {
+        try {
+            return new PooledConnection(this, this.source.getConnection(), this.config.getStatement_cache_size());
+        } catch (SQLException | RuntimeException e) {
+            this.openCount.decrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * Closes a connection for good and frees its slot
+     *
+     * @param connection The connection
+     */
+    private void discard(PooledConnection connection) {
+        connection.closePhysically();
+        this.openCount.decrementAndGet();
+    }
+
+    /**
+     * Checks whether the connection still works
+     *
+     * @param connection Connection to check
+     * @return True/False
+     */
+    private boolean isValid(PooledConnection connection) {
+        try {
+            return connection.getConnection().isValid(1);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Opens connections until there are at least min_size of them
+     *
+     * @throws SQLException If it couldn't connect
+     */
+    private void fillToMinimum() throws SQLException {
+        int min = Math.min(this.config.getMin_size(), this.config.getMax_size());
+        while (!this.closed && this.reserve(min)) {
+            this.idle.offerLast(this.open());
+        }
+    }
+
+    /**
+     * Closes connections that were idle for too long, opens new ones up to the minimum and logs possible leaks
+     */
+    private void housekeeping() {
+        long now = System.currentTimeMillis();
+        int min = this.config.getMin_size();
+        //The least recently used connections are at the end of the deque
+        PooledConnection oldest;
+        while (this.openCount.get() > min && (oldest = this.idle.peekLast()) != null
+                && now - oldest.getLastUsed() > this.config.getIdle_timeout_ms()) {
+            if (this.idle.removeLastOccurrence(oldest)) {
+                this.discard(oldest);
+            }
+        }
+        try {
+            this.fillToMinimum();
+        } catch (SQLException e) {
+            GalacticBot.getBot().getLogger().warn("Couldn't open the minimum amount of database connections: " +
+                    e.getMessage());
+        }
+        long leakThreshold = this.config.getLeak_detection_ms();
+        if (leakThreshold <= 0) {
+            return;
+        }
+        for (PooledConnection connection : this.borrowed) {
+            if (!connection.isLeakReported() && now - connection.getBorrowedAt() > leakThreshold) {
+                connection.setLeakReported(true);
+                String message = "A database connection was borrowed by " + connection.getBorrowedBy() +
+                        " for more than " + leakThreshold + "ms and might have leaked.";
+                if (connection.getBorrowTrace() != null) {
+                    GalacticBot.getBot().getLogger().warn(message, connection.getBorrowTrace());
+                } else {
+                    GalacticBot.getBot().getLogger().warn(message + " Enable leak_trace to see where.");
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks whether the pool is closed
+     *
+     * @return True/False
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Getter for the JDBC url the pool connects to
+     *
+     * @return JDBC url
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Getter for the amount of connections that are borrowed right now
+     *
+     * @return Borrowed connections
+     */
+    public int getBorrowedCount() {
+        return this.borrowed.size();
+    }
+
+    /**
+     * Getter for the amount of open connections, borrowed or not
+     *
+     * @return Open connections
+     */
+    public int getOpenCount() {
+        return this.openCount.get();
+    }
+
+    /**
+     * Getter for the amount of open connections that aren't borrowed
+     *
+     * @return Idle connections
+     */
+    public int getIdleCount() {
+        return this.idle.size();
+    }
+
+    /**
+     * Closes all idle connections. Borrowed connections are closed once they are given back.
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+        this.housekeepingTask.cancel(false);
+        if (this.ownsHousekeeper) {
+            this.housekeeper.shutdownNow();
+        }
+        PooledConnection connection;
+        while ((connection = this.idle.pollFirst()) != null) {
+            this.discard(connection);
+        }
+    }
+}
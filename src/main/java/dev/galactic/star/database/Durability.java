@@ -0,0 +1,50 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.galactic.star.database;
+
+/**
+ * When a write to the database counts as done. Set with the durability setting of the database in the System.json.
+ */
+public enum Durability {
+    /**
+     * Every write is its own transaction and the caller waits for it.
+     */
+    SYNC,
+    /**
+     * Writes of many callers are committed together in one transaction, and each caller waits for that commit.
+     */
+    GROUP_COMMIT,
+    /**
+     * Writes are queued and committed in batches later. The caller doesn't wait, so the writes since the last flush
+     * can be lost if the process gets killed.
+     */
+    ASYNC;
+
+    /**
+     * Parses the durability from the System.json value
+     *
+     * @param durability sync, group-commit or async. Can be null
+     * @return Durability, GROUP_COMMIT if it isn't set
+     * @throws IllegalArgumentException If it isn't a valid durability
+     */
+    public static Durability of(String durability) {
+        if (durability == null || durability.isBlank()) {
+            return GROUP_COMMIT;
+        }
+        return Durability.valueOf(durability.trim().replace('-', '_').toUpperCase());
+    }
+}
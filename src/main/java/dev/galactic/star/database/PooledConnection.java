@@ -0,0 +1,206 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.galactic.star.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * A connection that is borrowed from the ConnectionPool. Closing it gives the connection back to the pool instead
+ * of closing the JDBC connection, so it should be used in a try-with-resources block.
+ */
+public class PooledConnection implements AutoCloseable {
+
+    private final ConnectionPool pool;
+    private final Connection connection;
+    private final StatementCache statements;
+    private volatile long lastUsed = System.currentTimeMillis();
+    private volatile long borrowedAt;
+    private volatile String borrowedBy;
+    private volatile Throwable borrowTrace;
+    private volatile boolean leakReported;
+
+    /**
+     * Wraps the JDBC connection
+     *
+     * @param pool               The pool it belongs to
+     * @param connection         The JDBC connection
+     * @param statementCacheSize Maximum amount of cached prepared statements
+     */
+    PooledConnection(ConnectionPool pool, Connection connection, int statementCacheSize) {
+        this.pool = pool;
+        this.connection = connection;
+        this.statements = new StatementCache(connection, statementCacheSize);
+    }
+
+    /**
+     * Getter for the JDBC connection. Don't close it, close this object instead.
+     *
+     * @return JDBC Connection
+     */
+    public Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Returns the cached prepared statement of the SQL, or prepares and caches it. The same SQL only gets parsed
+     * once per connection. Don't close the statement, only the ResultSet it returns.
+     *
+     * @param sql SQL with ? placeholders
+     * @return PreparedStatement with cleared parameters
+     * @throws SQLException If the SQL is invalid
+     */
+    public PreparedStatement prepare(String sql) throws SQLException {
+        return this.statements.prepare(sql);
+    }
+
+    /**
+     * Returns the cached prepared statement of the SQL with the values bound to its placeholders
+     *
+     * @param sql    SQL with ? placeholders
+     * @param params Values of the placeholders in order
+     * @return PreparedStatement ready to run
+     * @throws SQLException If the SQL is invalid or a value can't be bound
+     * @see #prepare(String)
+     */
+    public PreparedStatement prepare(String sql, Object... params) throws SQLException {
+        PreparedStatement stmt = this.statements.prepare(sql);
+        bind(stmt, params);
+        return stmt;
+    }
+
+    /**
+     * Binds the values to the placeholders of the statement
+     *
+     * @param stmt   PreparedStatement
+     * @param params Values in order
+     * @throws SQLException If a value can't be bound
+     */
+    static void bind(PreparedStatement stmt, Object[] params) throws SQLException {
+        for (int i = 0; i < params.length; i++) {
+            stmt.setObject(i + 1, params[i]);
+        }
+    }
+
+    /**
+     * Gives the connection back to the pool
+     */
+    @Override
+    public void close() {
+        this.pool.giveBack(this);
+    }
+
+    /**
+     * Marks the connection as borrowed
+     *
+     * @param thread Name of the thread that borrowed it
+     * @param trace  Where it got borrowed, null unless leak_trace is enabled
+     */
+    void markBorrowed(String thread, Throwable trace) {
+        this.borrowedAt = System.currentTimeMillis();
+        this.borrowedBy = thread;
+        this.borrowTrace = trace;
+        this.leakReported = false;
+    }
+
+    /**
+     * Marks the connection as idle
+     */
+    void markReturned() {
+        this.lastUsed = System.currentTimeMillis();
+        this.borrowTrace = null;
+    }
+
+    /**
+     * Rolls back whatever the borrower left open and restores auto commit
+     *
+     * @throws SQLException If the connection is broken
+     */
+    void reset() throws SQLException {
+        if (!this.connection.getAutoCommit()) {
+            this.connection.rollback();
+            this.connection.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Closes the JDBC connection for real
+     */
+    void closePhysically() {
+        this.statements.clear();
+        try {
+            this.connection.close();
+        } catch (SQLException e) {
+            //Already broken, nothing left to close
+        }
+    }
+
+    /**
+     * Getter for when the connection was given back the last time
+     *
+     * @return Milliseconds since the epoch
+     */
+    long getLastUsed() {
+        return lastUsed;
+    }
+
+    /**
+     * Getter for when the connection was borrowed
+     *
+     * @return Milliseconds since the epoch
+     */
+    long getBorrowedAt() {
+        return borrowedAt;
+    }
+
+    /**
+     * Getter for the name of the thread that borrowed the connection
+     *
+     * @return Thread name
+     */
+    String getBorrowedBy() {
+        return borrowedBy;
+    }
+
+    /**
+     * Getter for the stack trace of where the connection was borrowed
+     *
+     * @return Throwable or null
+     */
+    Throwable getBorrowTrace() {
+        return borrowTrace;
+    }
+
+    /**
+     * Getter for whether the leak was already logged
+     *
+     * @return True/False
+     */
+    boolean isLeakReported() {
+        return leakReported;
+    }
+
+    /**
+     * Setter for whether the leak was already logged
+     *
+     * @param leakReported True/False
+     */
+    void setLeakReported(boolean leakReported) {
+        this.leakReported = leakReported;
+    }
+}
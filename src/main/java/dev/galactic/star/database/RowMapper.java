@@ -0,0 +1,38 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.galactic.star.database;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Converts the current row of a ResultSet into an object
+ *
+ * @param <T> Type of the object
+ */
+@FunctionalInterface
+public interface RowMapper<T> {
+
+    /**
+     * Reads the current row. Don't move the cursor of the ResultSet.
+     *
+     * @param set ResultSet positioned on the row
+     * @return The object of the row
+     * @throws SQLException If a column can't be read
+     */
+    T map(ResultSet set) throws SQLException;
+}
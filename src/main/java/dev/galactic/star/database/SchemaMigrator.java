@@ -0,0 +1,264 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.galactic.star.database;
+
+import dev.galactic.star.GalacticBot;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Brings the database schema up to date. The migration scripts are listed in db/migration/migrations.list in the
+ * resources and are named V&lt;version&gt;__&lt;description&gt;.sql. Every script that isn't in the schema_version
+ * table yet is run in order and recorded there with the CRC32 of the script file.
+ */
+public class SchemaMigrator {
+
+    private static final String MIGRATION_PATH = "db/migration/";
+    private static final Pattern FILE_NAME = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+    private final ConnectionPool pool;
+
+    /**
+     * Creates the migrator
+     *
+     * @param pool Pool to borrow the connection from
+     */
+    public SchemaMigrator(ConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Runs all migrations that weren't applied yet
+     *
+     * @return Amount of applied migrations
+     */
+    public int migrate() {
+        List<Migration> migrations = loadMigrations();
+        try (PooledConnection pooled = this.pool.borrow()) {
+            Connection connection = pooled.getConnection();
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("CREATE TABLE IF NOT EXISTS schema_version(version INT NOT NULL PRIMARY KEY, " +
+                        "description VARCHAR(200) NOT NULL, checksum INT NOT NULL, " +
+                        "installed_on TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP NOT NULL)");
+            }
+            Map<Integer, Integer> applied = this.appliedVersions(connection);
+            int count = 0;
+            for (Migration migration : migrations) {
+                Integer checksum = applied.get(migration.version());
+                if (checksum != null) {
+                    if (checksum == migration.legacyChecksum()) {
+                        //Applied before the checksums were CRC32s, the script itself didn't change
+                        this.updateChecksum(connection, migration);
+                    } else if (checksum != migration.checksum()) {
+                        GalacticBot.getBot().getLogger().warn("The migration " + migration.fileName() +
+                                " changed after it was applied to the database.");
+                    }
+                    continue;
+                }
+                this.apply(connection, migration);
+                count++;
+            }
+            if (count > 0) {
+                GalacticBot.getBot().getLogger().info("Applied " + count + " database migration(s).");
+            }
+            return count;
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Reads the versions and checksums of the applied migrations
+     *
+     * @param connection JDBC connection
+     * @return Map of the version and its checksum
+     * @throws SQLException If the table can't be read
+     */
+    private Map<Integer, Integer> appliedVersions(Connection connection) throws SQLException {
+        Map<Integer, Integer> applied = new HashMap<>();
+        try (Statement stmt = connection.createStatement();
+             ResultSet set = stmt.executeQuery("SELECT version, checksum FROM schema_version")) {
+            while (set.next()) {
+                applied.put(set.getInt(1), set.getInt(2));
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * Runs the statements of the migration and records it in one transaction. H2 commits DDL statements right away,
+     * so the scripts are written to be safe to run again if one fails halfway.
+     *
+     * @param connection JDBC connection
+     * @param migration  The migration
+     * @throws SQLException If a statement fails
+     */
+    private void apply(Connection connection, Migration migration) throws SQLException {
+        GalacticBot.getBot().getLogger().info("Migrating the database to version " + migration.version() + " (" +
+                migration.description() + ")...");
+        connection.setAutoCommit(false);
+        try (Statement stmt = connection.createStatement();
+             PreparedStatement record = connection.prepareStatement("INSERT INTO schema_version(version, " +
+                     "description, checksum) VALUES(?,?,?)")) {
+            for (String sql : migration.statements()) {
+                stmt.execute(sql);
+            }
+            record.setInt(1, migration.version());
+            record.setString(2, migration.description());
+            record.setInt(3, migration.checksum());
+            record.executeUpdate();
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw new SQLException("The database migration " + migration.fileName() + " failed.", e);
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Replaces the stored checksum of a migration that was recorded with the old checksum
+     *
+     * @param connection JDBC connection
+     * @param migration  The migration
+     * @throws SQLException If the update fails
+     */
+    private void updateChecksum(Connection connection, Migration migration) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement("UPDATE schema_version SET checksum=? " +
+                "WHERE version=?")) {
+            stmt.setInt(1, migration.checksum());
+            stmt.setInt(2, migration.version());
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Loads the migrations listed in the migrations.list file
+     *
+     * @return Migrations sorted by version
+     */
+    private static List<Migration> loadMigrations() {
+        List<Migration> migrations = new ArrayList<>();
+        for (String fileName : readLines(MIGRATION_PATH + "migrations.list")) {
+            Matcher matcher = FILE_NAME.matcher(fileName);
+            if (!matcher.matches()) {
+                throw new IllegalStateException("Invalid migration file name: " + fileName);
+            }
+            byte[] bytes = readResource(MIGRATION_PATH + fileName);
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            String script = String.join("\n", readLines(bytes));
+            migrations.add(new Migration(Integer.parseInt(matcher.group(1)), matcher.group(2).replace('_', ' '),
+                    fileName, split(script), (int) crc.getValue(), script.hashCode()));
+        }
+        migrations.sort((a, b) -> Integer.compare(a.version(), b.version()));
+        return migrations;
+    }
+
+    /**
+     * Reads a resource
+     *
+     * @param path Path of the resource
+     * @return Content of the resource
+     */
+    private static byte[] readResource(String path) {
+        try (InputStream in = SchemaMigrator.class.getClassLoader().getResourceAsStream(path)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing database migration resource: " + path);
+            }
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Reads the lines of a resource without comments and blank lines
+     *
+     * @param path Path of the resource
+     * @return Lines of the resource
+     */
+    private static List<String> readLines(String path) {
+        return readLines(readResource(path));
+    }
+
+    /**
+     * Splits UTF-8 text into lines without comments and blank lines
+     *
+     * @param bytes The text
+     * @return The lines
+     */
+    private static List<String> readLines(byte[] bytes) {
+        List<String> lines = new ArrayList<>();
+        for (String line : new String(bytes, StandardCharsets.UTF_8).split("\\R")) {
+            String trimmed = line.trim();
+            if (!trimmed.isEmpty() && !trimmed.startsWith("#") && !trimmed.startsWith("--")) {
+                lines.add(trimmed);
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Splits a script into its statements. Statements end with a semicolon at the end of a line.
+     *
+     * @param script The script without comments
+     * @return Statements without the semicolons
+     */
+    private static List<String> split(String script) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (String line : script.split("\n")) {
+            current.append(current.length() == 0 ? "" : " ").append(line);
+            if (line.endsWith(";")) {
+                statements.add(current.substring(0, current.length() - 1));
+                current.setLength(0);
+            }
+        }
+        if (!current.isEmpty()) {
+            statements.add(current.toString());
+        }
+        return statements;
+    }
+
+    /**
+     * A migration script
+     *
+     * @param version        Version it migrates to
+     * @param description    Description from the file name
+     * @param fileName       Name of the file
+     * @param statements     The SQL statements
+     * @param checksum       CRC32 of the script file
+     * @param legacyChecksum String hash of the script without comments, the checksum older versions stored
+     */
+    private record Migration(int version, String description, String fileName, List<String> statements,
+                             int checksum, int legacyChecksum) {
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.galactic.star.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least recently used cache of the prepared statements of one connection, keyed by the SQL of the statement. Only
+ * the thread that borrowed the connection uses it, so it isn't synchronized.
+ */
+class StatementCache {
+
+    private final Connection connection;
+    private final LinkedHashMap<String, PreparedStatement> statements;
+
+    /**
+     * Creates the cache
+     *
+     * @param connection The connection the statements belong to
+     * @param maxSize    Maximum amount of cached statements, at least 1
+     */
+    StatementCache(Connection connection, int maxSize) {
+        this.connection = connection;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() <= Math.max(1, maxSize)) {
+                    return false;
+                }
+                closeQuietly(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached statement of the SQL or prepares a new one. The statement must not be closed by the caller.
+     *
+     * @param sql SQL with ? placeholders
+     * @return PreparedStatement with cleared parameters
+     * @throws SQLException If the SQL is invalid
+     */
+    PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement stmt = this.statements.get(sql);
+        if (stmt != null && !stmt.isClosed()) {
+            stmt.clearParameters();
+            return stmt;
+        }
+        stmt = this.connection.prepareStatement(sql);
+        this.statements.put(sql, stmt);
+        return stmt;
+    }
+
+    /**
+     * Getter for the amount of cached statements
+     *
+     * @return Cached statements
+     */
+    int size() {
+        return this.statements.size();
+    }
+
+    /**
+     * Closes all cached statements
+     */
+    void clear() {
+        this.statements.values().forEach(StatementCache::closeQuietly);
+        this.statements.clear();
+    }
+
+    /**
+     * Closes the statement without throwing
+     *
+     * @param stmt Statement to close
+     */
+    private static void closeQuietly(PreparedStatement stmt) {
+        try {
+            stmt.close();
+        } catch (SQLException e) {
+            //The connection is already broken
+        }
+    }
+}
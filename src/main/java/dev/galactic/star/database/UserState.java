@@ -0,0 +1,32 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.galactic.star.database;
+
+/**
+ * The moderation state of a user that is kept in the UserStateCache
+ *
+ * @param totalWarns Amount of warns the user has
+ * @param severity   Summed up severity of the warns
+ * @param punished   Whether the user has a row in warn_data
+ */
+public record UserState(int totalWarns, int severity, boolean punished) {
+
+    /**
+     * State of a user that was never punished
+     */
+    public static final UserState CLEAN = new UserState(0, 0, false);
+}
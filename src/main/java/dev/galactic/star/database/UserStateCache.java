@@ -0,0 +1,402 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.galactic.star.database;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongFunction;
+
+/**
+ * Bounded read-through cache of the moderation state of the users, keyed by their Discord id as a primitive long.
+ * The cache is split into segments by the hash of the id, each with its own lock, so the command threads only
+ * contend when they read users of the same segment. Every segment evicts its least recently used user once it is
+ * full, and entries expire after the TTL. Writes to the database invalidate the users they touch.
+ */
+public class UserStateCache {
+
+    private static final int MAX_SEGMENTS = 16;
+    private final int maxSize;
+    private final long ttlNanos;
+    private final Segment[] segments;
+    private final int segmentShift;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates the cache
+     *
+     * @param maxSize Maximum amount of users. 0 turns the cache off.
+     * @param ttlMs   How long an entry is used before it is loaded again
+     */
+    public UserStateCache(int maxSize, long ttlMs) {
+        this.maxSize = Math.max(0, maxSize);
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMs);
+        //A power of two, and small caches get fewer segments so every segment holds a few users
+        int count = Integer.highestOneBit(Math.max(1, Math.min(MAX_SEGMENTS, this.maxSize / 8)));
+        this.segments = new Segment[count];
+        this.segmentShift = 64 - Integer.numberOfTrailingZeros(count);
+        for (int i = 0; i < count; i++) {
+            int capacity = this.maxSize / count + (i < this.maxSize % count ? 1 : 0);
+            this.segments[i] = new Segment(capacity);
+        }
+    }
+
+    /**
+     * Gets the state of the user, loading it if it isn't cached or expired
+     *
+     * @param userId Discord id of the user
+     * @param loader Loads the state from the database
+     * @return UserState
+     */
+    public UserState get(long userId, LongFunction<UserState> loader) {
+        long hash = hash(userId);
+        Segment segment = this.segmentOf(hash);
+        long generation;
+        synchronized (segment) {
+            int entry = segment.find(userId, hash);
+            if (entry >= 0 && System.nanoTime() - segment.loadedAt[entry] < this.ttlNanos) {
+                segment.touch(entry);
+                this.hits.increment();
+                return segment.states[entry];
+            }
+            this.misses.increment();
+            generation = segment.generation;
+        }
+        UserState state = loader.apply(userId);
+        if (this.maxSize > 0) {
+            synchronized (segment) {
+                //A write since the load started means the loaded state might be old
+                if (generation == segment.generation && segment.put(userId, hash, state, System.nanoTime())) {
+                    this.evictions.increment();
+                }
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Puts the state of the user after it got written to the database
+     *
+     * @param userId Discord id of the user
+     * @param state  The new state
+     */
+    public void put(long userId, UserState state) {
+        long hash = hash(userId);
+        Segment segment = this.segmentOf(hash);
+        synchronized (segment) {
+            segment.generation++;
+            if (this.maxSize > 0 && segment.put(userId, hash, state, System.nanoTime())) {
+                this.evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * Removes the user, so the next read loads it from the database
+     *
+     * @param userId Discord id of the user
+     */
+    public void invalidate(long userId) {
+        long hash = hash(userId);
+        Segment segment = this.segmentOf(hash);
+        synchronized (segment) {
+            segment.generation++;
+            segment.remove(userId, hash);
+        }
+    }
+
+    /**
+     * Removes every user
+     */
+    public void invalidateAll() {
+        for (Segment segment : this.segments) {
+            synchronized (segment) {
+                segment.generation++;
+                segment.clear();
+            }
+        }
+    }
+
+    /**
+     * Getter for the amount of cached users
+     *
+     * @return Cached users
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : this.segments) {
+            synchronized (segment) {
+                size += segment.size;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Getter for the amount of reads that were served from the cache
+     *
+     * @return Hits
+     */
+    public long getHits() {
+        return this.hits.sum();
+    }
+
+    /**
+     * Getter for the amount of reads that had to go to the database
+     *
+     * @return Misses
+     */
+    public long getMisses() {
+        return this.misses.sum();
+    }
+
+    /**
+     * Getter for the amount of users that were evicted because the cache was full
+     *
+     * @return Evictions
+     */
+    public long getEvictions() {
+        return this.evictions.sum();
+    }
+
+    /**
+     * Gets the segment of a user. It is picked by the high bits of the hash, the slot in the segment by the low ones.
+     *
+     * @param hash Hash of the id
+     * @return Segment
+     */
+    private Segment segmentOf(long hash) {
+        return this.segments.length == 1 ? this.segments[0] : this.segments[(int) (hash >>> this.segmentShift)];
+    }
+
+    /**
+     * Spreads the bits of an id. Discord ids are snowflakes whose low bits barely change between users that joined
+     * at the same time.
+     *
+     * @param userId Discord id of the user
+     * @return Hash
+     */
+    static long hash(long userId) {
+        long hash = userId * 0x9E3779B97F4A7C15L;
+        return hash ^ (hash >>> 29);
+    }
+
+    /**
+     * A part of the cache with its own lock. The entries are kept in arrays and found through an open addressing
+     * table of entry indices, so neither the ids nor the entries are boxed. The entries are linked from the least to
+     * the most recently used. All methods have to be called while holding the lock of the segment.
+     */
+    private static final class Segment {
+
+        private static final int NONE = -1;
+        private final int capacity;
+        private final int[] table;
+        private final int mask;
+        private final long[] keys;
+        private final UserState[] states;
+        private final long[] loadedAt;
+        private final int[] previous;
+        private final int[] next;
+        private int head = NONE;
+        private int tail = NONE;
+        private int free;
+        private int size;
+        //Bumped by every invalidation, so a load that raced with a write doesn't put the old state back
+        private long generation;
+
+        /**
+         * Creates the segment
+         *
+         * @param capacity Maximum amount of users
+         */
+        private Segment(int capacity) {
+            this.capacity = capacity;
+            //At most half full, so the probe sequences stay short
+            int tableSize = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) << 1;
+            this.table = new int[tableSize];
+            this.mask = tableSize - 1;
+            this.keys = new long[capacity];
+            this.states = new UserState[capacity];
+            this.loadedAt = new long[capacity];
+            this.previous = new int[capacity];
+            this.next = new int[capacity];
+            this.clear();
+        }
+
+        /**
+         * Finds the entry of a user
+         *
+         * @param key  Discord id of the user
+         * @param hash Hash of the id
+         * @return Index of the entry, or NONE
+         */
+        private int find(long key, long hash) {
+            int slot = this.slotOf(key, hash);
+            return slot == NONE ? NONE : this.table[slot] - 1;
+        }
+
+        /**
+         * Finds the table slot of a user
+         *
+         * @param key  Discord id of the user
+         * @param hash Hash of the id
+         * @return Index in the table, or NONE
+         */
+        private int slotOf(long key, long hash) {
+            for (int slot = (int) hash & this.mask; this.table[slot] != 0; slot = (slot + 1) & this.mask) {
+                if (this.keys[this.table[slot] - 1] == key) {
+                    return slot;
+                }
+            }
+            return NONE;
+        }
+
+        /**
+         * Puts the state of a user as the most recently used entry
+         *
+         * @param key      Discord id of the user
+         * @param hash     Hash of the id
+         * @param state    The state
+         * @param loadedAt System.nanoTime() of the load
+         * @return True if another user got evicted for it
+         */
+        private boolean put(long key, long hash, UserState state, long loadedAt) {
+            if (this.capacity == 0) {
+                return false;
+            }
+            int entry = this.find(key, hash);
+            boolean evicted = false;
+            if (entry == NONE) {
+                if (this.size == this.capacity) {
+                    this.remove(this.keys[this.head], UserStateCache.hash(this.keys[this.head]));
+                    evicted = true;
+                }
+                entry = this.free;
+                this.free = this.next[entry];
+                this.keys[entry] = key;
+                int slot = (int) hash & this.mask;
+                while (this.table[slot] != 0) {
+                    slot = (slot + 1) & this.mask;
+                }
+                this.table[slot] = entry + 1;
+                this.link(entry);
+                this.size++;
+            } else {
+                this.touch(entry);
+            }
+            this.states[entry] = state;
+            this.loadedAt[entry] = loadedAt;
+            return evicted;
+        }
+
+        /**
+         * Removes the entry of a user
+         *
+         * @param key  Discord id of the user
+         * @param hash Hash of the id
+         */
+        private void remove(long key, long hash) {
+            int slot = this.slotOf(key, hash);
+            if (slot == NONE) {
+                return;
+            }
+            int entry = this.table[slot] - 1;
+            this.unlink(entry);
+            this.states[entry] = null;
+            this.next[entry] = this.free;
+            this.free = entry;
+            this.size--;
+            //Moves the entries after it back, so no probe sequence runs into the hole
+            int hole = slot;
+            for (int current = (hole + 1) & this.mask; this.table[current] != 0;
+                 current = (current + 1) & this.mask) {
+                int home = (int) UserStateCache.hash(this.keys[this.table[current] - 1]) & this.mask;
+                boolean between = hole <= current ? hole < home && home <= current : hole < home || home <= current;
+                if (!between) {
+                    this.table[hole] = this.table[current];
+                    hole = current;
+                }
+            }
+            this.table[hole] = 0;
+        }
+
+        /**
+         * Removes every entry
+         */
+        private void clear() {
+            Arrays.fill(this.table, 0);
+            Arrays.fill(this.states, null);
+            for (int i = 0; i < this.capacity; i++) {
+                this.next[i] = i + 1 < this.capacity ? i + 1 : NONE;
+            }
+            this.free = this.capacity == 0 ? NONE : 0;
+            this.head = NONE;
+            this.tail = NONE;
+            this.size = 0;
+        }
+
+        /**
+         * Marks an entry as the most recently used
+         *
+         * @param entry Index of the entry
+         */
+        private void touch(int entry) {
+            if (entry != this.tail) {
+                this.unlink(entry);
+                this.link(entry);
+            }
+        }
+
+        /**
+         * Appends an entry to the end of the usage list
+         *
+         * @param entry Index of the entry
+         */
+        private void link(int entry) {
+            this.previous[entry] = this.tail;
+            this.next[entry] = NONE;
+            if (this.tail == NONE) {
+                this.head = entry;
+            } else {
+                this.next[this.tail] = entry;
+            }
+            this.tail = entry;
+        }
+
+        /**
+         * Takes an entry out of the usage list
+         *
+         * @param entry Index of the entry
+         */
+        private void unlink(int entry) {
+            int before = this.previous[entry];
+            int after = this.next[entry];
+            if (before == NONE) {
+                this.head = after;
+            } else {
+                this.next[before] = after;
+            }
+            if (after == NONE) {
+                this.tail = before;
+            } else {
+                this.previous[after] = before;
+            }
+        }
+    }
+}
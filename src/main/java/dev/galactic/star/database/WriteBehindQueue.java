@@ -0,0 +1,324 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.galactic.star.database;
+
+import dev.galactic.star.GalacticBot;
+import dev.galactic.star.metrics.Metrics;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Queue in front of the database that groups the writes into JDBC batches that are committed in one transaction.
+ * A batch is written once it has batch_size writes or its oldest write is flush_interval_ms old. In GROUP_COMMIT
+ * mode the batch is written as soon as the writer thread is free, so the writes that pile up while it commits are
+ * grouped without waiting on purpose.
+ */
+public class WriteBehindQueue implements AutoCloseable {
+
+    private static final long CLOSE_CHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private final ConnectionPool pool;
+    private final Durability durability;
+    private final int batchSize;
+    private final long lingerNanos;
+    private final LinkedBlockingQueue<PendingWrite> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    //Read locked while queueing and write locked by close(), so nothing gets queued after the writer stopped
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+    private volatile boolean running = true;
+
+    /**
+     * Starts the writer thread
+     *
+     * @param pool            Pool to borrow the connections from
+     * @param durability      Durability mode
+     * @param batchSize       Maximum amount of writes in one transaction
+     * @param flushIntervalMs Maximum age of a queued write in ASYNC mode
+     */
+    public WriteBehindQueue(ConnectionPool pool, Durability durability, int batchSize, long flushIntervalMs) {
+        this.pool = pool;
+        this.durability = durability;
+        this.batchSize = Math.max(1, batchSize);
+        this.lingerNanos = durability == Durability.ASYNC ? TimeUnit.MILLISECONDS.toNanos(flushIntervalMs) : 0;
+        this.writer = new Thread(this::run, "database-write-behind");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queues a write
+     *
+     * @param sql    SQL with ? placeholders
+     * @param params Values of the placeholders in order
+     * @return Future that completes with the amount of changed rows once the write is committed
+     */
+    public CompletableFuture<Integer> submit(String sql, Object... params) {
+        PendingWrite write = new PendingWrite(sql, params, System.nanoTime(), new CompletableFuture<>());
+        if (!this.enqueue(write)) {
+            write.done().completeExceptionally(new IllegalStateException("The write queue is closed."));
+        }
+        return write.done();
+    }
+
+    /**
+     * Waits until every write that was queued before this call is committed. Returns right away once the queue is
+     * closed, close() already wrote everything.
+     */
+    public void flush() {
+        CompletableFuture<Integer> marker = new CompletableFuture<>();
+        if (!this.enqueue(new PendingWrite(null, null, System.nanoTime(), marker))) {
+            return;
+        }
+        try {
+            marker.join();
+        } catch (CompletionException e) {
+            //The writer didn't reach the marker before close() gave up on it
+        }
+    }
+
+    /**
+     * Queues a write unless the queue is closed
+     *
+     * @param write The write or flush marker
+     * @return False if the queue is closed
+     */
+    private boolean enqueue(PendingWrite write) {
+        this.closeLock.readLock().lock();
+        try {
+            if (!this.running) {
+                return false;
+            }
+            this.queue.add(write);
+            return true;
+        } finally {
+            this.closeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Getter for the durability mode
+     *
+     * @return Durability
+     */
+    public Durability getDurability() {
+        return durability;
+    }
+
+    /**
+     * Getter for the amount of writes waiting to be committed
+     *
+     * @return Queued writes
+     */
+    public int getPending() {
+        return this.queue.size();
+    }
+
+    /**
+     * Writes everything that is queued and stops the writer thread
+     */
+    @Override
+    public void close() {
+        this.closeLock.writeLock().lock();
+        try {
+            if (!this.running) {
+                return;
+            }
+            //The writer keeps going until everything that got queued before is written
+            this.running = false;
+        } finally {
+            this.closeLock.writeLock().unlock();
+        }
+        //Not interrupted, an interrupt in the middle of a write would close H2's file channel
+        try {
+            this.writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        PendingWrite late;
+        while ((late = this.queue.poll()) != null) {
+            late.done().completeExceptionally(new IllegalStateException("The write queue is closed."));
+        }
+    }
+
+    /**
+     * The loop of the writer thread
+     */
+    private void run() {
+        List<PendingWrite> batch = new ArrayList<>(this.batchSize);
+        while (this.running || !this.queue.isEmpty()) {
+            try {
+                PendingWrite first = this.queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                if (first.sql() != null) {
+                    this.fill(batch, first.queuedAt() + this.lingerNanos);
+                }
+            } catch (InterruptedException e) {
+                this.queue.drainTo(batch, this.batchSize - batch.size());
+            }
+            if (!batch.isEmpty()) {
+                this.write(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Adds queued writes to the batch until it is full, the deadline is reached, flush() waits on it or the queue
+     * gets closed
+     *
+     * @param batch    The batch to fill
+     * @param deadline System.nanoTime() when the batch has to be written
+     * @throws InterruptedException If the thread got interrupted while waiting
+     */
+    private void fill(List<PendingWrite> batch, long deadline) throws InterruptedException {
+        while (batch.size() < this.batchSize) {
+            long wait = deadline - System.nanoTime();
+            if (wait <= 0 || !this.running) {
+                this.queue.drainTo(batch, this.batchSize - batch.size());
+                return;
+            }
+            //Wakes up now and then to notice close() while a long flush interval is running
+            PendingWrite next = this.queue.poll(Math.min(wait, CLOSE_CHECK_NANOS), TimeUnit.NANOSECONDS);
+            if (next == null) {
+                continue;
+            }
+            batch.add(next);
+            if (next.sql() == null) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Writes the batch in one transaction. Consecutive writes with the same SQL become one JDBC batch. If the
+     * transaction fails, the writes are retried one by one so a single bad write doesn't take the others with it.
+     *
+     * @param batch Writes in the order they were queued
+     */
+    private void write(List<PendingWrite> batch) {
+        long start = System.nanoTime();
+        try (PooledConnection pooled = this.pool.borrow()) {
+            Connection connection = pooled.getConnection();
+            connection.setAutoCommit(false);
+            try {
+                int[] counts = this.executeBatched(pooled, batch);
+                connection.commit();
+                for (int i = 0; i < batch.size(); i++) {
+                    batch.get(i).done().complete(counts[i]);
+                }
+                return;
+            } catch (SQLException e) {
+                connection.rollback();
+            }
+            connection.setAutoCommit(true);
+            for (PendingWrite write : batch) {
+                this.executeSingle(pooled, write);
+            }
+        } catch (SQLException e) {
+            GalacticBot.getBot().getLogger().error("Couldn't write " + batch.size() + " queued database writes: " +
+                    e.getMessage());
+            batch.forEach(write -> write.done().completeExceptionally(e));
+        } finally {
+            Metrics.getInstance().recordDatabase("write_batch", System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Runs the writes of the batch, grouping consecutive writes with the same SQL
+     *
+     * @param pooled Connection in a transaction
+     * @param batch  Writes in order
+     * @return Changed rows of each write
+     * @throws SQLException If a write fails
+     */
+    private int[] executeBatched(PooledConnection pooled, List<PendingWrite> batch) throws SQLException {
+        int[] counts = new int[batch.size()];
+        int start = 0;
+        while (start < batch.size()) {
+            String sql = batch.get(start).sql();
+            int end = start;
+            while (end < batch.size() && sameSql(sql, batch.get(end).sql())) {
+                end++;
+            }
+            if (sql != null) {
+                PreparedStatement stmt = pooled.prepare(sql);
+                for (int i = start; i < end; i++) {
+                    PooledConnection.bind(stmt, batch.get(i).params());
+                    stmt.addBatch();
+                }
+                int[] result = stmt.executeBatch();
+                System.arraycopy(result, 0, counts, start, result.length);
+            }
+            start = end;
+        }
+        return counts;
+    }
+
+    /**
+     * Runs one write in its own transaction
+     *
+     * @param pooled Connection with auto commit on
+     * @param write  The write
+     */
+    private void executeSingle(PooledConnection pooled, PendingWrite write) {
+        if (write.sql() == null) {
+            write.done().complete(0);
+            return;
+        }
+        try {
+            PreparedStatement stmt = pooled.prepare(write.sql(), write.params());
+            write.done().complete(stmt.executeUpdate());
+        } catch (SQLException e) {
+            GalacticBot.getBot().getLogger().error("Queued database write failed: " + e.getMessage());
+            write.done().completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Compares the SQL of two writes, flush markers have null as SQL
+     *
+     * @param a SQL or null
+     * @param b SQL or null
+     * @return True if they are the same
+     */
+    private static boolean sameSql(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * A queued write. Flush markers don't have SQL.
+     *
+     * @param sql      SQL with ? placeholders, null for flush markers
+     * @param params   Values of the placeholders
+     * @param queuedAt System.nanoTime() when it was queued
+     * @param done     Completed once the write is committed
+     */
+    private record PendingWrite(String sql, Object[] params, long queuedAt, CompletableFuture<Integer> done) {
+    }
+}
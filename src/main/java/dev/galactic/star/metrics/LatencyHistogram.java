@@ -0,0 +1,152 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.galactic.star.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of durations in nanoseconds. Every power of two is split into 8 buckets, so a percentile is
+ * at most 12.5% off while the whole range up to Long.MAX_VALUE fits into a fixed array. Recording is one
+ * getAndIncrement on the bucket plus two adders, so it can be called from every command thread without a lock.
+ * Reading it while it is being written can be off by the values recorded in the meantime.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records a duration
+     *
+     * @param nanos Duration in nanoseconds, negative values count as 0
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        this.buckets.getAndIncrement(indexOf(value));
+        this.count.increment();
+        this.sum.add(value);
+        this.max.accumulate(value);
+    }
+
+    /**
+     * Takes a snapshot of the counts and the percentiles
+     *
+     * @return Snapshot
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = this.buckets.get(i);
+            total += counts[i];
+        }
+        long max = this.max.get();
+        return new Snapshot(total, this.sum.sum(), max, percentile(counts, total, 0.50, max),
+                percentile(counts, total, 0.95, max), percentile(counts, total, 0.99, max), counts);
+    }
+
+    /**
+     * Finds the bucket a value belongs in
+     *
+     * @param value Value, not negative
+     * @return Index of the bucket
+     */
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Returns the highest value that falls into a bucket
+     *
+     * @param index Index of the bucket
+     * @return Upper bound of the bucket
+     */
+    static long upperBoundOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BITS - 1;
+        int sub = index % SUB_BUCKETS;
+        long lower = (long) (SUB_BUCKETS + sub) << (exponent - SUB_BITS);
+        return lower + (1L << (exponent - SUB_BITS)) - 1;
+    }
+
+    /**
+     * Finds the value below which the given share of the recorded values fall
+     *
+     * @param counts   Count of every bucket
+     * @param total    Sum of the counts
+     * @param quantile Share between 0 and 1
+     * @param max      Highest recorded value, no percentile is reported above it
+     * @return The percentile in nanoseconds, 0 if nothing was recorded
+     */
+    private static long percentile(long[] counts, long total, double quantile, long max) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * The state of a histogram at one point in time
+     *
+     * @param count   Amount of recorded values
+     * @param sum     Sum of the recorded values in nanoseconds
+     * @param max     Highest recorded value in nanoseconds
+     * @param p50     Median in nanoseconds
+     * @param p95     95th percentile in nanoseconds
+     * @param p99     99th percentile in nanoseconds
+     * @param buckets Count of every bucket
+     */
+    public record Snapshot(long count, long sum, long max, long p50, long p95, long p99, long[] buckets) {
+
+        /**
+         * Counts the recorded values that are at most the bound. A bucket only counts if all of its values are at
+         * most the bound, so values up to 12.5% below it can be counted for the next higher bound instead.
+         *
+         * @param nanos The bound in nanoseconds
+         * @return Amount of values
+         */
+        public long countAtOrBelow(long nanos) {
+            long seen = 0;
+            for (int i = 0; i < this.buckets.length && upperBoundOf(i) <= nanos; i++) {
+                seen += this.buckets[i];
+            }
+            return seen;
+        }
+    }
+}
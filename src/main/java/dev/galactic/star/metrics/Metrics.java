@@ -0,0 +1,264 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.galactic.star.metrics;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Collects the metrics of the bot: the latency and errors of every command, the latency of the database calls and
+ * gauges such as the gateway ping that are read when the metrics are published. Recording only touches lock-free
+ * counters, the formatting is done by whoever reads them.
+ *
+ * @see MetricsServer
+ */
+public final class Metrics {
+
+    private static final Metrics INSTANCE = new Metrics();
+    private static final String PREFIX = "galacticbot_";
+    private static final double NANOS_PER_SECOND = 1_000_000_000d;
+    //Upper bounds of the exported histogram buckets in seconds, from half a millisecond to ten seconds
+    private static final double[] BUCKET_BOUNDS = {0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5,
+            1, 2.5, 5, 10};
+    private final Map<String, CommandMetrics> commands = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> database = new ConcurrentHashMap<>();
+    private final Map<String, Gauge> gauges = new ConcurrentHashMap<>();
+
+    private Metrics() {
+    }
+
+    /**
+     * Gets the metrics of the bot
+     *
+     * @return Metrics instance
+     */
+    public static Metrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Records a run of a command handler
+     *
+     * @param command Name of the command
+     * @param nanos   How long the handler took
+     * @param failed  Whether the handler threw an exception
+     */
+    public void recordCommand(String command, long nanos, boolean failed) {
+        CommandMetrics metrics = this.commands.computeIfAbsent(command, e -> new CommandMetrics());
+        metrics.latency.record(nanos);
+        if (failed) {
+            metrics.errors.increment();
+        }
+    }
+
+    /**
+     * Records a database call
+     *
+     * @param operation Kind of the call, for example query or update
+     * @param nanos     How long the call took
+     */
+    public void recordDatabase(String operation, long nanos) {
+        this.database.computeIfAbsent(operation, e -> new LatencyHistogram()).record(nanos);
+    }
+
+    /**
+     * Registers a gauge that is read every time the metrics are published. A gauge with the same name is replaced.
+     *
+     * @param name   Name of the metric without the galacticbot_ prefix
+     * @param help   Description of the metric
+     * @param label  Name of the label that tells the values apart
+     * @param values Returns the values by their label value
+     */
+    public void registerGauge(String name, String help, String label,
+                              Supplier<Map<String, ? extends Number>> values) {
+        this.gauges.put(name, new Gauge(help, label, values));
+    }
+
+    /**
+     * Gets the latency of a command
+     *
+     * @param command Name of the command
+     * @return Snapshot, or null if the command didn't run yet
+     */
+    public LatencyHistogram.Snapshot getCommandLatency(String command) {
+        CommandMetrics metrics = this.commands.get(command);
+        return metrics == null ? null : metrics.latency.snapshot();
+    }
+
+    /**
+     * Formats all metrics in the Prometheus text format
+     *
+     * @return The metrics
+     */
+    public String toPrometheus() {
+        StringBuilder out = new StringBuilder();
+        Map<String, LatencyHistogram.Snapshot> commandLatency = new TreeMap<>();
+        Map<String, Long> commandErrors = new TreeMap<>();
+        this.commands.forEach((name, metrics) -> {
+            commandLatency.put(name, metrics.latency.snapshot());
+            commandErrors.put(name, metrics.errors.sum());
+        });
+        Map<String, LatencyHistogram.Snapshot> databaseLatency = new TreeMap<>();
+        this.database.forEach((name, histogram) -> databaseLatency.put(name, histogram.snapshot()));
+
+        writeHistogram(out, "command_duration_seconds", "Time the command handlers took", "command",
+                commandLatency);
+        header(out, "command_errors_total", "Command handlers that threw an exception", "counter");
+        commandErrors.forEach((name, errors) -> sample(out, "command_errors_total", "command", name, errors));
+        writeHistogram(out, "database_duration_seconds", "Time the database calls took", "operation",
+                databaseLatency);
+        new TreeMap<>(this.gauges).forEach((name, gauge) -> {
+            header(out, name, gauge.help(), "gauge");
+            new TreeMap<>(gauge.values().get()).forEach((value, number) -> sample(out, name, gauge.label(), value,
+                    number));
+        });
+        return out.toString();
+    }
+
+    /**
+     * Describes all metrics in lines that are readable in the console
+     *
+     * @return The lines
+     */
+    public List<String> describe() {
+        List<String> lines = new ArrayList<>();
+        new TreeMap<>(this.commands).forEach((name, metrics) -> lines.add("Command " + name + ": " +
+                describe(metrics.latency.snapshot()) + ", " + metrics.errors.sum() + " errors"));
+        new TreeMap<>(this.database).forEach((name, histogram) -> lines.add("Database " + name + ": " +
+                describe(histogram.snapshot())));
+        new TreeMap<>(this.gauges).forEach((name, gauge) -> new TreeMap<>(gauge.values().get()).forEach(
+                (value, number) -> lines.add(gauge.help() + (value.isEmpty() ? "" : " (" + gauge.label() + " " +
+                        value + ")") + ": " + number)));
+        return lines;
+    }
+
+    /**
+     * Describes a histogram in milliseconds
+     *
+     * @param snapshot The histogram
+     * @return For example "12 calls, p50 1.20ms, p95 3.40ms, p99 8.00ms, max 9.10ms"
+     */
+    private static String describe(LatencyHistogram.Snapshot snapshot) {
+        return String.format(Locale.ROOT, "%d calls, p50 %.2fms, p95 %.2fms, p99 %.2fms, max %.2fms",
+                snapshot.count(), snapshot.p50() / 1e6, snapshot.p95() / 1e6, snapshot.p99() / 1e6,
+                snapshot.max() / 1e6);
+    }
+
+    /**
+     * Writes histograms as a Prometheus histogram with the cumulative buckets, the sum and the count. Prometheus
+     * calculates the percentiles of any time window from the buckets with histogram_quantile().
+     *
+     * @param out       Output
+     * @param name      Name of the metric without the prefix
+     * @param help      Description of the metric
+     * @param label     Name of the label
+     * @param snapshots The histograms by their label value
+     */
+    private static void writeHistogram(StringBuilder out, String name, String help, String label,
+                                       Map<String, LatencyHistogram.Snapshot> snapshots) {
+        header(out, name, help, "histogram");
+        snapshots.forEach((value, snapshot) -> {
+            for (double bound : BUCKET_BOUNDS) {
+                bucket(out, name, label, value, BigDecimal.valueOf(bound).stripTrailingZeros().toPlainString(),
+                        snapshot.countAtOrBelow((long) (bound * NANOS_PER_SECOND)));
+            }
+            bucket(out, name, label, value, "+Inf", snapshot.count());
+            sample(out, name + "_sum", label, value, snapshot.sum() / NANOS_PER_SECOND);
+            sample(out, name + "_count", label, value, snapshot.count());
+        });
+    }
+
+    /**
+     * Writes the HELP and TYPE lines of a metric
+     *
+     * @param out  Output
+     * @param name Name of the metric without the prefix
+     * @param help Description of the metric
+     * @param type Prometheus type
+     */
+    private static void header(StringBuilder out, String name, String help, String type) {
+        out.append("# HELP ").append(PREFIX).append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(PREFIX).append(name).append(' ').append(type).append('\n');
+    }
+
+    /**
+     * Writes one cumulative bucket of a histogram
+     *
+     * @param out   Output
+     * @param name  Name of the metric without the prefix
+     * @param label Name of the label
+     * @param value Value of the label
+     * @param le    Upper bound of the bucket in seconds
+     * @param count Amount of values at or below the bound
+     */
+    private static void bucket(StringBuilder out, String name, String label, String value, String le, long count) {
+        out.append(PREFIX).append(name).append("_bucket{").append(label).append("=\"").append(escape(value))
+                .append("\",le=\"").append(le).append("\"} ").append(count).append('\n');
+    }
+
+    /**
+     * Writes one sample. A sample with an empty label value is written without the label.
+     *
+     * @param out    Output
+     * @param name   Name of the metric without the prefix
+     * @param label  Name of the label
+     * @param value  Value of the label
+     * @param number The sample
+     */
+    private static void sample(StringBuilder out, String name, String label, String value, Number number) {
+        out.append(PREFIX).append(name);
+        if (!value.isEmpty()) {
+            out.append('{').append(label).append("=\"").append(escape(value)).append("\"}");
+        }
+        out.append(' ').append(number).append('\n');
+    }
+
+    /**
+     * Escapes a label value
+     *
+     * @param value The label value
+     * @return Escaped value
+     */
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * The metrics of one command
+     */
+    private static final class CommandMetrics {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder errors = new LongAdder();
+    }
+
+    /**
+     * A gauge that is read when the metrics are published
+     *
+     * @param help   Description of the metric
+     * @param label  Name of the label
+     * @param values Returns the values by their label value
+     */
+    private record Gauge(String help, String label, Supplier<Map<String, ? extends Number>> values) {
+    }
+}
@@ -0,0 +1,348 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.galactic.star.punishments;
+
+import dev.galactic.star.GalacticBot;
+import dev.galactic.star.H2Database;
+import dev.galactic.star.config.Configuration;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Role;
+import net.dv8tion.jda.api.entities.UserSnowflake;
+import net.dv8tion.jda.api.exceptions.ErrorResponseException;
+import net.dv8tion.jda.api.requests.ErrorResponse;
+import net.dv8tion.jda.api.sharding.ShardManager;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Lifts temporary punishments once they expire. The expiry times are stored in the punishment_expiry table and kept
+ * in a min-heap, and one task sleeps until the earliest of them. So the work per tick only depends on the
+ * punishments that expire, not on how many bans the guild has. Expired punishments are lifted in small batches, so
+ * a lot of them expiring at once doesn't run into Discord's rate limits. Lifts that fail for a reason that might
+ * go away, like a timeout or a missing permission, are tried again with a growing delay.
+ */
+public class ExpiryScheduler {
+
+    private static final int BATCH_SIZE = 5;
+    private static final long BATCH_DELAY_MS = 1_000;
+    private static final long GUILD_RETRY_MS = 30_000;
+    private static final long RETRY_BASE_MS = 5_000;
+    private static final long RETRY_MAX_MS = 3_600_000;
+    private static final String MUTED_ROLE = "muted";
+    private final H2Database db;
+    private final ShardManager shardManager;
+    private final ScheduledExecutorService executor;
+    private final LongSupplier clock;
+    private final PriorityQueue<Pending> heap = new PriorityQueue<>(Comparator.comparingLong(Pending::dueAt));
+    private ScheduledFuture<?> nextRun;
+    private long nextRunAt = Long.MAX_VALUE;
+    private boolean stopped;
+
+    /**
+     * Creates the scheduler. Call load() to start it.
+     *
+     * @param db           Database the expiries are stored in
+     * @param shardManager The shards to lift the punishments with, each guild on its own shard
+     * @param executor     Shared scheduler the runs are scheduled on
+     */
+    public ExpiryScheduler(H2Database db, ShardManager shardManager, ScheduledExecutorService executor) {
+        this(db, shardManager, executor, System::currentTimeMillis);
+    }
+
+    /**
+     * Creates the scheduler with its own clock
+     *
+     * @param db           Database the expiries are stored in
+     * @param shardManager The shards to lift the punishments with, each guild on its own shard
+     * @param executor     Shared scheduler the runs are scheduled on
+     * @param clock        Current time in milliseconds since the epoch
+     */
+    ExpiryScheduler(H2Database db, ShardManager shardManager, ScheduledExecutorService executor, LongSupplier clock) {
+        this.db = db;
+        this.shardManager = shardManager;
+        this.executor = executor;
+        this.clock = clock;
+    }
+
+    /**
+     * Loads the stored expiries into the heap and schedules the earliest one
+     */
+    public void load() {
+        List<PunishmentExpiry> expiries = this.db.queryList("SELECT guild_id, user_id, type, expires_at FROM " +
+                        "punishment_expiry",
+                set -> new PunishmentExpiry(set.getLong(1), set.getLong(2), PunishmentType.valueOf(set.getString(3)),
+                        set.getObject(4, OffsetDateTime.class).toInstant().toEpochMilli()));
+        synchronized (this) {
+            this.heap.clear();
+            expiries.forEach(expiry -> this.heap.add(new Pending(expiry, expiry.expiresAt(), 0)));
+            this.reschedule(0);
+        }
+        GalacticBot.getBot().getLogger().info("Loaded " + expiries.size() + " temporary punishment(s).");
+    }
+
+    /**
+     * Stores when a punishment ends. A punishment of the same type for the same user is replaced.
+     *
+     * @param guildId   Id of the guild
+     * @param userId    Id of the punished user
+     * @param type      Type of the punishment
+     * @param expiresAt When it ends
+     */
+    public void schedule(long guildId, long userId, PunishmentType type, Instant expiresAt) {
+        PunishmentExpiry expiry = new PunishmentExpiry(guildId, userId, type, expiresAt.toEpochMilli());
+        //Stored in milliseconds, so the delete after the lift matches it exactly
+        this.db.write("MERGE INTO punishment_expiry(guild_id, user_id, type, expires_at) KEY(guild_id, user_id, " +
+                "type) VALUES(?,?,?,?)", guildId, userId, type.name(), toTimestamp(expiry.expiresAt()));
+        synchronized (this) {
+            this.heap.removeIf(pending -> pending.expiry().samePunishment(expiry));
+            this.heap.add(new Pending(expiry, expiry.expiresAt(), 0));
+            this.reschedule(0);
+        }
+    }
+
+    /**
+     * Removes a punishment that got lifted early, for example by the unban command
+     *
+     * @param guildId Id of the guild
+     * @param userId  Id of the punished user
+     * @param type    Type of the punishment
+     */
+    public void cancel(long guildId, long userId, PunishmentType type) {
+        PunishmentExpiry expiry = new PunishmentExpiry(guildId, userId, type, 0);
+        this.db.write("DELETE FROM punishment_expiry WHERE guild_id=? AND user_id=? AND type=?", guildId, userId,
+                type.name());
+        synchronized (this) {
+            this.heap.removeIf(pending -> pending.expiry().samePunishment(expiry));
+        }
+    }
+
+    /**
+     * Getter for the amount of punishments waiting to expire
+     *
+     * @return Pending expiries
+     */
+    public synchronized int getPending() {
+        return this.heap.size();
+    }
+
+    /**
+     * Stops the scheduler. The expiries stay in the database and are loaded again on the next start. The shared
+     * scheduler keeps running.
+     */
+    public synchronized void shutdown() {
+        this.stopped = true;
+        if (this.nextRun != null) {
+            this.nextRun.cancel(false);
+            this.nextRun = null;
+        }
+    }
+
+    /**
+     * Schedules the next run for the earliest expiry, unless a run is already scheduled before it
+     *
+     * @param minDelayMs Minimum delay before the next run
+     */
+    private void reschedule(long minDelayMs) {
+        Pending first = this.heap.peek();
+        if (first == null || this.stopped || this.executor.isShutdown()) {
+            return;
+        }
+        long runAt = Math.max(first.dueAt(), this.clock.getAsLong() + minDelayMs);
+        if (this.nextRun != null && !this.nextRun.isDone()) {
+            if (this.nextRunAt <= runAt) {
+                return;
+            }
+            this.nextRun.cancel(false);
+        }
+        this.nextRunAt = runAt;
+        this.nextRun = this.executor.schedule(this::run, Math.max(0, runAt - this.clock.getAsLong()),
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Lifts up to BATCH_SIZE expired punishments and schedules the next run. The due ones are taken off the heap
+     * under the lock, the requests and the database writes happen outside of it.
+     */
+    private void run() {
+        long now = this.clock.getAsLong();
+        List<Pending> due = new ArrayList<>(BATCH_SIZE);
+        synchronized (this) {
+            if (this.stopped) {
+                return;
+            }
+            this.nextRun = null;
+            while (due.size() < BATCH_SIZE && !this.heap.isEmpty() && this.heap.peek().dueAt() <= now) {
+                due.add(this.heap.poll());
+            }
+        }
+        for (Pending pending : due) {
+            try {
+                if (!this.lift(pending)) {
+                    //The guild isn't available, try again later and less often the longer it stays away
+                    this.retry(pending, Math.max(GUILD_RETRY_MS, this.backoff(pending.attempts())),
+                            pending.attempts() + 1);
+                }
+            } catch (RuntimeException e) {
+                GalacticBot.getBot().getLogger().warn("Couldn't lift the " + pending.describe() + ": " +
+                        e.getMessage());
+                this.retry(pending, this.backoff(pending.attempts()), pending.attempts() + 1);
+            }
+        }
+        synchronized (this) {
+            boolean moreDue = !this.heap.isEmpty() && this.heap.peek().dueAt() <= this.clock.getAsLong();
+            this.reschedule(moreDue ? BATCH_DELAY_MS : 0);
+        }
+    }
+
+    /**
+     * Lifts the punishment in Discord and removes its record once that worked
+     *
+     * @param pending The expired punishment
+     * @return False if the guild isn't available
+     */
+    private boolean lift(Pending pending) {
+        PunishmentExpiry expiry = pending.expiry();
+        Guild guild = this.shardManager.getGuildById(expiry.guildId());
+        if (guild == null) {
+            return false;
+        }
+        UserSnowflake user = UserSnowflake.fromId(expiry.userId());
+        switch (expiry.type()) {
+            case BAN -> guild.unban(user).reason("Ban expired").queue(
+                    success -> this.delete(expiry),
+                    error -> this.handleError(pending, error, ErrorResponse.UNKNOWN_BAN));
+            case MUTE -> {
+                Role muted = this.findMutedRole(guild);
+                if (muted == null) {
+                    GalacticBot.getBot().getLogger().warn("Can't lift the mute of " + expiry.userId() +
+                            ", there is no muted role in the RolesAndIds.yml.");
+                    this.delete(expiry);
+                    return true;
+                }
+                guild.removeRoleFromMember(user, muted).reason("Mute expired").queue(
+                        success -> this.delete(expiry),
+                        error -> this.handleError(pending, error, ErrorResponse.UNKNOWN_MEMBER));
+            }
+            default -> this.delete(expiry);
+        }
+        return true;
+    }
+
+    /**
+     * Removes the record if the punishment is already gone, otherwise logs the error and tries again later
+     *
+     * @param pending The expired punishment
+     * @param error   Error of the request
+     * @param gone    The error response that means the punishment doesn't exist anymore
+     */
+    private void handleError(Pending pending, Throwable error, ErrorResponse gone) {
+        if (error instanceof ErrorResponseException response && response.getErrorResponse() == gone) {
+            this.delete(pending.expiry());
+            return;
+        }
+        long delay = this.backoff(pending.attempts());
+        GalacticBot.getBot().getLogger().warn("Couldn't lift the " + pending.describe() + ", trying again in " +
+                TimeUnit.MILLISECONDS.toSeconds(delay) + "s: " + error.getMessage());
+        this.retry(pending, delay, pending.attempts() + 1);
+    }
+
+    /**
+     * Puts a punishment back on the heap, unless it got replaced or cancelled in the meantime
+     *
+     * @param pending  The expired punishment
+     * @param delayMs  How long to wait before the next try
+     * @param attempts Failed tries so far
+     */
+    private synchronized void retry(Pending pending, long delayMs, int attempts) {
+        if (this.stopped || this.heap.stream().anyMatch(other -> other.expiry().samePunishment(pending.expiry()))) {
+            return;
+        }
+        this.heap.add(new Pending(pending.expiry(), this.clock.getAsLong() + delayMs, attempts));
+        this.reschedule(0);
+    }
+
+    /**
+     * Gets the delay before the next try, doubling with every failed one
+     *
+     * @param attempts Failed tries so far
+     * @return Delay in milliseconds
+     */
+    private long backoff(int attempts) {
+        return Math.min(RETRY_MAX_MS, RETRY_BASE_MS << Math.min(attempts, 20));
+    }
+
+    /**
+     * Finds the muted role of the guild
+     *
+     * @param guild The guild
+     * @return Role or null if there is none
+     */
+    private Role findMutedRole(Guild guild) {
+        return Configuration.getInstance().getSnapshot().ids().getRole(guild, MUTED_ROLE);
+    }
+
+    /**
+     * Removes the record of the punishment. It only matches the same expiry time, so a punishment that got
+     * scheduled again while this one was lifted is kept. Older records can be more precise than a millisecond.
+     *
+     * @param expiry The punishment
+     */
+    private void delete(PunishmentExpiry expiry) {
+        this.db.write("DELETE FROM punishment_expiry WHERE guild_id=? AND user_id=? AND type=? AND expires_at>=? " +
+                "AND expires_at<?", expiry.guildId(), expiry.userId(), expiry.type().name(),
+                toTimestamp(expiry.expiresAt()), toTimestamp(expiry.expiresAt() + 1));
+    }
+
+    /**
+     * Converts an expiry time to the type of the expires_at column
+     *
+     * @param epochMillis Milliseconds since the epoch
+     * @return Timestamp in UTC
+     */
+    private static OffsetDateTime toTimestamp(long epochMillis) {
+        return OffsetDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneOffset.UTC);
+    }
+
+    /**
+     * An expiry on the heap
+     *
+     * @param expiry   The punishment
+     * @param dueAt    Milliseconds since the epoch when it is tried next
+     * @param attempts Failed tries so far
+     */
+    private record Pending(PunishmentExpiry expiry, long dueAt, int attempts) {
+
+        /**
+         * Describes the punishment for the log
+         *
+         * @return Description
+         */
+        private String describe() {
+            return this.expiry.type().name().toLowerCase() + " of " + this.expiry.userId();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.galactic.star.punishments;
+
+/**
+ * When a punishment of a user ends
+ *
+ * @param guildId   Id of the guild the punishment is in
+ * @param userId    Id of the punished user
+ * @param type      Type of the punishment
+ * @param expiresAt Milliseconds since the epoch when it ends
+ */
+public record PunishmentExpiry(long guildId, long userId, PunishmentType type, long expiresAt) {
+
+    /**
+     * Checks whether it is the same punishment, no matter when it expires
+     *
+     * @param other The other expiry
+     * @return True/False
+     */
+    public boolean samePunishment(PunishmentExpiry other) {
+        return this.guildId == other.guildId && this.userId == other.userId && this.type == other.type;
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.galactic.star.punishments;
+
+/**
+ * The kinds of punishments that can expire
+ */
+public enum PunishmentType {
+    /**
+     * The user gets unbanned once it expires.
+     */
+    BAN,
+    /**
+     * The muted role from the RolesAndIds.yml gets removed once it expires.
+     */
+    MUTE,
+    /**
+     * Discord ends timeouts on its own, so only the record is removed.
+     */
+    TIMEOUT
+}
@@ -0,0 +1,4 @@
+-- The tables that were created by H2Database.createTables before there were migrations
+CREATE TABLE IF NOT EXISTS user_data(userid VARCHAR(20) NOT NULL PRIMARY KEY, total_warns INT, severity INT);
+CREATE TABLE IF NOT EXISTS warn_history(userid VARCHAR(20) NOT NULL, warn_id VARCHAR(10) NOT NULL PRIMARY KEY,
+    severity INT);
@@ -0,0 +1,8 @@
+-- Tables that H2Database queries but that were never created
+CREATE TABLE IF NOT EXISTS warn_data(user_id BIGINT NOT NULL PRIMARY KEY, total_warns INT DEFAULT 0 NOT NULL,
+    severity INT DEFAULT 0 NOT NULL);
+CREATE TABLE IF NOT EXISTS ban_data(ban_id VARCHAR(10) NOT NULL PRIMARY KEY, user_id BIGINT NOT NULL,
+    reason VARCHAR(512), date_banned TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP NOT NULL,
+    date_unbanned TIMESTAMP WITH TIME ZONE);
+CREATE INDEX IF NOT EXISTS idx_ban_data_user_id ON ban_data(user_id);
+CREATE INDEX IF NOT EXISTS idx_ban_data_date_unbanned ON ban_data(date_unbanned);
@@ -0,0 +1,6 @@
+-- Discord ids are stored as numbers and the warn history gets indexes, so lookups by user or time don't scan
+ALTER TABLE user_data ALTER COLUMN userid SET DATA TYPE BIGINT;
+ALTER TABLE warn_history ALTER COLUMN userid SET DATA TYPE BIGINT;
+ALTER TABLE warn_history ADD COLUMN IF NOT EXISTS created_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP NOT NULL;
+CREATE INDEX IF NOT EXISTS idx_warn_history_userid ON warn_history(userid);
+CREATE INDEX IF NOT EXISTS idx_warn_history_created_at ON warn_history(created_at);
@@ -0,0 +1,4 @@
+-- Expiry times of temporary bans, mutes and timeouts. Only punishments that end are in here.
+CREATE TABLE IF NOT EXISTS punishment_expiry(guild_id BIGINT NOT NULL, user_id BIGINT NOT NULL,
+    type VARCHAR(10) NOT NULL, expires_at TIMESTAMP WITH TIME ZONE NOT NULL, PRIMARY KEY(guild_id, user_id, type));
+CREATE INDEX IF NOT EXISTS idx_punishment_expiry_expires_at ON punishment_expiry(expires_at);
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package dev.galactic.star.commands;
+
+import dev.galactic.star.config.RolesAndIdsConfig;
+import dev.galactic.star.config.RolesAndIdsRegistry;
+import dev.galactic.star.config.comands.slash.SlashCommand;
+import dev.galactic.star.config.comands.slash.SlashPrivilege;
+import net.dv8tion.jda.api.Permission;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Role;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CommandPermissionsTest {
+
+    private static final long CHANNEL = 500;
+    private static final long MOD_ROLE = 20;
+    private static final long MUTED_ROLE = 30;
+    private static final RolesAndIdsRegistry IDS = RolesAndIdsRegistry.of(List.of(
+            entry("moderator", "ROLE", MOD_ROLE), entry("muted", "ROLE", MUTED_ROLE)));
+
+    @Test
+    void commandsWithoutPrivilegesAreOpen() {
+        CommandPermissions permissions = CommandPermissions.build(List.of(command("ping", true)), IDS);
+        assertEquals(0, permissions.size());
+        assertTrue(permissions.isAllowed("ping", member(1, false), CHANNEL));
+        assertTrue(permissions.isAllowed("ping", null, CHANNEL));
+        assertTrue(permissions.isAllowed("unknown", member(1, false), CHANNEL));
+    }
+
+    @Test
+    void allowedRolesAreFoundAmongManyIds() {
+        SlashPrivilege[] privileges = new SlashPrivilege[64];
+        for (int i = 0; i < privileges.length; i++) {
+            //Out of order, so the lookup only works if the ids got sorted
+            privileges[i] = privilege("ROLE", String.valueOf(1_000 + (i * 37L) % 64), true);
+        }
+        CommandPermissions permissions = CommandPermissions.build(List.of(command("ban", true, privileges)), IDS);
+        for (long role = 1_000; role < 1_064; role++) {
+            assertTrue(permissions.isAllowed("ban", member(1, false, role), CHANNEL), "Role " + role);
+        }
+        assertFalse(permissions.isAllowed("ban", member(1, false, 999, 1_064), CHANNEL));
+        assertFalse(permissions.isAllowed("ban", null, CHANNEL));
+    }
+
+    @Test
+    void deniedIdsWinOverAllowedOnes() {
+        CommandPermissions permissions = CommandPermissions.build(List.of(command("warn", true,
+                privilege("ROLE", "moderator", true), privilege("ROLE", "muted", false),
+                privilege("USER", "7", false))), IDS);
+        assertTrue(permissions.isAllowed("warn", member(1, false, MOD_ROLE), CHANNEL));
+        assertFalse(permissions.isAllowed("warn", member(1, false, MOD_ROLE, MUTED_ROLE), CHANNEL));
+        assertFalse(permissions.isAllowed("warn", member(7, false, MOD_ROLE), CHANNEL));
+        assertFalse(permissions.isAllowed("warn", member(1, false), CHANNEL));
+    }
+
+    @Test
+    void allowedChannelsLimitWhereTheCommandWorks() {
+        CommandPermissions permissions = CommandPermissions.build(List.of(command("rank", true,
+                privilege("CHANNEL", String.valueOf(CHANNEL), true))), IDS);
+        assertTrue(permissions.isAllowed("rank", member(1, false), CHANNEL));
+        assertFalse(permissions.isAllowed("rank", member(1, false), CHANNEL + 1));
+    }
+
+    @Test
+    void disabledByDefaultIsOnlyForTheAllowedOnes() {
+        CommandPermissions permissions = CommandPermissions.build(List.of(command("purge", false),
+                command("kick", false, privilege("USER", "7", true))), IDS);
+        assertFalse(permissions.isAllowed("purge", member(1, false, MOD_ROLE), CHANNEL));
+        assertTrue(permissions.isAllowed("purge", member(1, true), CHANNEL));
+        assertTrue(permissions.isAllowed("kick", member(7, false), CHANNEL));
+        assertFalse(permissions.isAllowed("kick", member(8, false), CHANNEL));
+    }
+
+    @Test
+    void administratorsBypassTheDenies() {
+        CommandPermissions permissions = CommandPermissions.build(List.of(command("warn", true,
+                privilege("ROLE", "moderator", true), privilege("ROLE", "muted", false),
+                privilege("CHANNEL", String.valueOf(CHANNEL), false))), IDS);
+        assertTrue(permissions.isAllowed("warn", member(1, true, MUTED_ROLE), CHANNEL));
+    }
+
+    @Test
+    void unresolvedPrivilegeMakesTheCommandAdminOnly() {
+        CommandPermissions permissions = CommandPermissions.build(List.of(
+                command("warn", true, privilege("ROLE", "moderator", true), privilege("ROLE", "typo", true)),
+                command("mute", true, privilege("ROLE", "missing", false))), IDS);
+        assertFalse(permissions.isAllowed("warn", member(1, false, MOD_ROLE), CHANNEL));
+        assertFalse(permissions.isAllowed("warn", null, CHANNEL));
+        assertTrue(permissions.isAllowed("warn", member(1, true), CHANNEL));
+        assertFalse(permissions.isAllowed("mute", member(1, false), CHANNEL));
+        assertTrue(permissions.isAllowed("mute", member(1, true), CHANNEL));
+    }
+
+    private static SlashCommand command(String name, boolean enabledByDefault, SlashPrivilege... privileges) {
+        SlashCommand command = new SlashCommand();
+        command.setName(name);
+        command.setEnabledByDefault(enabledByDefault);
+        command.setPrivileges(List.of(privileges));
+        return command;
+    }
+
+    private static SlashPrivilege privilege(String type, String id, boolean enabled) {
+        SlashPrivilege privilege = new SlashPrivilege();
+        privilege.setType(type);
+        privilege.setId(id);
+        privilege.setEnabled(enabled);
+        return privilege;
+    }
+
+    private static RolesAndIdsConfig entry(String name, String type, long id) {
+        RolesAndIdsConfig entry = new RolesAndIdsConfig();
+        entry.setName(name);
+        entry.setType(type);
+        entry.setId(id);
+        return entry;
+    }
+
+    private static Member member(long id, boolean admin, long... roles) {
+        List<Role> roleList = Arrays.stream(roles).mapToObj(CommandPermissionsTest::role).toList();
+        return (Member) Proxy.newProxyInstance(CommandPermissionsTest.class.getClassLoader(),
+                new Class<?>[]{Member.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "getIdLong" -> id;
+                    case "getRoles" -> roleList;
+                    case "hasPermission" -> admin && Arrays.asList((Permission[]) args[0])
+                            .contains(Permission.ADMINISTRATOR);
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private static Role role(long id) {
+        return (Role) Proxy.newProxyInstance(CommandPermissionsTest.class.getClassLoader(),
+                new Class<?>[]{Role.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "getIdLong" -> id;
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
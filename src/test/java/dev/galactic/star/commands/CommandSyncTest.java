@@ -0,0 +1,102 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package dev.galactic.star.commands;
+
+import net.dv8tion.jda.api.interactions.commands.Command;
+import net.dv8tion.jda.api.interactions.commands.OptionType;
+import net.dv8tion.jda.api.interactions.commands.build.CommandData;
+import net.dv8tion.jda.api.interactions.commands.build.Commands;
+import net.dv8tion.jda.api.requests.restaction.CommandListUpdateAction;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CommandSyncTest {
+
+    @TempDir
+    Path dataPath;
+
+    @Test
+    void hashDoesNotDependOnTheOrderTheFieldsWereSet() {
+        CommandData first = Commands.slash("ban", "Bans a user").setGuildOnly(true)
+                .addOption(OptionType.USER, "user", "The user", true);
+        CommandData second = Commands.slash("ban", "Bans a user")
+                .addOption(OptionType.USER, "user", "The user", true).setGuildOnly(true);
+        assertEquals(CommandSync.hash(first), CommandSync.hash(second));
+    }
+
+    @Test
+    void hashChangesWithTheCommand() {
+        assertNotEquals(CommandSync.hash(Commands.slash("ban", "Bans a user")),
+                CommandSync.hash(Commands.slash("ban", "Bans someone")));
+    }
+
+    @Test
+    void commandsAreKeyedByTypeAndName() {
+        assertEquals(Set.of("slash:report", "user:report", "message:report"), CommandSync.hashAll(List.of(
+                Commands.slash("report", "Reports a user"), Commands.user("report"), Commands.message("report")))
+                .keySet());
+    }
+
+    @Test
+    void onlySendsChangedCommands() {
+        File state = this.dataPath.resolve("CommandHashes.json").toFile();
+        AtomicInteger updates = new AtomicInteger();
+        Supplier<CommandListUpdateAction> update = () -> updateAction(updates);
+        List<CommandData> commands = List.of(Commands.slash("ban", "Bans a user"), Commands.user("Report"));
+
+        assertTrue(new CommandSync(state).sync(CommandSync.GLOBAL, update, commands, false).join());
+        assertEquals(1, updates.get());
+        //Read again from the file, like on the next start
+        CommandSync sync = new CommandSync(state);
+        assertEquals(Set.of(CommandSync.GLOBAL), sync.getTargets());
+        assertFalse(sync.sync(CommandSync.GLOBAL, update, commands, false).join());
+        assertEquals(1, updates.get());
+
+        assertTrue(sync.sync(CommandSync.GLOBAL, update, commands, true).join());
+        assertTrue(sync.sync(CommandSync.GLOBAL, update, List.of(Commands.slash("ban", "Bans someone")), false)
+                .join());
+        assertTrue(sync.sync(CommandSync.guildTarget(1), update, commands, false).join());
+        assertEquals(4, updates.get());
+        assertEquals(Set.of(CommandSync.GLOBAL, "guild:1"), new CommandSync(state).getTargets());
+    }
+
+    private static CommandListUpdateAction updateAction(AtomicInteger updates) {
+        updates.incrementAndGet();
+        List<Command> registered = List.of();
+        return (CommandListUpdateAction) Proxy.newProxyInstance(CommandSyncTest.class.getClassLoader(),
+                new Class<?>[]{CommandListUpdateAction.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "addCommands" -> proxy;
+                    case "submit" -> CompletableFuture.completedFuture(registered);
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package dev.galactic.star.commands;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HandlerFactoryTest {
+
+    private static final String HANDLER = CountingHandler.class.getName();
+
+    @BeforeEach
+    void reset() {
+        CountingHandler.created.set(0);
+        CountingHandler.closed.set(0);
+    }
+
+    @Test
+    void singletonClosedInFlightIsClosedAfterTheLastRelease() throws ReflectiveOperationException {
+        HandlerFactory<CountingHandler> factory = create(HandlerScope.SINGLETON, 1);
+        CountingHandler first = factory.acquire();
+        CountingHandler second = factory.acquire();
+        assertSame(first, second);
+
+        factory.close();
+        assertFalse(first.isClosed());
+        factory.release(first);
+        assertFalse(first.isClosed());
+        factory.release(second);
+        assertTrue(first.isClosed());
+        assertEquals(1, CountingHandler.created.get());
+        assertEquals(1, CountingHandler.closed.get());
+
+        factory.close();
+        assertEquals(1, CountingHandler.closed.get());
+    }
+
+    @Test
+    void closedSingletonIsReplacedByASingleUseInstance() throws ReflectiveOperationException {
+        HandlerFactory<CountingHandler> factory = create(HandlerScope.SINGLETON, 1);
+        CountingHandler singleton = factory.acquire();
+        factory.release(singleton);
+        factory.close();
+        assertTrue(singleton.isClosed());
+
+        CountingHandler late = factory.acquire();
+        assertNotSame(singleton, late);
+        assertFalse(late.isClosed());
+        factory.release(late);
+        assertTrue(late.isClosed());
+        assertEquals(CountingHandler.created.get(), CountingHandler.closed.get());
+    }
+
+    @Test
+    void singletonSurvivesConcurrentUseAndIsClosedOnce() throws Exception {
+        HandlerFactory<CountingHandler> factory = create(HandlerScope.SINGLETON, 1);
+        CountingHandler singleton = factory.acquire();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < 10_000; j++) {
+                    CountingHandler handler = factory.acquire();
+                    assertFalse(handler.isClosed());
+                    factory.release(handler);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        factory.close();
+        assertFalse(singleton.isClosed());
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        factory.release(singleton);
+
+        assertTrue(singleton.isClosed());
+        assertEquals(CountingHandler.created.get(), CountingHandler.closed.get());
+    }
+
+    @Test
+    void poolNeverKeepsMoreThanPoolSizeInstances() throws Exception {
+        int poolSize = 3;
+        HandlerFactory<CountingHandler> factory = create(HandlerScope.POOLED, poolSize);
+        assertEquals(1, CountingHandler.created.get());
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < 2_000; j++) {
+                    CountingHandler handler = factory.acquire();
+                    assertTrue(handler.inUse.compareAndSet(false, true), "Handed out twice");
+                    Thread.onSpinWait();
+                    handler.inUse.set(false);
+                    factory.release(handler);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        int alive = CountingHandler.created.get() - CountingHandler.closed.get();
+        assertTrue(alive >= 1 && alive <= poolSize, "Idle instances: " + alive);
+        factory.close();
+        assertEquals(CountingHandler.created.get(), CountingHandler.closed.get());
+    }
+
+    @Test
+    void releasedAfterCloseIsNotPooled() throws ReflectiveOperationException {
+        HandlerFactory<CountingHandler> factory = create(HandlerScope.POOLED, 2);
+        CountingHandler handler = factory.acquire();
+        factory.close();
+        assertFalse(handler.isClosed());
+        factory.release(handler);
+        assertTrue(handler.isClosed());
+        assertEquals(CountingHandler.created.get(), CountingHandler.closed.get());
+    }
+
+    @Test
+    void prototypeCreatesAnInstancePerEvent() throws ReflectiveOperationException {
+        HandlerFactory<CountingHandler> factory = create(HandlerScope.PROTOTYPE, 1);
+        assertEquals(0, CountingHandler.created.get());
+        CountingHandler first = factory.acquire();
+        CountingHandler second = factory.acquire();
+        assertNotSame(first, second);
+        factory.release(first);
+        factory.release(second);
+        assertTrue(first.isClosed() && second.isClosed());
+        assertEquals(2, CountingHandler.closed.get());
+    }
+
+    @Test
+    void rejectsClassesThatDontImplementTheType() {
+        assertThrows(ClassCastException.class,
+                () -> HandlerFactory.create(String.class.getName(), CountingHandler.class, HandlerScope.PROTOTYPE, 1));
+        assertThrows(ClassNotFoundException.class,
+                () -> HandlerFactory.create("dev.galactic.star.Missing", CountingHandler.class,
+                        HandlerScope.PROTOTYPE, 1));
+    }
+
+    private static HandlerFactory<CountingHandler> create(HandlerScope scope, int poolSize)
+            throws ReflectiveOperationException {
+        return HandlerFactory.create(HANDLER, CountingHandler.class, scope, poolSize);
+    }
+
+    /**
+     * Handler that counts its instances and fails the test if it's closed twice
+     */
+    public static class CountingHandler implements LifecycleHandler {
+
+        static final AtomicInteger created = new AtomicInteger();
+        static final AtomicInteger closed = new AtomicInteger();
+        private final AtomicBoolean isClosed = new AtomicBoolean();
+        final AtomicBoolean inUse = new AtomicBoolean();
+
+        @Override
+        public void init() {
+            created.incrementAndGet();
+        }
+
+        @Override
+        public void close() {
+            if (!this.isClosed.compareAndSet(false, true)) {
+                throw new AssertionError("Closed twice");
+            }
+            closed.incrementAndGet();
+        }
+
+        boolean isClosed() {
+            return this.isClosed.get();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package dev.galactic.star.commands;
+
+import dev.galactic.star.config.comands.slash.SlashCommand;
+import dev.galactic.star.config.comands.slash.SlashOption;
+import dev.galactic.star.config.comands.slash.SlashSubCommand;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
+import net.dv8tion.jda.api.interactions.commands.OptionMapping;
+import net.dv8tion.jda.api.interactions.commands.OptionType;
+import net.dv8tion.jda.api.interactions.commands.SlashCommandInteraction;
+import net.dv8tion.jda.api.utils.data.DataObject;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OptionBinderTest {
+
+    @Test
+    void bindsOptionsByComponentNameAndAnnotation() {
+        OptionBinder<BanParams> binder = OptionBinder.create(command(option("reason", "string", true),
+                option("days", "integer", true), option("silent", "boolean", false)), BanParams.class);
+        BanParams params = binder.bind(event(mapping("reason", OptionType.STRING, "spam"),
+                mapping("days", OptionType.INTEGER, 7), mapping("silent", OptionType.BOOLEAN, true)));
+        assertEquals(new BanParams("spam", 7, true), params);
+    }
+
+    @Test
+    void missingOptionalOptionIsNull() {
+        OptionBinder<BanParams> binder = OptionBinder.create(command(option("reason", "string", true),
+                option("days", "integer", true), option("silent", "boolean", false)), BanParams.class);
+        BanParams params = binder.bind(event(mapping("reason", OptionType.STRING, "spam"),
+                mapping("days", OptionType.INTEGER, 1)));
+        assertNull(params.silent());
+    }
+
+    @Test
+    void rawMappingIsPassedThrough() {
+        OptionMapping reason = mapping("reason", OptionType.STRING, "spam");
+        OptionBinder<RawParams> binder = OptionBinder.create(command(option("reason", "string", false)),
+                RawParams.class);
+        assertSame(reason, binder.bind(event(reason)).reason());
+    }
+
+    @Test
+    void findsOptionsOfSubCommands() {
+        SlashCommand command = command();
+        SlashSubCommand add = new SlashSubCommand();
+        add.setName("add");
+        add.setDescription("Adds a warn");
+        add.setOptions(List.of(option("reason", "string", true)));
+        command.setSubCommands(List.of(add));
+        OptionBinder<RawParams> binder = OptionBinder.create(command, RawParams.class);
+        assertEquals(RawParams.class, binder.getType());
+    }
+
+    @Test
+    void reportsEveryMismatch() {
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class, () -> OptionBinder.create(
+                command(option("reason", "integer", true), option("days", "integer", false)), BanParams.class));
+        String message = error.getMessage();
+        assertTrue(message.contains("\"ban\""), message);
+        assertTrue(message.contains("reason is of the type String, but the option \"reason\" is of the type integer"),
+                message);
+        assertTrue(message.contains("the option \"days\" isn't always given"), message);
+        assertTrue(message.contains("there is no option \"silent\""), message);
+    }
+
+    @Test
+    void reportsUnsupportedTypes() {
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class, () -> OptionBinder.create(
+                command(option("tags", "string", true)), UnsupportedParams.class));
+        assertTrue(error.getMessage().contains("tags has the unsupported type java.util.List"), error.getMessage());
+    }
+
+    @Test
+    void findsTheRecordOfTheHandler() {
+        OptionBinder<?> binder = OptionBinder.create(RawHandler.class, command(option("reason", "string", true)));
+        assertEquals(RawParams.class, binder.getType());
+        assertThrows(IllegalArgumentException.class, () -> OptionBinder.create(String.class, command()));
+    }
+
+    private static SlashCommand command(SlashOption... options) {
+        SlashCommand command = new SlashCommand();
+        command.setName("ban");
+        command.setDescription("Bans a user");
+        command.setOptions(new ArrayList<>(List.of(options)));
+        return command;
+    }
+
+    private static SlashOption option(String name, String type, boolean required) {
+        SlashOption option = new SlashOption();
+        option.setName(name);
+        option.setDescription("The " + name);
+        option.setType(type);
+        option.setRequired(required);
+        return option;
+    }
+
+    private static OptionMapping mapping(String name, OptionType type, Object value) {
+        DataObject data = DataObject.empty().put("name", name).put("type", type.getKey()).put("value", value);
+        return new OptionMapping(data, new TLongObjectHashMap<>(), null, null);
+    }
+
+    private static SlashCommandInteractionEvent event(OptionMapping... mappings) {
+        SlashCommandInteraction interaction = (SlashCommandInteraction) Proxy.newProxyInstance(
+                OptionBinderTest.class.getClassLoader(), new Class<?>[]{SlashCommandInteraction.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getOptions" -> List.of(mappings);
+                    case "getName" -> "ban";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+        return new SlashCommandInteractionEvent(null, 0, interaction);
+    }
+
+    private record BanParams(String reason, @Option("days") int duration, Boolean silent) {
+    }
+
+    private record RawParams(OptionMapping reason) {
+    }
+
+    private record UnsupportedParams(List<String> tags) {
+    }
+
+    public static final class RawHandler implements TypedSlashHandler<RawParams> {
+
+        @Override
+        public void handleEvent(SlashCommandInteractionEvent event, RawParams params) {
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package dev.galactic.star.config;
+
+import dev.galactic.star.config.comands.context.ContextCommand;
+import dev.galactic.star.config.comands.slash.SlashCommand;
+import dev.galactic.star.config.comands.slash.SlashPrivilege;
+import dev.galactic.star.config.system.SystemConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConfigSnapshotTest {
+
+    @Test
+    void validSnapshotHasNoProblems() {
+        assertEquals(List.of(), snapshot(system("token"), List.of(slash("ban")), List.of(context("Report")),
+                List.of(entry("muted", "123"))).validate());
+    }
+
+    @Test
+    void missingSystemConfigAndToken() {
+        assertProblem(snapshot(null, List.of(), List.of(), List.of()), "The System.json is empty.");
+        assertProblem(snapshot(system(" "), List.of(), List.of(), List.of()), "doesn't have a token");
+    }
+
+    @Test
+    void invalidCacheProfile() {
+        SystemConfig system = system("token");
+        system.getCache().setExtra_intents(List.of("not_an_intent"));
+        assertProblem(snapshot(system, List.of(), List.of(), List.of()), "cache section");
+    }
+
+    @Test
+    void shardIdsOutsideTheTotal() {
+        SystemConfig system = system("token");
+        system.getSharding().setEnabled(true);
+        system.getSharding().setShard_total(2);
+        system.getSharding().setShard_ids(List.of(0, 2));
+        assertProblem(snapshot(system, List.of(), List.of(), List.of()), "shard_ids");
+    }
+
+    @Test
+    void duplicateCommands() {
+        assertProblem(snapshot(system("token"), List.of(slash("ban"), slash("ban")), List.of(), List.of()),
+                "\"ban\" is defined more than once");
+        assertProblem(snapshot(system("token"), List.of(), List.of(context("Report"), context("Report")),
+                List.of()), "\"Report\" is defined more than once");
+    }
+
+    @Test
+    void commandDiscordWouldReject() {
+        assertProblem(snapshot(system("token"), List.of(slash("Not Valid")), List.of(), List.of()),
+                "\"Not Valid\" is invalid");
+    }
+
+    @Test
+    void invalidPrivilegeType() {
+        SlashCommand command = slash("ban");
+        SlashPrivilege privilege = new SlashPrivilege();
+        privilege.setType("group");
+        privilege.setId("123");
+        command.setPrivileges(List.of(privilege));
+        assertProblem(snapshot(system("token"), List.of(command), List.of(), List.of()), "invalid type \"group\"");
+    }
+
+    @Test
+    void invalidScopeAndPoolSize() {
+        SlashCommand slash = slash("ban");
+        slash.setScope("session");
+        ContextCommand context = context("Report");
+        context.setPoolSize(0);
+        ConfigSnapshot snapshot = snapshot(system("token"), List.of(slash), List.of(context), List.of());
+        assertProblem(snapshot, "invalid scope \"session\"");
+        assertProblem(snapshot, "pool size of the context command \"Report\"");
+    }
+
+    @Test
+    void scopeIsCaseInsensitiveAndOptional() {
+        SlashCommand pooled = slash("ban");
+        pooled.setScope(" Pooled ");
+        assertEquals(List.of(), snapshot(system("token"), List.of(pooled, slash("kick")), List.of(), List.of())
+                .validate());
+    }
+
+    @Test
+    void rolesAndIdsEntries() {
+        assertProblem(snapshot(system("token"), List.of(), List.of(), List.of(entry(null, "1"))),
+                "missing its name or id");
+        assertProblem(snapshot(system("token"), List.of(), List.of(), List.of(entry("muted", "abc"))),
+                "\"muted\" in the RolesAndIds.yml isn't a number");
+    }
+
+    private static void assertProblem(ConfigSnapshot snapshot, String expected) {
+        List<String> problems = snapshot.validate();
+        assertTrue(problems.stream().anyMatch(problem -> problem.contains(expected)), "expected a problem with \"" +
+                expected + "\" in " + problems);
+    }
+
+    private static ConfigSnapshot snapshot(SystemConfig system, List<SlashCommand> slash, List<ContextCommand> context,
+                                           List<RolesAndIdsConfig> rolesAndIds) {
+        return new ConfigSnapshot(1, system, slash, List.of(), context, rolesAndIds);
+    }
+
+    private static SystemConfig system(String token) {
+        SystemConfig system = new SystemConfig();
+        system.setToken(token);
+        return system;
+    }
+
+    private static SlashCommand slash(String name) {
+        SlashCommand command = new SlashCommand();
+        command.setName(name);
+        command.setDescription("Description of " + name);
+        return command;
+    }
+
+    private static ContextCommand context(String name) {
+        ContextCommand command = new ContextCommand();
+        command.setName(name);
+        command.setType("user");
+        return command;
+    }
+
+    private static RolesAndIdsConfig entry(String name, String id) {
+        RolesAndIdsConfig config = new RolesAndIdsConfig();
+        config.setName(name);
+        config.setType("role");
+        config.setId(id);
+        return config;
+    }
+}
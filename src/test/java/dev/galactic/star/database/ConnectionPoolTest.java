@@ -0,0 +1,168 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package dev.galactic.star.database;
+
+import dev.galactic.star.config.system.DatabaseConfig;
+import dev.galactic.star.config.system.PoolConfig;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConnectionPoolTest {
+
+    @Test
+    void opensTheMinimumOnStart() {
+        try (ConnectionPool pool = openPool(2, 5, 1_000)) {
+            assertEquals(2, pool.getOpenCount());
+            assertEquals(2, pool.getIdleCount());
+            assertEquals(0, pool.getBorrowedCount());
+        }
+    }
+
+    @Test
+    void reusesAConnectionThatWasGivenBack() throws SQLException {
+        try (ConnectionPool pool = openPool(0, 5, 1_000)) {
+            PooledConnection first = pool.borrow();
+            first.close();
+            PooledConnection second = pool.borrow();
+            assertSame(first, second);
+            assertEquals(1, pool.getOpenCount());
+            second.close();
+            second.close();
+            assertEquals(1, pool.getIdleCount());
+        }
+    }
+
+    @Test
+    void neverHandsOutMoreThanMaxSize() throws Exception {
+        int maxSize = 3;
+        try (ConnectionPool pool = openPool(0, maxSize, 10_000)) {
+            AtomicInteger inUse = new AtomicInteger();
+            AtomicInteger mostInUse = new AtomicInteger();
+            AtomicInteger mostOpen = new AtomicInteger();
+            ExecutorService executor = Executors.newFixedThreadPool(12);
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 12; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < 200; j++) {
+                        try (PooledConnection ignored = pool.borrow()) {
+                            mostInUse.accumulateAndGet(inUse.incrementAndGet(), Math::max);
+                            mostOpen.accumulateAndGet(pool.getOpenCount(), Math::max);
+                            Thread.onSpinWait();
+                            inUse.decrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+            executor.shutdown();
+
+            assertTrue(mostInUse.get() <= maxSize, "Borrowed at once: " + mostInUse.get());
+            assertTrue(mostOpen.get() <= maxSize, "Open at once: " + mostOpen.get());
+            assertEquals(0, pool.getBorrowedCount());
+            assertEquals(pool.getOpenCount(), pool.getIdleCount());
+        }
+    }
+
+    @Test
+    void timesOutWhenEveryConnectionIsBorrowed() throws SQLException {
+        try (ConnectionPool pool = openPool(0, 2, 100)) {
+            PooledConnection first = pool.borrow();
+            PooledConnection second = pool.borrow();
+            assertThrows(SQLException.class, pool::borrow);
+            assertEquals(2, pool.getOpenCount());
+
+            first.close();
+            PooledConnection third = pool.borrow();
+            assertSame(first, third);
+            third.close();
+            second.close();
+            assertEquals(2, pool.getIdleCount());
+        }
+    }
+
+    @Test
+    void closesBorrowedConnectionsOnceTheyAreGivenBack() throws SQLException {
+        ConnectionPool pool = openPool(1, 3, 1_000);
+        PooledConnection borrowed = pool.borrow();
+        pool.borrow().close();
+        pool.close();
+        assertEquals(1, pool.getOpenCount());
+        assertThrows(SQLException.class, pool::borrow);
+
+        borrowed.close();
+        assertEquals(0, pool.getOpenCount());
+        assertTrue(borrowed.getConnection().isClosed());
+    }
+
+    @Test
+    void onlyCapturesTheBorrowTraceWhenAskedTo() throws SQLException {
+        try (ConnectionPool pool = openPool(0, 2, 1_000)) {
+            try (PooledConnection connection = pool.borrow()) {
+                assertEquals(Thread.currentThread().getName(), connection.getBorrowedBy());
+                assertNull(connection.getBorrowTrace());
+            }
+        }
+        DatabaseConfig config = config(0, 2, 1_000);
+        config.getPool().setLeak_trace(true);
+        try (ConnectionPool pool = new ConnectionPool(config)) {
+            try (PooledConnection connection = pool.borrow()) {
+                assertNotNull(connection.getBorrowTrace());
+            }
+        }
+    }
+
+    private static ConnectionPool openPool(int minSize, int maxSize, long borrowTimeoutMs) {
+        return new ConnectionPool(config(minSize, maxSize, borrowTimeoutMs));
+    }
+
+    private static DatabaseConfig config(int minSize, int maxSize, long borrowTimeoutMs) {
+        DatabaseConfig config = new DatabaseConfig();
+        config.setUrl("jdbc:h2:mem:pool-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        config.setUsername("sa");
+        config.setPassword("");
+        PoolConfig pool = new PoolConfig();
+        pool.setMin_size(minSize);
+        pool.setMax_size(maxSize);
+        pool.setBorrow_timeout_ms(borrowTimeoutMs);
+        config.setPool(pool);
+        return config;
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package dev.galactic.star.database;
+
+import dev.galactic.star.config.system.DatabaseConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SchemaMigratorTest {
+
+    private ConnectionPool pool;
+
+    @BeforeEach
+    void openDatabase() {
+        this.pool = openPool();
+    }
+
+    @AfterEach
+    void closeDatabase() {
+        this.pool.close();
+    }
+
+    @Test
+    void appliesEveryMigrationInVersionOrder() throws SQLException {
+        assertEquals(4, new SchemaMigrator(this.pool).migrate());
+        assertEquals(List.of(1, 2, 3, 4), this.queryInts("SELECT version FROM schema_version ORDER BY version"));
+        //V3 changes the tables of V2, so it only gets here if they ran in order
+        assertEquals(List.of(1), this.queryInts("SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE " +
+                "TABLE_NAME='PUNISHMENT_EXPIRY'"));
+    }
+
+    @Test
+    void secondRunAppliesNothing() {
+        new SchemaMigrator(this.pool).migrate();
+        assertEquals(0, new SchemaMigrator(this.pool).migrate());
+    }
+
+    @Test
+    void onlyMissingMigrationsAreApplied() throws SQLException {
+        new SchemaMigrator(this.pool).migrate();
+        this.execute("DELETE FROM schema_version WHERE version=4");
+        assertEquals(1, new SchemaMigrator(this.pool).migrate());
+        assertEquals(List.of(1, 2, 3, 4), this.queryInts("SELECT version FROM schema_version ORDER BY version"));
+    }
+
+    @Test
+    void checksumsAreStableAndPerScript() throws SQLException {
+        new SchemaMigrator(this.pool).migrate();
+        List<Integer> checksums = this.queryInts("SELECT checksum FROM schema_version ORDER BY version");
+        assertEquals(checksums.size(), new HashSet<>(checksums).size());
+        ConnectionPool other = openPool();
+        try {
+            new SchemaMigrator(other).migrate();
+            assertEquals(checksums, queryInts(other, "SELECT checksum FROM schema_version ORDER BY version"));
+        } finally {
+            other.close();
+        }
+    }
+
+    @Test
+    void changedChecksumIsKeptAndNotApplied() throws SQLException {
+        new SchemaMigrator(this.pool).migrate();
+        this.execute("UPDATE schema_version SET checksum=42 WHERE version=2");
+        assertEquals(0, new SchemaMigrator(this.pool).migrate());
+        assertEquals(List.of(42), this.queryInts("SELECT checksum FROM schema_version WHERE version=2"));
+    }
+
+    @Test
+    void checksumIsTheCrc32OfTheFile() throws Exception {
+        new SchemaMigrator(this.pool).migrate();
+        CRC32 crc = new CRC32();
+        crc.update(readResource("V2__moderation_tables.sql"));
+        assertEquals(List.of((int) crc.getValue()),
+                this.queryInts("SELECT checksum FROM schema_version WHERE version=2"));
+    }
+
+    @Test
+    void oldChecksumIsReplacedWithTheCrc32() throws Exception {
+        new SchemaMigrator(this.pool).migrate();
+        List<Integer> checksums = this.queryInts("SELECT checksum FROM schema_version ORDER BY version");
+        //How the checksum used to be calculated, the hash of the script without comments and blank lines
+        String script = new String(readResource("V2__moderation_tables.sql"), StandardCharsets.UTF_8).lines()
+                .map(String::trim)
+                .filter(line -> !line.isEmpty() && !line.startsWith("#") && !line.startsWith("--"))
+                .collect(Collectors.joining("\n"));
+        this.execute("UPDATE schema_version SET checksum=" + script.hashCode() + " WHERE version=2");
+        assertEquals(0, new SchemaMigrator(this.pool).migrate());
+        assertEquals(checksums, this.queryInts("SELECT checksum FROM schema_version ORDER BY version"));
+    }
+
+    private static ConnectionPool openPool() {
+        DatabaseConfig config = new DatabaseConfig();
+        config.setUrl("jdbc:h2:mem:migrator-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        config.setUsername("sa");
+        config.setPassword("");
+        return new ConnectionPool(config);
+    }
+
+    private static byte[] readResource(String fileName) throws IOException {
+        try (InputStream in = SchemaMigratorTest.class.getClassLoader()
+                .getResourceAsStream("db/migration/" + fileName)) {
+            return Objects.requireNonNull(in, fileName).readAllBytes();
+        }
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (PooledConnection pooled = this.pool.borrow(); Statement stmt = pooled.getConnection().createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+    private List<Integer> queryInts(String sql) throws SQLException {
+        return queryInts(this.pool, sql);
+    }
+
+    private static List<Integer> queryInts(ConnectionPool pool, String sql) throws SQLException {
+        List<Integer> values = new ArrayList<>();
+        try (PooledConnection pooled = pool.borrow(); Statement stmt = pooled.getConnection().createStatement();
+             ResultSet set = stmt.executeQuery(sql)) {
+            while (set.next()) {
+                values.add(set.getInt(1));
+            }
+        }
+        return values;
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package dev.galactic.star.database;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class UserStateCacheTest {
+
+    //Caches below 16 users have one segment, 4 users get a table of 8 slots
+    private static final int SMALL = 4;
+    private static final int SLOTS = 8;
+
+    @Test
+    void evictsTheLeastRecentlyUsedUser() {
+        UserStateCache cache = new UserStateCache(3, 60_000);
+        CountingLoader loader = new CountingLoader();
+        cache.get(1, loader);
+        cache.get(2, loader);
+        cache.get(3, loader);
+        cache.get(1, loader);
+        cache.get(4, loader);
+        assertEquals(3, cache.size());
+        assertEquals(1, cache.getEvictions());
+
+        loader.loads.set(0);
+        cache.get(1, loader);
+        cache.get(3, loader);
+        cache.get(4, loader);
+        assertEquals(0, loader.loads.get());
+        cache.get(2, loader);
+        assertEquals(1, loader.loads.get());
+    }
+
+    @Test
+    void expiredEntriesAreLoadedAgain() {
+        CountingLoader loader = new CountingLoader();
+        UserStateCache expired = new UserStateCache(10, 0);
+        expired.get(1, loader);
+        expired.get(1, loader);
+        assertEquals(2, loader.loads.get());
+        assertEquals(0, expired.getHits());
+
+        UserStateCache fresh = new UserStateCache(10, 60_000);
+        fresh.get(1, loader);
+        fresh.get(1, loader);
+        assertEquals(3, loader.loads.get());
+        assertEquals(1, fresh.getHits());
+    }
+
+    @Test
+    void findsTheRestOfACollisionChainAfterARemoval() {
+        List<Long> chain = new ArrayList<>();
+        long home = UserStateCache.hash(1) & (SLOTS - 1);
+        for (long id = 1; chain.size() < SMALL; id++) {
+            if ((UserStateCache.hash(id) & (SLOTS - 1)) == home) {
+                chain.add(id);
+            }
+        }
+        UserStateCache cache = new UserStateCache(SMALL, 60_000);
+        Map<Long, UserState> states = new LinkedHashMap<>();
+        for (long id : chain) {
+            UserState state = new UserState((int) id, 0, false);
+            states.put(id, state);
+            cache.put(id, state);
+        }
+        cache.invalidate(chain.get(1));
+        states.remove(chain.get(1));
+        states.forEach((id, state) -> assertSame(state, cache.get(id, failing())));
+        //The freed slot and entry are reused
+        UserState again = new UserState(-1, 0, false);
+        cache.put(chain.get(1), again);
+        assertSame(again, cache.get(chain.get(1), failing()));
+        states.forEach((id, state) -> assertSame(state, cache.get(id, failing())));
+        assertEquals(SMALL, cache.size());
+    }
+
+    @Test
+    void behavesLikeALinkedHashMapLru() {
+        Random random = new Random(7);
+        UserStateCache cache = new UserStateCache(SMALL, 60_000);
+        Map<Long, UserState> model = new LinkedHashMap<>(16, 0.75f, true);
+        for (int i = 0; i < 100_000; i++) {
+            long id = random.nextInt(12);
+            switch (random.nextInt(3)) {
+                case 0 -> {
+                    UserState state = new UserState(i, 0, false);
+                    cache.put(id, state);
+                    model.put(id, state);
+                }
+                case 1 -> {
+                    cache.invalidate(id);
+                    model.remove(id);
+                }
+                default -> {
+                    UserState expected = model.get(id);
+                    UserState loaded = new UserState(-i, 0, false);
+                    UserState actual = cache.get(id, userId -> loaded);
+                    assertSame(expected == null ? loaded : expected, actual, "step " + i);
+                    model.put(id, actual);
+                }
+            }
+            if (model.size() > SMALL) {
+                model.remove(model.keySet().iterator().next());
+            }
+            assertEquals(model.size(), cache.size(), "step " + i);
+        }
+    }
+
+    @Test
+    void invalidateAllEmptiesEverySegment() {
+        UserStateCache cache = new UserStateCache(1_000, 60_000);
+        CountingLoader loader = new CountingLoader();
+        for (long id = 0; id < 500; id++) {
+            cache.get(id, loader);
+        }
+        assertEquals(500, cache.size());
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+        cache.get(42, loader);
+        assertEquals(501, loader.loads.get());
+    }
+
+    @Test
+    void loadRacingAnInvalidationIsNotCached() {
+        UserStateCache cache = new UserStateCache(10, 60_000);
+        UserState stale = new UserState(1, 0, false);
+        //A write lands while the old state is being read from the database
+        UserState returned = cache.get(1, id -> {
+            cache.invalidate(id);
+            return stale;
+        });
+        assertSame(stale, returned);
+        assertEquals(0, cache.size());
+        UserState current = new UserState(2, 0, false);
+        assertSame(current, cache.get(1, id -> current));
+    }
+
+    @Test
+    void sizeZeroDisablesTheCache() {
+        UserStateCache cache = new UserStateCache(0, 60_000);
+        CountingLoader loader = new CountingLoader();
+        cache.get(1, loader);
+        cache.put(1, new UserState(1, 0, false));
+        cache.get(1, loader);
+        assertEquals(2, loader.loads.get());
+        assertEquals(0, cache.size());
+    }
+
+    private static LongFunction<UserState> failing() {
+        return id -> {
+            throw new AssertionError("user " + id + " should be cached");
+        };
+    }
+
+    private static final class CountingLoader implements LongFunction<UserState> {
+        private final AtomicInteger loads = new AtomicInteger();
+
+        @Override
+        public UserState apply(long id) {
+            this.loads.incrementAndGet();
+            return new UserState((int) id, 0, false);
+        }
+    }
+}
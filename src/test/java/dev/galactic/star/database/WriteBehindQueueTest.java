@@ -0,0 +1,134 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package dev.galactic.star.database;
+
+import dev.galactic.star.config.system.DatabaseConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WriteBehindQueueTest {
+
+    private static final String INSERT = "INSERT INTO entries(id, note) VALUES(?,?)";
+    private ConnectionPool pool;
+
+    @BeforeEach
+    void openDatabase() throws SQLException {
+        DatabaseConfig config = new DatabaseConfig();
+        config.setUrl("jdbc:h2:mem:write-behind-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        config.setUsername("sa");
+        config.setPassword("");
+        this.pool = new ConnectionPool(config);
+        try (PooledConnection pooled = this.pool.borrow(); Statement stmt = pooled.getConnection().createStatement()) {
+            stmt.execute("CREATE TABLE entries(id INT NOT NULL PRIMARY KEY, note VARCHAR(20))");
+        }
+    }
+
+    @AfterEach
+    void closeDatabase() {
+        this.pool.close();
+    }
+
+    @Test
+    void commitsEveryWriteAndFlushWaitsForThem() throws SQLException {
+        try (WriteBehindQueue queue = new WriteBehindQueue(this.pool, Durability.GROUP_COMMIT, 10, 0)) {
+            List<CompletableFuture<Integer>> writes = new ArrayList<>();
+            for (int i = 0; i < 95; i++) {
+                writes.add(queue.submit(INSERT, i, "value " + i));
+            }
+            queue.flush();
+            writes.forEach(write -> assertEquals(1, write.getNow(-1)));
+            assertEquals(95, this.count());
+        }
+    }
+
+    @Test
+    void fullBatchIsWrittenWithoutWaitingForTheInterval() throws Exception {
+        try (WriteBehindQueue queue = new WriteBehindQueue(this.pool, Durability.ASYNC, 10, 60_000)) {
+            List<CompletableFuture<Integer>> writes = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                writes.add(queue.submit(INSERT, i, "value"));
+            }
+            CompletableFuture.allOf(writes.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+            CompletableFuture<Integer> lingering = queue.submit(INSERT, 10, "value");
+            Thread.sleep(200);
+            assertFalse(lingering.isDone(), "a batch that isn't full waits for the flush interval");
+            queue.flush();
+            assertEquals(1, lingering.getNow(-1));
+            assertEquals(11, this.count());
+        }
+    }
+
+    @Test
+    void failedWriteDoesNotTakeTheBatchWithIt() throws SQLException {
+        try (WriteBehindQueue queue = new WriteBehindQueue(this.pool, Durability.ASYNC, 10, 60_000)) {
+            CompletableFuture<Integer> first = queue.submit(INSERT, 1, "first");
+            CompletableFuture<Integer> duplicate = queue.submit(INSERT, 1, "duplicate");
+            CompletableFuture<Integer> other = queue.submit("UPDATE entries SET note=? WHERE id=?", "updated", 1);
+            queue.flush();
+            assertEquals(1, first.getNow(-1));
+            CompletionException error = assertThrows(CompletionException.class, duplicate::join);
+            assertInstanceOf(SQLException.class, error.getCause());
+            assertEquals(1, other.getNow(-1));
+            assertEquals(1, this.count());
+        }
+    }
+
+    @Test
+    void closeWritesWhatIsQueuedAndRejectsLaterWrites() throws SQLException {
+        WriteBehindQueue queue = new WriteBehindQueue(this.pool, Durability.ASYNC, 100, 60_000);
+        List<CompletableFuture<Integer>> writes = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            writes.add(queue.submit(INSERT, i, "value"));
+        }
+        queue.close();
+        writes.forEach(write -> assertEquals(1, write.getNow(-1)));
+        assertEquals(20, this.count());
+
+        CompletableFuture<Integer> late = queue.submit(INSERT, 20, "late");
+        assertTrue(late.isCompletedExceptionally());
+        assertInstanceOf(IllegalStateException.class, assertThrows(CompletionException.class, late::join).getCause());
+        queue.flush();
+        queue.close();
+        assertEquals(0, queue.getPending());
+    }
+
+    private int count() throws SQLException {
+        try (PooledConnection pooled = this.pool.borrow(); Statement stmt = pooled.getConnection().createStatement();
+             ResultSet set = stmt.executeQuery("SELECT COUNT(*) FROM entries")) {
+            set.next();
+            return set.getInt(1);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package dev.galactic.star.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+
+    @Test
+    void smallValuesHaveTheirOwnBucket() {
+        for (int value = 0; value < 8; value++) {
+            assertEquals(value, LatencyHistogram.indexOf(value));
+            assertEquals(value, LatencyHistogram.upperBoundOf(value));
+        }
+    }
+
+    @Test
+    void bucketsAreContiguousUpToLongMax() {
+        int index = 0;
+        long lower = 0;
+        while (true) {
+            long upper = LatencyHistogram.upperBoundOf(index);
+            assertEquals(index, LatencyHistogram.indexOf(lower), "lower bound of bucket " + index);
+            assertEquals(index, LatencyHistogram.indexOf(upper), "upper bound of bucket " + index);
+            if (upper == Long.MAX_VALUE) {
+                break;
+            }
+            assertEquals(index + 1, LatencyHistogram.indexOf(upper + 1), "value after bucket " + index);
+            lower = upper + 1;
+            index++;
+        }
+        assertEquals(index, LatencyHistogram.indexOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    void bucketsAreAtMostAnEighthWide() {
+        for (int index = 8; LatencyHistogram.upperBoundOf(index) != Long.MAX_VALUE; index++) {
+            long lower = LatencyHistogram.upperBoundOf(index - 1) + 1;
+            long width = LatencyHistogram.upperBoundOf(index) - lower + 1;
+            assertTrue(width * 8 <= lower, "bucket " + index + " is " + width + " wide at " + lower);
+        }
+    }
+
+    @Test
+    void percentilesStayWithinTheBucketError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long millis = 1; millis <= 100; millis++) {
+            histogram.record(millis * 1_000_000);
+        }
+        histogram.record(-5);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(101, snapshot.count());
+        assertEquals(100_000_000, snapshot.max());
+        assertEquals(5050L * 1_000_000, snapshot.sum());
+        assertWithinEighth(50_000_000, snapshot.p50());
+        assertWithinEighth(95_000_000, snapshot.p95());
+        assertWithinEighth(99_000_000, snapshot.p99());
+        assertTrue(snapshot.p99() <= snapshot.max());
+    }
+
+    @Test
+    void countAtOrBelowIsCumulative() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(3);
+        histogram.record(1_000);
+        histogram.record(1_000_000);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(0, snapshot.countAtOrBelow(2));
+        assertEquals(1, snapshot.countAtOrBelow(3));
+        assertEquals(2, snapshot.countAtOrBelow(10_000));
+        assertEquals(3, snapshot.countAtOrBelow(Long.MAX_VALUE));
+    }
+
+    @Test
+    void emptyHistogramReportsZero() {
+        LatencyHistogram.Snapshot snapshot = new LatencyHistogram().snapshot();
+        assertEquals(0, snapshot.count());
+        assertEquals(0, snapshot.p50());
+        assertEquals(0, snapshot.p99());
+    }
+
+    private static void assertWithinEighth(long expected, long actual) {
+        assertTrue(actual >= expected && actual <= expected + expected / 8, "expected about " + expected + " but " +
+                "was " + actual);
+    }
+}
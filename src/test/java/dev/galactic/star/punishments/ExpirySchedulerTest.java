@@ -0,0 +1,276 @@
+/*
+ * Copyright 2022-2023 Galactic Star Studios
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package dev.galactic.star.punishments;
+
+import dev.galactic.star.H2Database;
+import dev.galactic.star.config.system.DatabaseConfig;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.UserSnowflake;
+import net.dv8tion.jda.api.requests.restaction.AuditableRestAction;
+import net.dv8tion.jda.api.sharding.ShardManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ExpirySchedulerTest {
+
+    private static final long GUILD = 100;
+    private static final long START = 1_700_000_000_000L;
+    private final AtomicLong now = new AtomicLong(START);
+    private final List<Long> unbans = new ArrayList<>();
+    private final AtomicBoolean guildAvailable = new AtomicBoolean(true);
+    private final AtomicBoolean failUnbans = new AtomicBoolean();
+    private ManualExecutor executor;
+    private H2Database db;
+    private ExpiryScheduler scheduler;
+
+    @BeforeEach
+    void start() {
+        DatabaseConfig config = new DatabaseConfig();
+        config.setUrl("jdbc:h2:mem:expiry-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        config.setUsername("sa");
+        config.setPassword("");
+        config.setDurability("sync");
+        this.db = new H2Database(config);
+        this.executor = new ManualExecutor();
+        this.scheduler = new ExpiryScheduler(this.db, this.shardManager(), this.executor, this.now::get);
+    }
+
+    @AfterEach
+    void stop() {
+        this.scheduler.shutdown();
+        this.executor.shutdownNow();
+        this.db.disconnect();
+    }
+
+    @Test
+    void liftsTheEarliestExpiryFirst() {
+        this.scheduler.schedule(GUILD, 3, PunishmentType.BAN, at(3_000));
+        this.scheduler.schedule(GUILD, 1, PunishmentType.BAN, at(1_000));
+        this.scheduler.schedule(GUILD, 2, PunishmentType.BAN, at(2_000));
+        assertEquals(START + 1_000, this.executor.nextRunAt());
+
+        this.advanceTo(1_500);
+        assertEquals(List.of(1L), this.unbans);
+        assertEquals(List.of(2L, 3L), this.storedUsers());
+        assertEquals(START + 2_000, this.executor.nextRunAt());
+
+        this.advanceTo(3_000);
+        assertEquals(List.of(1L, 2L, 3L), this.unbans);
+        assertEquals(List.of(), this.storedUsers());
+        assertEquals(0, this.scheduler.getPending());
+    }
+
+    @Test
+    void replacingAndCancellingMoveTheNextRun() {
+        this.scheduler.schedule(GUILD, 1, PunishmentType.BAN, at(1_000));
+        this.scheduler.schedule(GUILD, 1, PunishmentType.BAN, at(5_000));
+        assertEquals(1, this.scheduler.getPending());
+        this.advanceTo(4_999);
+        assertEquals(List.of(), this.unbans);
+
+        this.scheduler.cancel(GUILD, 1, PunishmentType.BAN);
+        this.advanceTo(10_000);
+        assertEquals(List.of(), this.unbans);
+        assertEquals(List.of(), this.storedUsers());
+    }
+
+    @Test
+    void loadsTheStoredExpiries() {
+        this.scheduler.schedule(GUILD, 1, PunishmentType.BAN, at(1_000));
+        this.scheduler.shutdown();
+
+        this.scheduler = new ExpiryScheduler(this.db, this.shardManager(), this.executor, this.now::get);
+        this.scheduler.load();
+        assertEquals(1, this.scheduler.getPending());
+        this.advanceTo(1_000);
+        assertEquals(List.of(1L), this.unbans);
+        assertEquals(List.of(), this.storedUsers());
+    }
+
+    @Test
+    void failedLiftsAreTriedAgainLessAndLessOften() {
+        this.failUnbans.set(true);
+        this.scheduler.schedule(GUILD, 1, PunishmentType.BAN, at(0));
+        this.advanceTo(0);
+        assertEquals(1, this.unbans.size());
+        //5s, 10s, 20s
+        long due = 0;
+        int tries = 1;
+        for (long delay = 5_000; delay <= 20_000; delay *= 2) {
+            due += delay;
+            this.advanceTo(due - 1);
+            assertEquals(tries++, this.unbans.size());
+            this.advanceTo(due);
+        }
+        assertEquals(4, this.unbans.size());
+        assertEquals(List.of(1L), this.storedUsers());
+
+        this.failUnbans.set(false);
+        this.advanceTo(due + 40_000);
+        assertEquals(5, this.unbans.size());
+        assertEquals(List.of(), this.storedUsers());
+    }
+
+    @Test
+    void unavailableGuildBacksOffAndKeepsTheRecord() {
+        this.guildAvailable.set(false);
+        this.scheduler.schedule(GUILD, 1, PunishmentType.BAN, at(0));
+        this.advanceTo(0);
+        List<Long> delays = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            long last = this.now.get();
+            delays.add(this.executor.nextRunAt() - last);
+            this.advanceTo(this.executor.nextRunAt() - START);
+        }
+        //At least 30s, then doubling like any other failure
+        assertEquals(List.of(30_000L, 30_000L, 30_000L, 40_000L, 80_000L), delays);
+        assertEquals(1, this.scheduler.getPending());
+        assertEquals(List.of(1L), this.storedUsers());
+
+        this.guildAvailable.set(true);
+        this.advanceTo(this.executor.nextRunAt() - START);
+        assertEquals(List.of(1L), this.unbans);
+        assertEquals(List.of(), this.storedUsers());
+    }
+
+    private Instant at(long offsetMs) {
+        return Instant.ofEpochMilli(START + offsetMs);
+    }
+
+    private List<Long> storedUsers() {
+        return this.db.queryList("SELECT user_id FROM punishment_expiry ORDER BY user_id", set -> set.getLong(1));
+    }
+
+    /**
+     * Moves the clock forward and runs every task that got due on the way, in order
+     */
+    private void advanceTo(long offsetMs) {
+        long target = START + offsetMs;
+        ManualTask task;
+        while ((task = this.executor.nextDue(target)) != null) {
+            this.now.set(Math.max(this.now.get(), task.runAt));
+            task.run();
+        }
+        this.now.set(Math.max(this.now.get(), target));
+    }
+
+    private ShardManager shardManager() {
+        Guild guild = (Guild) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Guild.class},
+                (proxy, method, args) -> {
+                    if (!method.getName().equals("unban")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    return this.unbanAction(((UserSnowflake) args[0]).getIdLong());
+                });
+        return (ShardManager) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{ShardManager.class},
+                (proxy, method, args) -> {
+                    if (!method.getName().equals("getGuildById")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    return this.guildAvailable.get() && args[0].equals(GUILD) ? guild : null;
+                });
+    }
+
+    @SuppressWarnings("unchecked")
+    private AuditableRestAction<Void> unbanAction(long userId) {
+        return (AuditableRestAction<Void>) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{AuditableRestAction.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "reason" -> proxy;
+                    case "queue" -> {
+                        this.unbans.add(userId);
+                        if (this.failUnbans.get()) {
+                            ((Consumer<Throwable>) args[1]).accept(new IllegalStateException("Rate limited"));
+                        } else {
+                            ((Consumer<Void>) args[0]).accept(null);
+                        }
+                        yield null;
+                    }
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    /**
+     * Only remembers the scheduled tasks, the test runs them once the clock reaches them
+     */
+    private final class ManualExecutor extends ScheduledThreadPoolExecutor {
+
+        private final List<ManualTask> tasks = new ArrayList<>();
+
+        ManualExecutor() {
+            super(1);
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+            ManualTask task = new ManualTask(command, now.get() + unit.toMillis(delay));
+            this.tasks.add(task);
+            return task;
+        }
+
+        ManualTask nextDue(long time) {
+            this.tasks.removeIf(ManualTask::isDone);
+            ManualTask next = this.tasks.stream().filter(task -> task.runAt <= time)
+                    .min(Comparator.comparingLong(task -> task.runAt)).orElse(null);
+            this.tasks.remove(next);
+            return next;
+        }
+
+        long nextRunAt() {
+            return this.tasks.stream().filter(task -> !task.isDone()).mapToLong(task -> task.runAt).min()
+                    .orElse(Long.MAX_VALUE);
+        }
+    }
+
+    private final class ManualTask extends FutureTask<Void> implements ScheduledFuture<Void> {
+
+        private final long runAt;
+
+        ManualTask(Runnable command, long runAt) {
+            super(command, null);
+            this.runAt = runAt;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(this.runAt - now.get(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(this.getDelay(TimeUnit.MILLISECONDS), other.getDelay(TimeUnit.MILLISECONDS));
+        }
+    }
+}